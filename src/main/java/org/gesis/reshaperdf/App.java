@@ -26,6 +26,7 @@ import org.gesis.reshaperdf.cmd.checksorting.CheckSortingCommand;
 import org.gesis.reshaperdf.cmd.extractresources.ExtractResourcesCommand;
 import org.gesis.reshaperdf.cmd.filter.FilterCommand;
 import org.gesis.reshaperdf.cmd.getenrichment.GetEnrichmentCommand;
+import org.gesis.reshaperdf.cmd.index.IndexCommand;
 import org.gesis.reshaperdf.cmd.merge.MergeCommand;
 import org.gesis.reshaperdf.cmd.mergedir.MergeDirCommand;
 import org.gesis.reshaperdf.cmd.ntriplify.NTriplifyCommand;
@@ -36,6 +37,7 @@ import org.gesis.reshaperdf.cmd.sort.SortCommand;
 import org.gesis.reshaperdf.cmd.split.SplitCommand;
 import org.gesis.reshaperdf.cmd.version.VersionCommand;
 import org.gesis.reshaperdf.cmd.pick.PickCommand;
+import org.gesis.reshaperdf.utils.PullReaderException;
 
 /**
  * reshaperdf is a tool collection to work with RDF data based on sorted
@@ -90,6 +92,7 @@ public class App {
         repo.add(new FilterCommand());
         repo.add(new GetEnrichmentCommand());
         //help cmd is an internal cmd
+        repo.add(new IndexCommand());
         repo.add(new MergeCommand());
         repo.add(new MergeDirCommand());
         repo.add(new NTriplifyCommand());
@@ -127,6 +130,9 @@ public class App {
             } catch (CommandExecutionException ex) {
                 printSystemError(ex.getMessage());
                 System.exit(-2);
+            } catch (PullReaderException ex) { //an input file could not be read
+                printSystemError(ex.getMessage());
+                System.exit(-2);
             }
         }
         System.exit(0);
@@ -19,19 +19,27 @@ package org.gesis.reshaperdf.cmd.block;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
+import org.gesis.reshaperdf.cmd.boundary.CommandOptions;
 import org.gesis.reshaperdf.cmd.boundary.ICMD;
 import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
+import org.gesis.reshaperdf.utils.CompressedIO;
 import org.gesis.reshaperdf.utils.LineCounter;
-import org.gesis.reshaperdf.utils.ResourcePullReader;
+import org.gesis.reshaperdf.utils.IPullReader;
+import org.gesis.reshaperdf.utils.IResourceBatchHandler;
+import org.gesis.reshaperdf.utils.OutputBuffer;
+import org.gesis.reshaperdf.utils.ParallelResourceProcessor;
+import org.gesis.reshaperdf.utils.ResourceBuffer;
 import org.gesis.reshaperdf.utils.Splitter;
 import org.gesis.reshaperdf.utils.StrictStatementFilter;
 import org.openrdf.model.Statement;
@@ -48,7 +56,9 @@ public class BlockCommand implements ICMD {
     private String NAME = "block";
     private String EXPLANATION = "Assigns the resources of the input file to blocks according to a given character sequence of a given property's value. "
             + "One block is one file. Files that exceed a statement count of 100 000 are further split into files of 100 000.";
-    private String HELPTEXT = "Usage: " + NAME + " <input file> <output dir> <predicate> <char offset> <char length>\n" + EXPLANATION;
+    private String HELPTEXT = "Usage: " + NAME + " <input file> <output dir> <predicate> <char offset> <char length> [--threads <n>]\n" + EXPLANATION
+            + "\n--threads <n>: Number of threads assigning the resources to blocks. Default 1.";
+    private static final String OPT_THREADS = "--threads";
 
     private Map<String, File> map = null;
 
@@ -81,6 +91,19 @@ public class BlockCommand implements ICMD {
      */
     @Override
     public CommandExecutionResult execute(String[] args) throws CommandExecutionException {
+        //separate options
+        int threads;
+        try {
+            CommandOptions options = new CommandOptions(args, new String[]{OPT_THREADS}, new String[0]);
+            args = options.getArgs();
+            threads = options.getIntValue(OPT_THREADS, 1);
+        } catch (IllegalArgumentException ex) {
+            return new CommandExecutionResult(false, ex.getMessage());
+        }
+        if (threads < 1) {
+            return new CommandExecutionResult(false, "Number of threads must be at least 1.");
+        }
+
         //check args
         if (args.length < 6) {
             return new CommandExecutionResult(false, "Invalid parameter count.");
@@ -91,10 +114,10 @@ public class BlockCommand implements ICMD {
             return new CommandExecutionResult(false, "Invalid file: " + inFile.getAbsolutePath());
         }
 
-        File outputDir = new File(args[2]);
+        final File outputDir = new File(args[2]);
 
         //this predicate marks the object to examine
-        String predicate = args[3];
+        final String predicate = args[3];
 
         //Index of first character in object to use for blocking
         final int offset;
@@ -119,43 +142,73 @@ public class BlockCommand implements ICMD {
         }
         
         //Iterate over all !resources! from inFile...
-        ResourcePullReader rpReader = new ResourcePullReader(inFile);
-        rpReader.load();
-        while (!rpReader.isEmpty()) {
-            Statement[] res = rpReader.peek();
-            rpReader.removeHead();
-
-            for (int i = 0; i < res.length; i++) {//iterate over all statements in a resource...
-                if (res[i].getPredicate().stringValue().equals(predicate)) {//if is the wanted property....
-                    String obj = res[i].getObject().stringValue();
-                    if (obj.length() > 0) { //...process its object
-                        String seq = null;
-                        try{
-                            seq = obj.substring(offset, offset+length);
-                        }catch(IndexOutOfBoundsException ex){
-                            seq = obj.substring(0, obj.length()-1); //If index and length invalid, then use the whole word.
-                        }
-                       
-                        //create a writer for the first letters file or use an existing one
-                        File file = map.get(seq);
-                        if (file == null) { 
-                            file = new File(outputDir, deriveFileName(seq));
-                            map.put(seq, file);
+        //The resources are assigned to blocks in batches on the worker threads,
+        //every batch delivers the content it adds to each block file. Single
+        //and spilled resources are written to the block files directly.
+        ParallelResourceProcessor<Map<String, OutputBuffer>> processor = new ParallelResourceProcessor<Map<String, OutputBuffer>>(threads, new IResourceBatchHandler<Map<String, OutputBuffer>>() {
+
+            @Override
+            public Map<String, OutputBuffer> handleBatch(List<ResourceBuffer> resources, long firstResource) throws IOException, RDFHandlerException {
+                Map<String, OutputBuffer> blocks = new LinkedHashMap<String, OutputBuffer>();
+                Map<String, CheckedNTriplesWriter> writers = new HashMap<String, CheckedNTriplesWriter>();
+                for (ResourceBuffer res : resources) {
+                    for (String seq : findBlocks(res, predicate, offset, length)) {
+                        //create a writer for the block or use an existing one
+                        CheckedNTriplesWriter writer = writers.get(seq);
+                        if (writer == null) {
+                            OutputBuffer block = new OutputBuffer();
+                            writer = new CheckedNTriplesWriter(block, new StrictStatementFilter());
+                            writer.startRDF();
+                            blocks.put(seq, block);
+                            writers.put(seq, writer);
                         }
                         //write the whole resource each time a propterty was found
-                        try {
-                            writeResource(res, file);
-                        } catch (RDFHandlerException ex) {
-                            throw new CommandExecutionException(ex);
-                        } catch (IOException ex) {
-                            throw new CommandExecutionException(ex);
-                        }
-
+                        writeResource(res, writer);
                     }
+                }
+                for (Map.Entry<String, CheckedNTriplesWriter> entry : writers.entrySet()) {
+                    entry.getValue().endRDF();
+                }
+                return blocks;
+            }
 
+            @Override
+            public void writeResult(Map<String, OutputBuffer> result) throws IOException {
+                for (Map.Entry<String, OutputBuffer> entry : result.entrySet()) {
+                    OutputStream fos = CompressedIO.openOutputStream(getBlockFile(outputDir, entry.getKey()), true);
+                    try {
+                        entry.getValue().writeTo(fos);
+                    } finally {
+                        fos.close();
+                        entry.getValue().delete();
+                    }
                 }
             }
 
+            @Override
+            public void handleResource(ResourceBuffer res, long index) throws IOException, RDFHandlerException {
+                for (String seq : findBlocks(res, predicate, offset, length)) {
+                    OutputStream fos = CompressedIO.openOutputStream(getBlockFile(outputDir, seq), true);
+                    try {
+                        CheckedNTriplesWriter writer = new CheckedNTriplesWriter(fos, new StrictStatementFilter());
+                        writer.startRDF();
+                        //write the whole resource each time a propterty was found
+                        writeResource(res, writer);
+                        writer.endRDF();
+                    } finally {
+                        fos.close();
+                    }
+                }
+            }
+        });
+        try {
+            processor.process(inFile);
+        } catch (RDFHandlerException ex) {
+            throw new CommandExecutionException(ex);
+        } catch (IOException ex) {
+            throw new CommandExecutionException(ex);
+        } catch (InterruptedException ex) {
+            throw new CommandExecutionException(ex);
         }
         System.out.println("Blocking done. Splitting...");
         //In case the size of individual exceeds a certain amount these files are further subdivided.
@@ -188,21 +241,62 @@ public class BlockCommand implements ICMD {
         return fileName.toString();
     }
 
+    /**
+     * Returns the file of a block, the file names are derived once.
+     * @param outputDir
+     * @param seq
+     * @return
+     */
+    private File getBlockFile(File outputDir, String seq) {
+        File file = map.get(seq);
+        if (file == null) {
+            file = new File(outputDir, deriveFileName(seq));
+            map.put(seq, file);
+        }
+        return file;
+    }
+
+    /**
+     * Determines the blocks a resource is assigned to, one for each statement
+     * with the predicate. A block can occur several times.
+     * @param res
+     * @param predicate
+     * @param offset
+     * @param length
+     * @return
+     */
+    private static List<String> findBlocks(ResourceBuffer res, String predicate, int offset, int length) {
+        List<String> blocks = new ArrayList<String>();
+        IPullReader<Statement> stmts = res.read();
+        for (; !stmts.isEmpty(); stmts.removeHead()) {//iterate over all statements in a resource...
+            if (stmts.peek().getPredicate().stringValue().equals(predicate)) {//if is the wanted property....
+                String obj = stmts.peek().getObject().stringValue();
+                if (obj.length() > 0) { //...process its object
+                    String seq = null;
+                    try{
+                        seq = obj.substring(offset, offset+length);
+                    }catch(IndexOutOfBoundsException ex){
+                        seq = obj.substring(0, obj.length()-1); //If index and length invalid, then use the whole word.
+                    }
+                    blocks.add(seq);
+                }
+            }
+        }
+        return blocks;
+    }
+
     /**
      * Writes a given resource with the given writer.
      * @param res
      * @param writer
      * @throws RDFHandlerException 
      */
-    private static void writeResource(Statement[] res, File file) throws RDFHandlerException, FileNotFoundException, IOException {
-        FileOutputStream fos = new FileOutputStream(file, true);
-        CheckedNTriplesWriter writer = new CheckedNTriplesWriter(fos, new StrictStatementFilter());
-        writer.startRDF();
-        for (int i = 0; i < res.length; i++) {
-            writer.handleStatement(res[i]);
-        }
-        writer.endRDF();
-        fos.close();
+    private static void writeResource(ResourceBuffer res, RDFWriter writer) throws RDFHandlerException {
+        IPullReader<Statement> stmts = res.read();
+        while (!stmts.isEmpty()) {
+            writer.handleStatement(stmts.peek());
+            stmts.removeHead();
+        }
     }
 
    
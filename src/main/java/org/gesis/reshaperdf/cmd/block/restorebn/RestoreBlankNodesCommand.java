@@ -18,22 +18,26 @@
 package org.gesis.reshaperdf.cmd.block.restorebn;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
+import org.gesis.reshaperdf.cmd.boundary.CommandOptions;
 import org.gesis.reshaperdf.cmd.boundary.ICMD;
 import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
-import org.gesis.reshaperdf.utils.PullReader;
+import org.gesis.reshaperdf.utils.ChunkedStatementProcessor;
+import org.gesis.reshaperdf.utils.IChunkHandlerFactory;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.URIImpl;
+import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerWrapper;
 
 /**
  * @author Felix Bensmann Restores blank nodes in N-Triple files generated by
@@ -43,7 +47,9 @@ public class RestoreBlankNodesCommand implements ICMD {
 
     public String NAME = "restorebn";
     public String EXPLANATION = "Restores blank nodes in N-Triple files generated by the ntriplify command.";
-    public String HELPTEXT = "Usage: " + NAME + " <input file> <output file>\n" + EXPLANATION;
+    public String HELPTEXT = "Usage: " + NAME + " <input file> <output file> [--threads <n>]\n" + EXPLANATION
+            + "\n--threads <n>: Number of threads the input is split up for. Default 1.";
+    private static final String OPT_THREADS = "--threads";
 
     @Override
     public String getName() {
@@ -71,6 +77,16 @@ public class RestoreBlankNodesCommand implements ICMD {
      */
     @Override
     public CommandExecutionResult execute(String[] args) throws CommandExecutionException {
+        //separate options
+        ChunkedStatementProcessor processor = null;
+        try {
+            CommandOptions options = new CommandOptions(args, new String[]{OPT_THREADS}, new String[0]);
+            args = options.getArgs();
+            processor = new ChunkedStatementProcessor(options.getIntValue(OPT_THREADS, 1));
+        } catch (IllegalArgumentException ex) {
+            return new CommandExecutionResult(false, ex.getMessage());
+        }
+
         //check args
         if (args.length != 3) {
             return new CommandExecutionResult(false, "Invalid parameter count.");
@@ -81,47 +97,37 @@ public class RestoreBlankNodesCommand implements ICMD {
         }
         File outFile = new File(args[2]);
 
-        PullReader pReader;
-        pReader = new PullReader(inFile);
-        pReader.load();
-
-        CheckedNTriplesWriter ctWriter = null;
         try {
-            ctWriter = new CheckedNTriplesWriter(new FileOutputStream(outFile), null, false);
-            ctWriter.startRDF();
-        } catch (FileNotFoundException ex) {
-            throw new CommandExecutionException(ex);
-        } catch (RDFHandlerException ex) {
-            throw new CommandExecutionException(ex);
-        }
+            processor.process(inFile, outFile, false, new IChunkHandlerFactory() {
 
-        Statement stmt = pReader.peek();
-        while (stmt != null) {
-            pReader.removeHead();
+                @Override
+                public RDFHandler createHandler(OutputStream out) throws IOException {
+                    return new RDFHandlerWrapper(new CheckedNTriplesWriter(out, null, false)) {
 
-            Resource subject = stmt.getSubject();
-            Value object = stmt.getObject();
+                        @Override
+                        public void handleStatement(Statement stmt) throws RDFHandlerException {
+                            Resource subject = stmt.getSubject();
+                            Value object = stmt.getObject();
 
-            if (subject.stringValue().contains(CheckedNTriplesWriter.DUMMY_URL)) {
-                subject = new URIImpl(subject.stringValue().replaceFirst(CheckedNTriplesWriter.DUMMY_URL, "_:"));
-            }
-            if (object instanceof URI) {
-                if (object.stringValue().contains(CheckedNTriplesWriter.DUMMY_URL)) {
-                    object = new URIImpl(object.stringValue().replaceFirst(CheckedNTriplesWriter.DUMMY_URL, "_:"));
+                            if (subject.stringValue().contains(CheckedNTriplesWriter.DUMMY_URL)) {
+                                subject = new URIImpl(subject.stringValue().replaceFirst(CheckedNTriplesWriter.DUMMY_URL, "_:"));
+                            }
+                            if (object instanceof URI) {
+                                if (object.stringValue().contains(CheckedNTriplesWriter.DUMMY_URL)) {
+                                    object = new URIImpl(object.stringValue().replaceFirst(CheckedNTriplesWriter.DUMMY_URL, "_:"));
+                                }
+                            }
+                            super.handleStatement(new StatementImpl(subject, stmt.getPredicate(), object));
+                        }
+                    };
                 }
-            }
-
-            try {
-                ctWriter.handleStatement(new StatementImpl(subject, stmt.getPredicate(), object));
-            } catch (RDFHandlerException ex) {
-                throw new CommandExecutionException(ex);
-            }
-            stmt = pReader.peek();
-        }
-        try {
-            ctWriter.endRDF();
+            });
+        } catch (IOException ex) {
+            throw new CommandExecutionException(ex);
         } catch (RDFHandlerException ex) {
             throw new CommandExecutionException(ex);
+        } catch (InterruptedException ex) {
+            throw new CommandExecutionException(ex);
         }
         return new CommandExecutionResult(true);
     }
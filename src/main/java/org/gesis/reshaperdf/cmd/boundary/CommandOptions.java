@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.cmd.boundary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Felix Bensmann
+ * Separates optional arguments of the form "--name value" or "--flag" from the
+ * positional arguments of a command. Options may appear anywhere after the
+ * command name.
+ */
+public class CommandOptions {
+
+    private static final String PREFIX = "--";
+
+    private final List<String> positional = new ArrayList<String>();
+    private final Map<String, String> values = new HashMap<String, String>();
+
+    /**
+     * Ctor
+     *
+     * @param args cli args. args[0] is the name of the command.
+     * @param valueOptions Names of the options that take a value, e.g.
+     * "--fan-in".
+     * @param flagOptions Names of the options without a value.
+     * @throws IllegalArgumentException If an unknown option is found or a
+     * value is missing.
+     */
+    public CommandOptions(String[] args, String[] valueOptions, String[] flagOptions) throws IllegalArgumentException {
+        List<String> valueList = Arrays.asList(valueOptions);
+        List<String> flagList = Arrays.asList(flagOptions);
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i == 0 || !arg.startsWith(PREFIX)) {
+                positional.add(arg);
+            } else if (valueList.contains(arg)) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for option " + arg + ".");
+                }
+                values.put(arg, args[++i]);
+            } else if (flagList.contains(arg)) {
+                values.put(arg, null);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + arg + ".");
+            }
+        }
+    }
+
+    /**
+     * Returns the positional arguments including the command name.
+     * @return
+     */
+    public String[] getArgs() {
+        return positional.toArray(new String[positional.size()]);
+    }
+
+    /**
+     * Determines whether an option or flag was given.
+     * @param name
+     * @return
+     */
+    public boolean isSet(String name) {
+        return values.containsKey(name);
+    }
+
+    /**
+     * Returns the value of an option.
+     * @param name
+     * @param defaultValue Value to return if the option was not given.
+     * @return
+     */
+    public String getValue(String name, String defaultValue) {
+        if (!values.containsKey(name)) {
+            return defaultValue;
+        }
+        return values.get(name);
+    }
+
+    /**
+     * Returns the value of an option as an integer.
+     * @param name
+     * @param defaultValue Value to return if the option was not given.
+     * @return
+     * @throws IllegalArgumentException If the value is not a number.
+     */
+    public int getIntValue(String name, int defaultValue) throws IllegalArgumentException {
+        String value = getValue(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid value for option " + name + ": " + value);
+        }
+    }
+
+}
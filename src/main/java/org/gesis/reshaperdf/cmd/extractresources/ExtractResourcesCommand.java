@@ -18,18 +18,19 @@
 package org.gesis.reshaperdf.cmd.extractresources;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
+import org.gesis.reshaperdf.cmd.boundary.CommandOptions;
 import org.gesis.reshaperdf.cmd.boundary.ICMD;
+import org.gesis.reshaperdf.utils.CompressedIO;
 import org.gesis.reshaperdf.utils.IResourceHandler;
-import org.gesis.reshaperdf.utils.ResourceReader;
+import org.gesis.reshaperdf.utils.IResourceHandlerFactory;
+import org.gesis.reshaperdf.utils.ParallelResourceProcessor;
 import org.openrdf.rio.RDFHandlerException;
-import org.openrdf.rio.RDFParseException;
 
 /**
  * @author Felix Bensmann
@@ -40,7 +41,9 @@ public class ExtractResourcesCommand implements ICMD {
     private static final String WILDCARD = "?";
     private static final String NAME = "extractresources";
     private static final String EXPLANATION = "Extracts resources with a given predicate-object combination. Use " + WILDCARD + "to indicate a wildcard.";
-    private static final String HELPTEXT = "Usage: "+NAME+" <infile> <outfile> <predicate> <object> <offset> <length>\n" + EXPLANATION;
+    private static final String HELPTEXT = "Usage: "+NAME+" <infile> <outfile> <predicate> <object> <offset> <length> [--threads <n>]\n" + EXPLANATION
+            + "\n--threads <n>: Number of threads evaluating the resources. Default 1.";
+    private static final String OPT_THREADS = "--threads";
 
     @Override
     public String getName() {
@@ -59,6 +62,19 @@ public class ExtractResourcesCommand implements ICMD {
 
     @Override
     public CommandExecutionResult execute(String[] args) throws CommandExecutionException {
+        //separate options
+        int threads;
+        try {
+            CommandOptions options = new CommandOptions(args, new String[]{OPT_THREADS}, new String[0]);
+            args = options.getArgs();
+            threads = options.getIntValue(OPT_THREADS, 1);
+        } catch (IllegalArgumentException ex) {
+            return new CommandExecutionResult(false, ex.getMessage());
+        }
+        if (threads < 1) {
+            return new CommandExecutionResult(false, "Number of threads must be at least 1.");
+        }
+
         //check args
         if (args.length != 7) {
             return new CommandExecutionResult(false, "Invalid parameter count.");
@@ -93,14 +109,14 @@ public class ExtractResourcesCommand implements ICMD {
             }
         }
 
-        int offset = -2;
+        final int offset;
         try {
             offset = Integer.valueOf(args[5]);
         } catch (NumberFormatException ex) {
             throw new CommandExecutionException("In offset: " + ex);
         }
 
-        int length = -2;
+        final int length;
         try {
             length = Integer.valueOf(args[6]);
         } catch (NumberFormatException ex) {
@@ -108,21 +124,30 @@ public class ExtractResourcesCommand implements ICMD {
         }
 
         //start acutal processing
-        ResourceReader resReader = new ResourceReader();
         //uses a special handler that evaluates the predicate-object combination
-        //and writes matching resources into outfile.
-        IResourceHandler resHandler = new ExtractResourcesHandler(predicate, object, offset, length, outFile);
-        resReader.setResourceHandler(resHandler);
+        //and writes matching resources into outfile. Every batch of resources
+        //gets its own handler that continues the numbering of the resources.
+        final String pred = predicate;
+        final String obj = object;
         try {
-            resReader.parse(new FileInputStream(inFile), "");
-        } catch (FileNotFoundException ex) {
-            throw new CommandExecutionException(ex);
-        } catch (RDFParseException ex) {
-            throw new CommandExecutionException(ex);
+            OutputStream out = CompressedIO.openOutputStream(outFile);
+            try {
+                ParallelResourceProcessor.process(inFile, out, threads, new IResourceHandlerFactory() {
+
+                    @Override
+                    public IResourceHandler createHandler(OutputStream out, long firstResource) {
+                        return new ExtractResourcesHandler(pred, obj, offset, length, out, firstResource);
+                    }
+                });
+            } finally {
+                out.close();
+            }
         } catch (RDFHandlerException ex) {
             throw new CommandExecutionException(ex);
         } catch (IOException ex) {
             throw new CommandExecutionException(ex);
+        } catch (InterruptedException ex) {
+            throw new CommandExecutionException(ex);
         }
 
         return new CommandExecutionResult(true);
@@ -17,11 +17,12 @@
  */
 package org.gesis.reshaperdf.cmd.extractresources;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
+import org.gesis.reshaperdf.utils.IPullReader;
 import org.gesis.reshaperdf.utils.IResourceHandler;
+import org.gesis.reshaperdf.utils.ResourceBuffer;
 import org.openrdf.model.Statement;
 import org.openrdf.rio.RDFHandlerException;
 
@@ -38,7 +39,7 @@ public class ExtractResourcesHandler implements IResourceHandler {
     private String obj = null;
     private int off = -2;
     private int len = -2;
-    private File outFile = null;
+    private OutputStream out = null;
     private CheckedNTriplesWriter writer = null;
     private long resNr = 0;
 
@@ -50,9 +51,11 @@ public class ExtractResourcesHandler implements IResourceHandler {
      * @param off The resources in the source file to skip until extracting.
      * @param len The number of resources to extract. Use -1 to indicate to
      * extract all available matches.
-     * @param outFile The file for the result.
+     * @param out The stream for the result, it is not closed.
+     * @param resNr The number of resources that precede the first resource
+     * sent to this handler.
      */
-    public ExtractResourcesHandler(String pred, String obj, int off, int len, File outFile) {
+    public ExtractResourcesHandler(String pred, String obj, int off, int len, OutputStream out, long resNr) {
         this.pred = pred;
         this.obj = obj;
         this.off = off;
@@ -61,15 +64,16 @@ public class ExtractResourcesHandler implements IResourceHandler {
         } else {
             this.len = len;
         }
-        this.outFile = outFile;
+        this.out = out;
+        this.resNr = resNr;
     }
 
     @Override
     public void onStart() {
         try {
-            writer = new CheckedNTriplesWriter(new FileOutputStream(outFile), null);
+            writer = new CheckedNTriplesWriter(out, null);
             writer.startRDF();
-        } catch (FileNotFoundException ex) {
+        } catch (IOException ex) {
             System.err.println("When starting writer: " + ex);
             System.exit(-1);
         } catch (RDFHandlerException ex) {
@@ -86,11 +90,13 @@ public class ExtractResourcesHandler implements IResourceHandler {
      * @param res
      */
     @Override
-    public void handleResource(Statement[] res) {
+    public void handleResource(ResourceBuffer res) {
         resNr++;
         long hlp = off + len;
         if (resNr >= off && resNr <= hlp) { //only do sth. when within the range defined by offset and length
-            for (Statement st : res) { //for each statement in the current resource ...
+            IPullReader<Statement> stmts = res.read();
+            for (; !stmts.isEmpty(); stmts.removeHead()) { //for each statement in the current resource ...
+                Statement st = stmts.peek();
                 boolean predOk = false; //set to true if predicate matches
                 boolean objOk = false;  //set to true if object matches
                 if (pred != null) {    //check predicate
@@ -131,9 +137,11 @@ public class ExtractResourcesHandler implements IResourceHandler {
         }
     }
 
-    private void writeResource(Statement[] res) throws RDFHandlerException {
-        for (int i = 0; i < res.length; i++) {
-            writer.handleStatement(res[i]);
+    private void writeResource(ResourceBuffer res) throws RDFHandlerException {
+        IPullReader<Statement> stmts = res.read();
+        while (!stmts.isEmpty()) {
+            writer.handleStatement(stmts.peek());
+            stmts.removeHead();
         }
     }
 
@@ -18,19 +18,20 @@
 package org.gesis.reshaperdf.cmd.filter;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
+import org.gesis.reshaperdf.cmd.boundary.CommandOptions;
 import org.gesis.reshaperdf.cmd.boundary.ICMD;
 import org.gesis.reshaperdf.utils.BlackListPropertyFilter;
 import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
+import org.gesis.reshaperdf.utils.ChunkedStatementProcessor;
+import org.gesis.reshaperdf.utils.IChunkHandlerFactory;
 import org.gesis.reshaperdf.utils.LineReader;
-import org.gesis.reshaperdf.utils.PullReader;
 import org.gesis.reshaperdf.utils.WhiteListPropertyFilter;
-import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 
 /**
@@ -41,10 +42,12 @@ public class FilterCommand implements ICMD {
 
     private static final String NAME = "filter";
     private static final String EXPLANATION = "Removes statments from an N-Triple file according to a white or blacklist.";
-    private static final String HELPTEXT = "Usage: " + NAME + " <whitelist|blacklist> <input file> <filter file> <output file> \n" + EXPLANATION;
+    private static final String HELPTEXT = "Usage: " + NAME + " <whitelist|blacklist> <input file> <filter file> <output file> [--threads <n>]\n" + EXPLANATION
+            + "\n--threads <n>: Number of threads the input is split up for. Default 1.";
 
     private static final String FILTER_TYPE_WHITELIST = "whitelist";
     private static final String FILTER_TYPE_BLACKLIST = "blacklist";
+    private static final String OPT_THREADS = "--threads";
 
     @Override
     public String getName() {
@@ -71,12 +74,22 @@ public class FilterCommand implements ICMD {
      */
     @Override
     public CommandExecutionResult execute(String[] args) throws CommandExecutionException {
+        //separate options
+        ChunkedStatementProcessor processor = null;
+        try {
+            CommandOptions options = new CommandOptions(args, new String[]{OPT_THREADS}, new String[0]);
+            args = options.getArgs();
+            processor = new ChunkedStatementProcessor(options.getIntValue(OPT_THREADS, 1));
+        } catch (IllegalArgumentException ex) {
+            return new CommandExecutionResult(false, ex.getMessage());
+        }
+
         //check args
         if (args.length != 5) {
             return new CommandExecutionResult(false, "Invalid parameter count.");
         }
 
-        String filterType = args[1];
+        final String filterType = args[1];
         if (!filterType.equalsIgnoreCase(FILTER_TYPE_WHITELIST) && !filterType.equalsIgnoreCase(FILTER_TYPE_BLACKLIST)) {
             return new CommandExecutionResult(false, "Filter type must be either " + FILTER_TYPE_WHITELIST + " or " + FILTER_TYPE_BLACKLIST);
         }
@@ -90,7 +103,7 @@ public class FilterCommand implements ICMD {
         if (!filterFile.exists() || !filterFile.isFile()) {
             return new CommandExecutionResult(false, "Filter file "+filterFile.getName()+" is not a valid file.");
         }
-        String[] proptertyArr = null;
+        final String[] proptertyArr;
         try {
             LineReader lR = new LineReader(filterFile);
             String line = lR.readLine();
@@ -107,36 +120,25 @@ public class FilterCommand implements ICMD {
 
         File outFile = new File(args[4]);
 
-        //open reader and writer
-        PullReader reader = new PullReader(inFile);
-        reader.load();
-
-        CheckedNTriplesWriter writer = null;
-        try {
-            if (filterType.equalsIgnoreCase(FILTER_TYPE_WHITELIST)) {
-                writer = new CheckedNTriplesWriter(new FileOutputStream(outFile), new WhiteListPropertyFilter(proptertyArr));
-
-            } else {
-                writer = new CheckedNTriplesWriter(new FileOutputStream(outFile), new BlackListPropertyFilter(proptertyArr));
-
-            }
-        } catch (FileNotFoundException ex) {
-            throw new CommandExecutionException("Error when creating writer. " + ex);
-        }
-
-        //do filtering
-        Statement stmt = reader.peek();
-        reader.removeHead();
+        //do filtering, every part of the input gets its own filter
         try {
-            writer.startRDF();
-            while (stmt != null) {
-                writer.handleStatement(stmt);
-                stmt = reader.peek();
-                reader.removeHead();
-            }
-            writer.endRDF();
+            processor.process(inFile, outFile, false, new IChunkHandlerFactory() {
+
+                @Override
+                public RDFHandler createHandler(OutputStream out) throws IOException {
+                    if (filterType.equalsIgnoreCase(FILTER_TYPE_WHITELIST)) {
+                        return new CheckedNTriplesWriter(out, new WhiteListPropertyFilter(proptertyArr));
+                    } else {
+                        return new CheckedNTriplesWriter(out, new BlackListPropertyFilter(proptertyArr));
+                    }
+                }
+            });
+        } catch (IOException ex) {
+            throw new CommandExecutionException("Error when filtering. " + ex);
         } catch (RDFHandlerException ex) {
             throw new CommandExecutionException("Error when writing statement. " + ex);
+        } catch (InterruptedException ex) {
+            throw new CommandExecutionException(ex);
         }
 
         return new CommandExecutionResult(true);
@@ -18,29 +18,25 @@
 package org.gesis.reshaperdf.cmd.getenrichment;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
 import org.gesis.reshaperdf.cmd.boundary.ICMD;
 import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
+import org.gesis.reshaperdf.utils.CompressedIO;
+import org.gesis.reshaperdf.utils.LineCounter;
+import org.gesis.reshaperdf.utils.PullReader;
+import org.gesis.reshaperdf.utils.IPullReader;
+import org.gesis.reshaperdf.utils.ResourceBuffer;
 import org.gesis.reshaperdf.utils.ResourcePullReader;
-import org.gesis.reshaperdf.utils.StatementsComparatorO;
+import org.gesis.reshaperdf.utils.sort.Sort;
+import org.gesis.reshaperdf.utils.sort.SortOrder;
+import org.gesis.reshaperdf.utils.sort.SortSettings;
 import org.openrdf.model.Statement;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.URIImpl;
-import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandlerException;
-import org.openrdf.rio.RDFParseException;
-import org.openrdf.rio.RDFParser;
 import org.openrdf.rio.RDFWriter;
-import org.openrdf.rio.Rio;
-import org.openrdf.rio.helpers.NTriplesParserSettings;
-import org.openrdf.rio.helpers.StatementCollector;
 
 /**
  * @author Felix Bensmann
@@ -52,7 +48,8 @@ public class GetEnrichmentCommand implements ICMD {
     private static final String NAME = "getenrichment";
     private static final String EXPLANATION = "Extracts resources from an SNT file, that are adressed by the object of an SNT link file. "
             + "Missing resources in the resources file are ignored. "
-            + "The subjects of the extracted statements are altered to the subject of the link.";
+            + "The subjects of the extracted statements are altered to the subject of the link. "
+            + "If the resource file has been indexed by the index command, the resources between the links are skipped.";
     private static final String HELPTEXT = "Usage: getenrichment <linkfile> <resource file> <outfile> \n" + EXPLANATION;
 
     @Override
@@ -95,55 +92,58 @@ public class GetEnrichmentCommand implements ICMD {
         }
 
         File outFile = new File(args[3]);
-        ArrayList<Statement> linkList = null;
+        File sortedLinkFile = null;
+        long max = 0;
 
-        //Sorting linkfile by objects
+        //Sorting linkfile by objects, externally so that it needs not fit into memory
         try {
-            RDFParser rdfParser = Rio.createParser(RDFFormat.NTRIPLES);
-            linkList = new ArrayList<Statement>();
-            rdfParser.setRDFHandler(new StatementCollector(linkList));
-            rdfParser.getParserConfig().addNonFatalError(NTriplesParserSettings.FAIL_ON_NTRIPLES_INVALID_LINES);
-            rdfParser.parse(new FileInputStream(linkFile), "");
-
-            //sort the linkList by !!objects!!
-            Collections.sort(linkList, new StatementsComparatorO());
-        } catch (FileNotFoundException ex) {
-            throw new CommandExecutionException("Sorting links failed. " + ex);
+            sortedLinkFile = File.createTempFile("links_by_object", ".nt", new File("."));
+            SortSettings settings = new SortSettings();
+            settings.setOrder(SortOrder.O);
+            Sort.sort(linkFile, sortedLinkFile, settings);
+            max = LineCounter.countLines(sortedLinkFile.getPath());
         } catch (IOException ex) {
             throw new CommandExecutionException("Sorting links failed. " + ex);
-        } catch (RDFParseException ex) {
-            throw new CommandExecutionException("Sorting links failed. " + ex);
         } catch (RDFHandlerException ex) {
             throw new CommandExecutionException("Sorting links failed. " + ex);
+        } catch (InterruptedException ex) {
+            throw new CommandExecutionException("Sorting links failed. " + ex);
         }
+        PullReader linkReader = new PullReader(sortedLinkFile);
+        linkReader.load();
 
-        //prepare datasets
+        //prepare datasets, with an index resources between sparse links are skipped
         ResourcePullReader rpReader = new ResourcePullReader(resourceFile);
+        try {
+            rpReader.useIndex();
+        } catch (IOException ex) {
+            linkReader.close();
+            sortedLinkFile.delete();
+            throw new CommandExecutionException(ex);
+        }
         rpReader.load();
 
         try {
-            CheckedNTriplesWriter writer = new CheckedNTriplesWriter(new FileOutputStream(outFile), null);
+            CheckedNTriplesWriter writer = new CheckedNTriplesWriter(CompressedIO.openOutputStream(outFile), null);
             writer.startRDF();
 
             int cnt = 0;
             
             //get initial element of linklist
-            int max = linkList.size();
-            Statement link = linkList.get(0);
+            Statement link = linkReader.peek();
             String obj = link.getObject().stringValue();
-            linkList.remove(0);
+            linkReader.removeHead();
             cnt++;
 
             //get initial element of resource file
-            Statement[] res = rpReader.peek();
-            rpReader.removeHead();
-            String subj = res[0].getSubject().stringValue();
+            ResourceBuffer res = rpReader.peekResource();
+            String subj = res.getSubject().stringValue();
       
 
             //use data sets as queues, compare head at head. 
             //Use alphabetical order to determine if resources are not present
             //while no list is empty ...
-            while (!linkList.isEmpty() && rpReader.peek() != null) {
+            while (!linkReader.isEmpty() && rpReader.hasNextResource()) {
 
                 //comparison
                 int result = obj.compareTo(subj);
@@ -153,9 +153,9 @@ public class GetEnrichmentCommand implements ICMD {
                 if (result < 0) {
                     //resource could not be found, another alphanum. greater one is already present
                     System.out.println("Resource #"+cnt+" not found: " + obj);
-                    link = linkList.get(0);
+                    link = linkReader.peek();
                     obj = link.getObject().stringValue();
-                    linkList.remove(0);
+                    linkReader.removeHead();
                     cnt++;
                     continue;
                 } //obj == subj
@@ -163,25 +163,30 @@ public class GetEnrichmentCommand implements ICMD {
                     //resource found -> extract
                     System.out.println("Found resource #" + cnt + " of " + max);
                     writeAndMerge(writer, res, link.getSubject().stringValue());
-                    link = linkList.get(0);
+                    link = linkReader.peek();
                     obj = link.getObject().stringValue();
-                    linkList.remove(0);
+                    linkReader.removeHead();
                     cnt++;
                     continue;
                 } //obj > subj
                 else if (result > 0) {
-                    //continue searching...
-                    res = rpReader.peek();
-                    rpReader.removeHead();
-                    subj = res[0].getSubject().stringValue();
+                    //continue searching, jump ahead if the index allows it
+                    if (!rpReader.seek(obj)) {
+                        rpReader.removeHead();
+                    }
+                    res = rpReader.peekResource();
+                    subj = res.getSubject().stringValue();
                     continue;
                 }
             }
             writer.endRDF();
-        } catch (FileNotFoundException ex) {
+        } catch (IOException ex) {
             throw new CommandExecutionException(ex);
         } catch (RDFHandlerException ex) {
             throw new CommandExecutionException(ex);
+        } finally {
+            linkReader.close();
+            sortedLinkFile.delete();
         }
 
         return new CommandExecutionResult(true);
@@ -194,10 +199,12 @@ public class GetEnrichmentCommand implements ICMD {
      * @param newSubj
      * @throws RDFHandlerException 
      */
-    private void writeAndMerge(RDFWriter writer, Statement[] res, String newSubj) throws RDFHandlerException {
-        for (int i = 0; i < res.length; i++) {
-            Statement st = new StatementImpl(new URIImpl(newSubj), res[i].getPredicate(), res[i].getObject());
+    private void writeAndMerge(RDFWriter writer, ResourceBuffer res, String newSubj) throws RDFHandlerException {
+        IPullReader<Statement> stmts = res.read();
+        while (!stmts.isEmpty()) {
+            Statement st = new StatementImpl(new URIImpl(newSubj), stmts.peek().getPredicate(), stmts.peek().getObject());
             writer.handleStatement(st);
+            stmts.removeHead();
         }
 
     }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.cmd.index;
+
+import java.io.File;
+import java.io.IOException;
+import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
+import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
+import org.gesis.reshaperdf.cmd.boundary.CommandOptions;
+import org.gesis.reshaperdf.cmd.boundary.ICMD;
+import org.gesis.reshaperdf.utils.CompressedIO;
+import org.gesis.reshaperdf.utils.SubjectIndex;
+
+/**
+ * @author Felix Bensmann
+ * Writes a sparse subject index next to an SNT file. Commands that look for
+ * a few subjects use it to skip the parts of the file in between.
+ */
+public class IndexCommand implements ICMD {
+
+    private static final String NAME = "index";
+    private static final String EXPLANATION = "Writes a sparse index of the subjects of an SNT file to <input file>" + SubjectIndex.SUFFIX + ". "
+            + "pick and getenrichment use it to jump to the resources they look for instead of reading the whole file. "
+            + "The index has to be written again when the file changes.";
+    private static final String HELPTEXT = "Usage: " + NAME + " <input file> [--interval <n>]\n" + EXPLANATION
+            + "\n--interval <n>: Number of resources between two entries of the index. Default " + SubjectIndex.DEFAULT_INTERVAL + ".";
+    private static final String OPT_INTERVAL = "--interval";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getExplanation() {
+        return EXPLANATION;
+    }
+
+    @Override
+    public String getHelptext() {
+        return HELPTEXT;
+    }
+
+    /**
+     * Indexes an SNT file.
+     *
+     * @param args cli args. args[0] is the name of this command.
+     * @return
+     * @throws CommandExecutionException
+     */
+    @Override
+    public CommandExecutionResult execute(String[] args) throws CommandExecutionException {
+        //separate options
+        int interval;
+        try {
+            CommandOptions options = new CommandOptions(args, new String[]{OPT_INTERVAL}, new String[0]);
+            args = options.getArgs();
+            interval = options.getIntValue(OPT_INTERVAL, SubjectIndex.DEFAULT_INTERVAL);
+        } catch (IllegalArgumentException ex) {
+            return new CommandExecutionResult(false, ex.getMessage());
+        }
+        if (interval < 1) {
+            return new CommandExecutionResult(false, "Interval must be at least 1.");
+        }
+
+        //check args
+        if (args.length != 2) {
+            return new CommandExecutionResult(false, "Invalid parameter count.");
+        }
+        File inFile = new File(args[1]);
+        if (!inFile.exists() || !inFile.isFile()) {
+            return new CommandExecutionResult(false, "Input file is not a valid file.");
+        }
+        if (CompressedIO.isCompressed(inFile)) {
+            return new CommandExecutionResult(false, "Compressed files cannot be indexed.");
+        }
+
+        try {
+            int entries = SubjectIndex.write(inFile, interval);
+            System.out.println("Wrote " + entries + " entries to " + SubjectIndex.getIndexFile(inFile).getName());
+        } catch (IOException ex) {
+            throw new CommandExecutionException(ex);
+        }
+        return new CommandExecutionResult(true);
+    }
+
+}
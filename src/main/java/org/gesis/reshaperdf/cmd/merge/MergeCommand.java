@@ -18,7 +18,7 @@
 package org.gesis.reshaperdf.cmd.merge;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
 import org.gesis.reshaperdf.cmd.boundary.ICMD;
@@ -83,7 +83,7 @@ public class MergeCommand implements ICMD {
         try {
             //use method from merge utils
             MergeUtils.merge(fileArr, outFile, null);
-        } catch (FileNotFoundException ex) {
+        } catch (IOException ex) {
             throw new CommandExecutionException(ex);
         } catch (RDFHandlerException ex) {
             throw new CommandExecutionException(ex);
@@ -18,7 +18,7 @@
 package org.gesis.reshaperdf.cmd.mergedir;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
 import org.gesis.reshaperdf.cmd.boundary.ICMD;
@@ -82,7 +82,7 @@ public class MergeDirCommand implements ICMD {
             //use methods from utils
             File[] fileArr = FileFinder.findFiles(inDir, new String[]{"nt"});
             MergeUtils.merge(fileArr, outFile, null);
-        } catch (FileNotFoundException ex) {
+        } catch (IOException ex) {
             throw new CommandExecutionException(ex);
         } catch (RDFHandlerException ex) {
             throw new CommandExecutionException(ex);
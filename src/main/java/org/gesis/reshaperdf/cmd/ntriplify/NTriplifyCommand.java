@@ -19,13 +19,13 @@ package org.gesis.reshaperdf.cmd.ntriplify;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.github.jsonldjava.core.JsonLdError;
+import org.gesis.reshaperdf.utils.CompressedIO;
 import org.gesis.reshaperdf.utils.FileFinder;
 import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -107,14 +107,14 @@ public class NTriplifyCommand implements ICMD {
         //use special N-Triples writer that only writes valid N-Triples and drops invalid
         RDFWriter ntriplesWriter = null;
         try {
-            ntriplesWriter = new CheckedNTriplesWriter(new FileOutputStream(outFile), new StrictStatementFilter(), true);
+            ntriplesWriter = new CheckedNTriplesWriter(CompressedIO.openOutputStream(outFile), new StrictStatementFilter(), true);
 
-        } catch (FileNotFoundException ex) {
+        } catch (IOException ex) {
             throw new CommandExecutionException(ex);
         }
         for (int i = 0; i < inputFiles.length; i++) {
             System.out.println("#" + (i + 1) + " Processing " + inputFiles[i].getName());
-            RDFFormat format = Rio.getParserFormatForFileName(inputFiles[i].getAbsolutePath());
+            RDFFormat format = Rio.getParserFormatForFileName(CompressedIO.removeSuffix(inputFiles[i].getAbsolutePath()));
 
             try {
                 if (format.equals(RDFFormat.RDFXML) || format.equals(RDFFormat.NTRIPLES) || format.equals(RDFFormat.TURTLE)) {
@@ -124,13 +124,13 @@ public class NTriplifyCommand implements ICMD {
                     // set tollerance towards certain malformed ntriples
                     rdfParser.getParserConfig().addNonFatalError(NTriplesParserSettings.FAIL_ON_NTRIPLES_INVALID_LINES);
                     // ...and start the conversion!
-                    FileInputStream fis = new FileInputStream(inputFiles[i]);
+                    InputStream fis = CompressedIO.openInputStream(inputFiles[i]);
                     rdfParser.parse(fis, "");
                     fis.close();
                 } else if (format.equals(RDFFormat.JSONLD)) {
                     org.gesis.reshaperdf.utils.jsonldparser.JSONLDParser rdfParser = new org.gesis.reshaperdf.utils.jsonldparser.JSONLDParser();
                     rdfParser.setRdfHandler(ntriplesWriter);
-                    FileInputStream fis = new FileInputStream(inputFiles[i]);
+                    InputStream fis = CompressedIO.openInputStream(inputFiles[i]);
                     rdfParser.parse(fis, map);
                     fis.close();
                 }
@@ -83,10 +83,44 @@ public class Matcher {
         valueComparator=new ValueComparator();
     }
 
+    /**
+     * Ctor for copy().
+     */
+    private Matcher(Matcher other) {
+        this.sList = other.sList;
+        this.pList = other.pList;
+        this.oList = other.oList;
+        sListIdx = 0;
+        uriComparator = new URIComparator();
+        valueComparator = new ValueComparator();
+    }
+
+    /**
+     * Returns a matcher on the same lists with its own index. Allows parts of
+     * a file to be matched on separate threads.
+     *
+     * @return
+     */
+    public Matcher copy() {
+        return new Matcher(this);
+    }
+
     public void reset() {
         sListIdx = 0;
     }
 
+    /**
+     * Moves the index to the first subject of the list that is not less than
+     * the given one, as if all smaller subjects had been passed in. Allows a
+     * copy to start in the middle of a sorted file.
+     *
+     * @param subject
+     */
+    public void seek(Resource subject) {
+        int idx = Collections.binarySearch(sList, subject, new ResourceComparator());
+        sListIdx = idx >= 0 ? idx : -idx - 1;
+    }
+
     public void incIndex(){
         sListIdx++;
     }
@@ -95,6 +129,22 @@ public class Matcher {
         return sListIdx;
     }
     
+    /**
+     * Determines whether a statement matches. Statements have to be passed in
+     * ascending order, the index is moved on as necessary.
+     *
+     * @param stmt
+     * @return
+     */
+    public boolean matches(Statement stmt) {
+        int vgl = compareTo(stmt);
+        while (vgl > 0) {
+            incIndex();
+            vgl = compareTo(stmt);
+        }
+        return vgl == 0;
+    }
+
     public int compareTo(Statement stmt) {
 
         int result0=Integer.MIN_VALUE;
@@ -17,21 +17,32 @@
  */
 package org.gesis.reshaperdf.cmd.pick;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
+import org.gesis.reshaperdf.cmd.boundary.CommandOptions;
 import org.gesis.reshaperdf.cmd.boundary.ICMD;
 import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
+import org.gesis.reshaperdf.utils.ChunkedStatementProcessor;
+import org.gesis.reshaperdf.utils.CompressedIO;
+import org.gesis.reshaperdf.utils.IChunkHandlerFactory;
+import org.gesis.reshaperdf.utils.IPullReader;
+import org.gesis.reshaperdf.utils.IResourceBatchHandler;
 import org.gesis.reshaperdf.utils.LineReader;
-import org.gesis.reshaperdf.utils.LineWriter;
-import org.gesis.reshaperdf.utils.PullReader;
-import org.gesis.reshaperdf.utils.ResourcePullReader;
+import org.gesis.reshaperdf.utils.OutputBuffer;
+import org.gesis.reshaperdf.utils.ParallelResourceProcessor;
+import org.gesis.reshaperdf.utils.ResourceBuffer;
 import org.openrdf.model.BNode;
 import org.openrdf.model.Literal;
 import org.openrdf.model.Resource;
@@ -41,8 +52,11 @@ import org.openrdf.model.Value;
 import org.openrdf.model.impl.BNodeImpl;
 import org.openrdf.model.impl.LiteralImpl;
 import org.openrdf.model.impl.URIImpl;
+import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.openrdf.rio.helpers.RDFHandlerWrapper;
 
 /**
  * Extracts either subject predicate or objects according to a pattern and
@@ -66,8 +80,11 @@ public class PickCommand implements ICMD {
             + "A " + WILDCARD + "-character can be used to indicate a wildcard."
             + "Example: infile.nt outfile.nt o subjectlist.txt predicatelist.txt" + WILDCARD + " ;"
             + "this returns all objects whose statments match any combination of subjectlist and predicatelist. ";
-    private static String HELPTEXT = "Usage: " + NAME + " <input file> <output file> <s|p|o|stmt|res> <s|list|"+WILDCARD+"> <p|list|"+WILDCARD+"> <o|list|"+WILDCARD+">"
-            + "\n" + EXPLANATION;
+    private static String HELPTEXT = "Usage: " + NAME + " <input file> <output file> <s|p|o|stmt|res> <s|list|"+WILDCARD+"> <p|list|"+WILDCARD+"> <o|list|"+WILDCARD+"> [--threads <n>]"
+            + "\n" + EXPLANATION
+            + "\n--threads <n>: Number of threads the input is split up for. In mode res the number of threads evaluating the resources. Default 1.";
+    private static final String OPT_THREADS = "--threads";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
 
     private static final int ARG_CMD = 0;
     private static final int ARG_INFILE = 1;
@@ -105,6 +122,17 @@ public class PickCommand implements ICMD {
      */
     @Override
     public CommandExecutionResult execute(String[] args) throws CommandExecutionException {
+        //separate options
+        ChunkedStatementProcessor processor = null;
+        int threads;
+        try {
+            CommandOptions options = new CommandOptions(args, new String[]{OPT_THREADS}, new String[0]);
+            args = options.getArgs();
+            threads = options.getIntValue(OPT_THREADS, 1);
+            processor = new ChunkedStatementProcessor(threads);
+        } catch (IllegalArgumentException ex) {
+            return new CommandExecutionResult(false, ex.getMessage());
+        }
 
         //check args
         if (args.length != 7) {
@@ -144,11 +172,11 @@ public class PickCommand implements ICMD {
         if (resultMode.equals(MODE_S)
                 || resultMode.equals(MODE_P)
                 || resultMode.equals(MODE_O)) {
-            return processSPO(resultMode, inFile, outFile, subjectList, predicateList, objectList);
+            return processSPO(resultMode, inFile, outFile, subjectList, predicateList, objectList, processor);
         } else if (resultMode.equals(MODE_STMT)) {
-            return processSTMT(resultMode, inFile, outFile, subjectList, predicateList, objectList);
+            return processSTMT(resultMode, inFile, outFile, subjectList, predicateList, objectList, processor);
         } else if (resultMode.equals(MODE_RES)) {
-            return processRES(resultMode, inFile, outFile, subjectList, predicateList, objectList);
+            return processRES(resultMode, inFile, outFile, subjectList, predicateList, objectList, threads);
         }
 
         return new CommandExecutionResult(true);
@@ -262,191 +290,190 @@ public class PickCommand implements ICMD {
         return new LiteralImpl(str);
     }
 
-    private static CommandExecutionResult processSPO(String resultMode, File inFile, File outFile,
+    private static CommandExecutionResult processSPO(final String resultMode, File inFile, File outFile,
             ArrayList<Resource> subjectList, ArrayList<URI> predicateList,
-            ArrayList<Value> objectList) throws CommandExecutionException {
-        //setup reader and writer
-        PullReader pReader = new PullReader(inFile);
-        pReader.load();
-        LineWriter lWriter = null;
-        try {
-            lWriter = new LineWriter(outFile);
-        } catch (FileNotFoundException ex) {
-            return new CommandExecutionResult(false, "Invalid output file " + outFile.getAbsolutePath());
-        }
-        //actual work
-        Matcher matcher = new Matcher(subjectList, predicateList, objectList);
-        Statement stmt = pReader.peek();
-        pReader.removeHead();
+            ArrayList<Value> objectList, ChunkedStatementProcessor processor) throws CommandExecutionException {
+        final Matcher matcher = new Matcher(subjectList, predicateList, objectList);
         try {
-            while (stmt != null) {
-                int vgl = matcher.compareTo(stmt);
-                if (vgl < 0) { //stmt is smaller
-                    //pull next statement
-                    stmt = pReader.peek();
-                    pReader.removeHead();
-
-                } else if (vgl == 0) {
-
-                    if(resultMode.equals(MODE_S)){
-                        lWriter.writeLine(stmt.getSubject().stringValue());
-                    }
-                    else if(resultMode.equals(MODE_P)){
-                        lWriter.writeLine(stmt.getPredicate().stringValue());
-                    }
-                    else if(resultMode.equals(MODE_O)){
-                        lWriter.writeLine(stmt.getObject().stringValue());
-                    }
-                    else{
-                        throw new CommandExecutionException("This state must not exist.");
-                    }
-                    //pull next statement
-                    stmt = pReader.peek();
-                    pReader.removeHead();
+            //output is appended like with a LineWriter
+            processor.process(inFile, outFile, true, new IChunkHandlerFactory() {
+
+                @Override
+                public RDFHandler createHandler(OutputStream out) throws IOException {
+                    final Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF8));
+                    final Matcher chunkMatcher = matcher.copy();
+                    return new RDFHandlerBase() {
+
+                        @Override
+                        public void handleStatement(Statement stmt) throws RDFHandlerException {
+                            if (!chunkMatcher.matches(stmt)) {
+                                return;
+                            }
+                            String value;
+                            if (resultMode.equals(MODE_S)) {
+                                value = stmt.getSubject().stringValue();
+                            } else if (resultMode.equals(MODE_P)) {
+                                value = stmt.getPredicate().stringValue();
+                            } else if (resultMode.equals(MODE_O)) {
+                                value = stmt.getObject().stringValue();
+                            } else {
+                                throw new RDFHandlerException("This state must not exist.");
+                            }
+                            try {
+                                writer.write(value);
+                                writer.write("\n");
+                            } catch (IOException ex) {
+                                throw new RDFHandlerException(ex);
+                            }
+                        }
 
-                } else {
-                    //shift index of matcher
-                    matcher.incIndex();
+                        @Override
+                        public void endRDF() throws RDFHandlerException {
+                            try {
+                                writer.flush();
+                            } catch (IOException ex) {
+                                throw new RDFHandlerException(ex);
+                            }
+                        }
+                    };
                 }
-            }
+            });
+        } catch (FileNotFoundException ex) {
+            return new CommandExecutionResult(false, "Invalid output file " + outFile.getAbsolutePath());
         } catch (IOException ex) {
             throw new CommandExecutionException(ex);
-        }
-
-        try {
-            lWriter.close();
-        } catch (IOException ex) {
-            throw new CommandExecutionException("Error when closing outfile. " + ex);
+        } catch (RDFHandlerException ex) {
+            throw new CommandExecutionException(ex);
+        } catch (InterruptedException ex) {
+            throw new CommandExecutionException(ex);
         }
         return new CommandExecutionResult(true);
     }
 
     private CommandExecutionResult processSTMT(String resultMode, File inFile,
             File outFile, ArrayList<Resource> subjectList,
-            ArrayList<URI> predicateList, ArrayList<Value> objectList) throws CommandExecutionException {
-
-        //setup reader and writer
-        PullReader pReader = new PullReader(inFile);
-        pReader.load();
-        CheckedNTriplesWriter cnWriter;
+            ArrayList<URI> predicateList, ArrayList<Value> objectList, ChunkedStatementProcessor processor) throws CommandExecutionException {
+        final Matcher matcher = new Matcher(subjectList, predicateList, objectList);
         try {
-            cnWriter = new CheckedNTriplesWriter(new FileOutputStream(outFile), null);
-            cnWriter.startRDF();
-        } catch (FileNotFoundException ex) {
+            processor.process(inFile, outFile, false, new IChunkHandlerFactory() {
+
+                @Override
+                public RDFHandler createHandler(OutputStream out) throws IOException {
+                    final Matcher chunkMatcher = matcher.copy();
+                    return new RDFHandlerWrapper(new CheckedNTriplesWriter(out, null)) {
+
+                        @Override
+                        public void handleStatement(Statement stmt) throws RDFHandlerException {
+                            if (chunkMatcher.matches(stmt)) {
+                                super.handleStatement(stmt);
+                            }
+                        }
+                    };
+                }
+            });
+        } catch (IOException ex) {
             throw new CommandExecutionException(ex);
         } catch (RDFHandlerException ex) {
+            throw new CommandExecutionException("Error when writing statement. " + ex);
+        } catch (InterruptedException ex) {
             throw new CommandExecutionException(ex);
         }
-
-        //actual work
-        Matcher matcher = new Matcher(subjectList, predicateList, objectList);
-        Statement stmt = pReader.peek();
-        pReader.removeHead();
-
-        while (stmt != null) {
-            int vgl = matcher.compareTo(stmt);
-            if (vgl < 0) { //stmt is smaller
-                //pull next statement
-                stmt = pReader.peek();
-                pReader.removeHead();
-
-            } else if (vgl == 0) {
-                try {
-                    cnWriter.handleStatement(stmt);
-                } catch (RDFHandlerException ex) {
-                    throw new CommandExecutionException("Error when writing statement. " + ex);
-                }
-                //pull next statement
-                stmt = pReader.peek();
-                pReader.removeHead();
-
-            } else {
-                //shift index of matcher
-                matcher.incIndex();
-            }
-        }
-
-        try {
-            cnWriter.endRDF();
-        } catch (RDFHandlerException ex) {
-            throw new CommandExecutionException("Error when closing outfile. " + ex);
-        }
         return new CommandExecutionResult(true);
     }
 
     private CommandExecutionResult processRES(String resultMode, File inFile,
             File outFile, ArrayList<Resource> subjectList,
-            ArrayList<URI> predicateList, ArrayList<Value> objectList) throws CommandExecutionException {
-
-        //prepare datasets
-        ResourcePullReader rpReader = new ResourcePullReader(inFile);
-        rpReader.load();
+            ArrayList<URI> predicateList, ArrayList<Value> objectList, int threads) throws CommandExecutionException {
 
+        final Matcher matcher = new Matcher(subjectList, predicateList, objectList);
         try {
-            CheckedNTriplesWriter writer = new CheckedNTriplesWriter(new FileOutputStream(outFile), null);
-            writer.startRDF();
-
-            //get initial element of resource file
-            Statement[] res = rpReader.peek();
-            rpReader.removeHead();
-            int idx = 0;
-            Statement stmt = res[idx];
-
-            Matcher matcher = new Matcher(subjectList, predicateList, objectList);
-
-            //use data sets as queues, compare head at head. 
-            //Use alphabetical order to determine if resources are not present
-            //while no list is empty ...
-            while (stmt != null) {
-
-                //comparison
-                int vgl = matcher.compareTo(stmt);
-
-                if (vgl < 0) {
-                    //ressource could not be found yet
-                    if (idx < res.length - 1) {
-                        idx++;
-                        stmt = res[idx];
-                    } else {
-                        res = rpReader.peek();
-                        if (res != null) {
-                            rpReader.removeHead();
-                            idx = 0;
-                            stmt = res[idx];
+            final OutputStream out = CompressedIO.openOutputStream(outFile);
+            try {
+                ParallelResourceProcessor<OutputBuffer> processor = new ParallelResourceProcessor<OutputBuffer>(threads, new IResourceBatchHandler<OutputBuffer>() {
+
+                    @Override
+                    public OutputBuffer handleBatch(List<ResourceBuffer> resources, long firstResource) throws IOException, RDFHandlerException {
+                        //the resources are in ascending order, so a copy of the matcher
+                        //that starts at the first subject can compare head at head
+                        Matcher resMatcher = matcher.copy();
+                        resMatcher.seek(resources.get(0).getSubject());
+                        OutputBuffer result = new OutputBuffer();
+                        CheckedNTriplesWriter writer = null;
+                        for (ResourceBuffer res : resources) {
+                            if (matches(resMatcher, res)) {
+                                if (writer == null) {
+                                    writer = new CheckedNTriplesWriter(result, null);
+                                    writer.startRDF();
+                                }
+                                writeResource(writer, res);
+                            }
                         }
-                        else{
-                            stmt=null;
-                            idx=-1;
+                        if (writer != null) {
+                            writer.endRDF();
                         }
+                        return result;
                     }
-                }
-                else if (vgl == 0){
-                    //write the resource
-                    writeResource(writer, res);
-                    res = rpReader.peek();
-                    if(res != null){
-                        rpReader.removeHead();
-                        idx=0;
-                        stmt=res[idx];
+
+                    @Override
+                    public void writeResult(OutputBuffer result) throws IOException {
+                        try {
+                            result.writeTo(out);
+                        } finally {
+                            result.delete();
+                        }
                     }
-                    else{
-                        idx=-1;
-                        stmt=null;
-                    }  
-                }
-                else{
-                    matcher.incIndex();
+
+                    @Override
+                    public void handleResource(ResourceBuffer res, long index) throws IOException, RDFHandlerException {
+                        Matcher resMatcher = matcher.copy();
+                        resMatcher.seek(res.getSubject());
+                        if (matches(resMatcher, res)) {
+                            CheckedNTriplesWriter writer = new CheckedNTriplesWriter(out, null);
+                            writer.startRDF();
+                            writeResource(writer, res);
+                            writer.endRDF();
+                        }
+                    }
+                });
+                if (subjectList.isEmpty()) {
+                    processor.process(inFile);
+                } else {
+                    //only listed subjects can match
+                    List<String> subjects = new ArrayList<String>(subjectList.size());
+                    for (Resource subject : subjectList) {
+                        subjects.add(subject.stringValue());
+                    }
+                    processor.process(inFile, subjects);
                 }
+            } finally {
+                out.close();
             }
-            writer.endRDF();
         } catch (RDFHandlerException ex) {
             throw new CommandExecutionException(ex);
-        } catch (FileNotFoundException ex) {
+        } catch (IOException ex) {
+            throw new CommandExecutionException(ex);
+        } catch (InterruptedException ex) {
             throw new CommandExecutionException(ex);
         }
         return new CommandExecutionResult(true);
     }
-    
+
+    /**
+     * Determines whether a statement of a resource matches.
+     *
+     * @param matcher Matcher whose index does not exceed the subject.
+     * @param res
+     * @return
+     */
+    private static boolean matches(Matcher matcher, ResourceBuffer res) {
+        IPullReader<Statement> stmts = res.read();
+        for (; !stmts.isEmpty(); stmts.removeHead()) {
+            if (matcher.matches(stmts.peek())) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     /**
      * Renames the subject of an extracted resource after the subject of the link.
@@ -455,9 +482,11 @@ public class PickCommand implements ICMD {
      * @param newSubj
      * @throws RDFHandlerException 
      */
-    private void writeResource(RDFWriter writer, Statement[] res) throws RDFHandlerException {
-        for (int i = 0; i < res.length; i++) {
-            writer.handleStatement(res[i]);
+    private static void writeResource(RDFWriter writer, ResourceBuffer res) throws RDFHandlerException {
+        IPullReader<Statement> stmts = res.read();
+        while (!stmts.isEmpty()) {
+            writer.handleStatement(stmts.peek());
+            stmts.removeHead();
         }
 
     }
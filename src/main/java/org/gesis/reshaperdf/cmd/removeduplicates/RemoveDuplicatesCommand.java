@@ -21,12 +21,13 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
 import org.gesis.reshaperdf.cmd.boundary.ICMD;
+import org.gesis.reshaperdf.utils.CompressedIO;
 
 /**
  * @author Felix Bensmann
@@ -82,9 +83,9 @@ public class RemoveDuplicatesCommand implements ICMD {
 
         try {
             //prepare reader
-            BufferedReader br = new BufferedReader(new FileReader(inFile));
+            BufferedReader br = new BufferedReader(new InputStreamReader(CompressedIO.openInputStream(inFile)));
             String line = br.readLine();
-            BufferedWriter bw = new BufferedWriter(new FileWriter(outFile));
+            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(CompressedIO.openOutputStream(outFile)));
 
             String lastLine = "";
             while (line != null) {
@@ -18,19 +18,23 @@
 package org.gesis.reshaperdf.cmd.renameproperty;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
+import org.gesis.reshaperdf.cmd.boundary.CommandOptions;
 import org.gesis.reshaperdf.cmd.boundary.ICMD;
 import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
-import org.gesis.reshaperdf.utils.PullReader;
+import org.gesis.reshaperdf.utils.ChunkedStatementProcessor;
+import org.gesis.reshaperdf.utils.IChunkHandlerFactory;
 import org.openrdf.model.Statement;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.URIImpl;
+import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerWrapper;
 
 
 /**
@@ -42,7 +46,9 @@ public class RenamePropertyCommand implements ICMD {
 
     private String NAME = "renameproperty";
     private String EXPLANATION = "Renames properties.";
-    private String HELPTEXT = "Usage: " + NAME + " <input file> <output file> <property> <substitute> [<property> <substitute>...] \n" + EXPLANATION;
+    private String HELPTEXT = "Usage: " + NAME + " <input file> <output file> <property> <substitute> [<property> <substitute>...] [--threads <n>]\n" + EXPLANATION
+            + "\n--threads <n>: Number of threads the input is split up for. Default 1.";
+    private static final String OPT_THREADS = "--threads";
     private Map<String, String> map = null;
 
     public RenamePropertyCommand() {
@@ -74,6 +80,16 @@ public class RenamePropertyCommand implements ICMD {
      */
     @Override
     public CommandExecutionResult execute(String[] args) throws CommandExecutionException {
+        //separate options
+        ChunkedStatementProcessor processor = null;
+        try {
+            CommandOptions options = new CommandOptions(args, new String[]{OPT_THREADS}, new String[0]);
+            args = options.getArgs();
+            processor = new ChunkedStatementProcessor(options.getIntValue(OPT_THREADS, 1));
+        } catch (IllegalArgumentException ex) {
+            return new CommandExecutionResult(false, ex.getMessage());
+        }
+
         //check args
         if (args.length < 5 || ((args.length) % 2 != 1)) { //odd parameter count
             return new CommandExecutionResult(false, "Invalid parameter count.");
@@ -93,24 +109,29 @@ public class RenamePropertyCommand implements ICMD {
         }
 
         try {
-            PullReader reader = new PullReader(inFile);
-            reader.load();
-            CheckedNTriplesWriter writer = new CheckedNTriplesWriter(new FileOutputStream(outFile), null);
-            writer.startRDF();
-            while (!reader.isEmpty()) { // iterate over statements
-                Statement st = reader.peek();
-                reader.removeHead();
-                String prop = st.getPredicate().stringValue();
-                if (map.containsKey(prop)) { //replace if necessary
-                    st = new StatementImpl(st.getSubject(), new URIImpl(map.get(prop)), st.getObject());
+            processor.process(inFile, outFile, false, new IChunkHandlerFactory() {
+
+                @Override
+                public RDFHandler createHandler(OutputStream out) throws IOException {
+                    return new RDFHandlerWrapper(new CheckedNTriplesWriter(out, null)) {
+
+                        @Override
+                        public void handleStatement(Statement st) throws RDFHandlerException {
+                            String prop = st.getPredicate().stringValue();
+                            if (map.containsKey(prop)) { //replace if necessary
+                                st = new StatementImpl(st.getSubject(), new URIImpl(map.get(prop)), st.getObject());
+                            }
+                            super.handleStatement(st);
+                        }
+                    };
                 }
-                writer.handleStatement(st);
-            }
-            writer.endRDF();
+            });
         } catch (IOException ex) {
             throw new CommandExecutionException(ex);
         } catch (RDFHandlerException ex) {
             throw new CommandExecutionException(ex);
+        } catch (InterruptedException ex) {
+            throw new CommandExecutionException(ex);
         }
         return new CommandExecutionResult(true);
     }
@@ -18,20 +18,32 @@
 package org.gesis.reshaperdf.cmd.securelooseends;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
+import org.gesis.reshaperdf.cmd.boundary.CommandOptions;
 import org.gesis.reshaperdf.cmd.boundary.ICMD;
 import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
+import org.gesis.reshaperdf.utils.CompressedIO;
+import org.gesis.reshaperdf.utils.FilteringPullReader;
 import org.gesis.reshaperdf.utils.ObjectComparator;
 import org.gesis.reshaperdf.utils.PullReader;
+import org.gesis.reshaperdf.utils.IPullReader;
+import org.gesis.reshaperdf.utils.IResourceBatchHandler;
+import org.gesis.reshaperdf.utils.ParallelResourceProcessor;
+import org.gesis.reshaperdf.utils.ResourceBuffer;
 import org.gesis.reshaperdf.utils.ResourcePullReader;
-import org.gesis.reshaperdf.utils.StatementsComparatorO;
+import org.gesis.reshaperdf.utils.WhiteListPropertyFilter;
+import org.gesis.reshaperdf.utils.sort.Sort;
+import org.gesis.reshaperdf.utils.sort.SortOrder;
+import org.gesis.reshaperdf.utils.sort.SortSettings;
 import org.openrdf.model.Literal;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
@@ -57,7 +69,9 @@ public class SecureLooseEndsCommand implements ICMD {
     private String NAME = "securelooseends";
     private String EXPLANATION = "Extracts resources from file B that are referenced in file A. "
             + "Then reduces this resource to a meaningful string and adds it to the original resource.";
-    private String HELPTEXT = "Usage: " + NAME + " <file A> <file B> <output file> <predicate1> <substitue1>[<predicate2> ...] \n" + EXPLANATION;
+    private String HELPTEXT = "Usage: " + NAME + " <file A> <file B> <output file> <predicate1> <substitue1>[<predicate2> ...] [--threads <n>]\n" + EXPLANATION
+            + "\n--threads <n>: Number of threads summarizing the resources. Default 1.";
+    private static final String OPT_THREADS = "--threads";
 
     public SecureLooseEndsCommand() {
 
@@ -87,6 +101,19 @@ public class SecureLooseEndsCommand implements ICMD {
      */
     @Override
     public CommandExecutionResult execute(String[] args) throws CommandExecutionException {
+        //separate options
+        int threads;
+        try {
+            CommandOptions options = new CommandOptions(args, new String[]{OPT_THREADS}, new String[0]);
+            args = options.getArgs();
+            threads = options.getIntValue(OPT_THREADS, 1);
+        } catch (IllegalArgumentException ex) {
+            return new CommandExecutionResult(false, ex.getMessage());
+        }
+        if (threads < 1) {
+            return new CommandExecutionResult(false, "Number of threads must be at least 1.");
+        }
+
         //check args
         if (args.length < 6) {
             return new CommandExecutionResult(false, "Invalid parameter count.");
@@ -108,58 +135,89 @@ public class SecureLooseEndsCommand implements ICMD {
         int off = 4;
         int argsRemaining = args.length - off;
         int pairs = argsRemaining/2;
-        Map<String, String> map = new HashMap<String, String>();
+        final Map<String, String> map = new HashMap<String, String>();
         int iter=0;
         for (int i = 0; i < pairs; i++) {
             map.put(args[off+ iter ], args[off + iter + 1]);
             iter+=2;
         }
 
-        //Step 1: get all resource URIs from file A that are specified by the property array
-        System.out.println("Reading");
-        PullReader reader = new PullReader(inFileA);
-        reader.load();
-        ArrayList<Statement> stmtList = new ArrayList<Statement>();
-        while (reader.peek() != null) {
-            Statement stmt = reader.peek();
-            reader.removeHead();
-            String predicate = stmt.getPredicate().stringValue();
-            if (map.containsKey(predicate)) {
-                stmtList.add(stmt);
-            }
+        //Step 1 and 2: get all statements from file A that are specified by the property array
+        //and sort them by their objects, duplicates are removed while sorting
+        System.out.println("Reading and sorting");
+        File sortedFile = null;
+        try {
+            sortedFile = File.createTempFile("links_by_object", ".nt", new File("."));
+            PullReader reader = new PullReader(inFileA);
+            reader.load();
+            SortSettings settings = new SortSettings();
+            settings.setOrder(SortOrder.OSP);
+            settings.setUnique(true);
+            Sort.sort(new FilteringPullReader(reader, new WhiteListPropertyFilter(map.keySet().toArray(new String[map.size()]))), sortedFile, settings);
+            reader.close();
+        } catch (IOException ex) {
+            throw new CommandExecutionException(ex);
+        } catch (RDFHandlerException ex) {
+            throw new CommandExecutionException(ex);
+        } catch (InterruptedException ex) {
+            throw new CommandExecutionException(ex);
         }
-        if (stmtList.isEmpty()) {
+        PullReader stmtReader = new PullReader(sortedFile);
+        stmtReader.load();
+        if (stmtReader.isEmpty()) {
             System.out.println("No statements with the specified properties were found.");
+            stmtReader.close();
+            sortedFile.delete();
             return new CommandExecutionResult(true);
         }
 
-        //Step 2: sort these statements by their objects
-        System.out.println("Sorting");
-        Collections.sort(stmtList, new StatementsComparatorO());
-
-        //remove duplicates
-        for (int i = stmtList.size() - 1; i > 0; i--) {
-            if (stmtList.get(i).equals(stmtList.get(i - 1))) {
-                System.out.println("Removing duplicate " + stmtList.get(i));
-                stmtList.remove(i);
-            }
-        }
-
-        //Step 3: use the sorted property URI array to extract the referenced resources
+        //Step 3: use the sorted property URI array to extract the referenced resources.
+        //Found resources are summarized in batches on the worker threads, the links
+        //of every submitted resource wait in a queue until its summary is written.
         System.out.println("Extracting");
-        CheckedNTriplesWriter writer;
+        final Queue<List<Statement>> links = new ArrayDeque<List<Statement>>();
+        ParallelResourceProcessor<List<Literal[]>> processor = null;
         try {
-            writer = new CheckedNTriplesWriter(new FileOutputStream(outFile), null);
+            final CheckedNTriplesWriter writer = new CheckedNTriplesWriter(CompressedIO.openOutputStream(outFile), null);
             writer.startRDF();
+            processor = new ParallelResourceProcessor<List<Literal[]>>(threads, new IResourceBatchHandler<List<Literal[]>>() {
+
+                @Override
+                public List<Literal[]> handleBatch(List<ResourceBuffer> resources, long firstResource) {
+                    List<Literal[]> outlines = new ArrayList<Literal[]>(resources.size());
+                    for (ResourceBuffer res : resources) {
+                        outlines.add(outlineResource(res, PROPERTIES));
+                    }
+                    return outlines;
+                }
+
+                @Override
+                public void writeResult(List<Literal[]> outlines) throws RDFHandlerException {
+                    for (Literal[] summarizations : outlines) {
+                        for (Statement link : links.remove()) {
+                            Resource subject = link.getSubject();
+                            URI predicate = new URIImpl(map.get(link.getPredicate().stringValue()));
+                            for (Literal l : summarizations) {
+                                Statement st = new StatementImpl(subject, predicate, l);
+                                writer.handleStatement(st);
+                            }
+                        }
+                    }
+                }
+
+                @Override
+                public void handleResource(ResourceBuffer res, long index) throws RDFHandlerException {
+                    writeResult(Collections.singletonList(outlineResource(res, PROPERTIES)));
+                }
+            });
 
             ResourcePullReader rpReader = new ResourcePullReader(inFileB);
             rpReader.load();
-            Statement[] res = null;
-            res = rpReader.peek();
-            rpReader.removeHead();
-            String subj = res[0].getSubject().stringValue();
-            Statement link = stmtList.get(0);
-            while (!stmtList.isEmpty() && rpReader.peek() != null) {
+            ResourceBuffer res = rpReader.peekResource();
+            String subj = res.getSubject().stringValue();
+            Statement link = stmtReader.peek();
+            List<Statement> resLinks = null;
+            while (!stmtReader.isEmpty() && rpReader.hasNextResource()) {
 
                 //comparison
                 int result = link.getObject().stringValue().compareTo(subj);
@@ -170,37 +228,52 @@ public class SecureLooseEndsCommand implements ICMD {
                 if (result < 0) {
                     //ressource could not be found, another alphanum. greater one is already present
                     System.out.println("Resource not found: " + link.getObject().stringValue());
-                    link = stmtList.get(0);
-                    stmtList.remove(0);
+                    link = stmtReader.peek();
+                    stmtReader.removeHead();
                     continue;
                 } //link.obj == subj
                 else if (result == 0) {
                     //ressource found -> extract
                     System.out.println("Found resource " + link.getObject().stringValue());
-                    Literal[] summarizations = outlineResource(res, PROPERTIES);
-                    Resource subject = link.getSubject();
-                    URI predicate = new URIImpl(map.get(link.getPredicate().stringValue()));
-                    for (Literal l : summarizations) {
-                        Statement st = new StatementImpl(subject, predicate, l);
-                        writer.handleStatement(st);
+                    if (resLinks == null) {
+                        resLinks = new ArrayList<Statement>();
                     }
-                    link = stmtList.get(0);
-                    stmtList.remove(0);
+                    resLinks.add(link);
+                    link = stmtReader.peek();
+                    stmtReader.removeHead();
                     continue;
                 } //obj > subj
                 else if (result > 0) {
-                    //continue searching...
-                    res = rpReader.peek();
+                    //continue searching, submit the resource if it was found
+                    if (resLinks != null) {
+                        links.add(resLinks);
+                        processor.submit(res);
+                        resLinks = null;
+                    }
                     rpReader.removeHead();
-                    subj = res[0].getSubject().stringValue();
+                    res = rpReader.peekResource();
+                    subj = res.getSubject().stringValue();
                     continue;
                 }
             }
+            if (resLinks != null) {
+                links.add(resLinks);
+                processor.submit(res);
+            }
+            processor.finish();
             writer.endRDF();
-        } catch (FileNotFoundException ex) {
+        } catch (IOException ex) {
             throw new CommandExecutionException(ex);
         } catch (RDFHandlerException ex) {
             throw new CommandExecutionException(ex);
+        } catch (InterruptedException ex) {
+            throw new CommandExecutionException(ex);
+        } finally {
+            if (processor != null) {
+                processor.close();
+            }
+            stmtReader.close();
+            sortedFile.delete();
         }
         return new CommandExecutionResult(true);
 
@@ -212,7 +285,7 @@ public class SecureLooseEndsCommand implements ICMD {
      * @param res
      * @return
      */
-    private static Literal[] outlineResource(Statement[] res, String[] properties) {
+    private static Literal[] outlineResource(ResourceBuffer res, String[] properties) {
         //Search for given properties, if literals were found for one properties, the remains are not searched.
         ArrayList<Literal> literalList = new ArrayList<Literal>();
         for (int i = 0; i < properties.length; i++) {
@@ -223,7 +296,7 @@ public class SecureLooseEndsCommand implements ICMD {
         }
         //if no literal could be found, use subject uri
         if (literalList.isEmpty()) {
-            Resource r = res[0].getSubject();
+            Resource r = res.getSubject();
             if (r instanceof URI) {
                 URI uri = (URI) r;
                 literalList.add(new LiteralImpl(uri.getLocalName()));
@@ -250,10 +323,11 @@ public class SecureLooseEndsCommand implements ICMD {
      * @param property
      * @param list
      */
-    private static void addFindings(Statement[] res, String property, ArrayList<Literal> list) {
-        for (int i = 0; i < res.length; i++) {
-            if (res[i].getPredicate().stringValue().equals(property)) {
-                list.add((Literal) res[i].getObject());
+    private static void addFindings(ResourceBuffer res, String property, ArrayList<Literal> list) {
+        IPullReader<Statement> stmts = res.read();
+        for (; !stmts.isEmpty(); stmts.removeHead()) {
+            if (stmts.peek().getPredicate().stringValue().equals(property)) {
+                list.add((Literal) stmts.peek().getObject());
             }
         }
     }
@@ -21,8 +21,12 @@ import java.io.File;
 import java.io.IOException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
+import org.gesis.reshaperdf.cmd.boundary.CommandOptions;
 import org.gesis.reshaperdf.cmd.boundary.ICMD;
+import org.gesis.reshaperdf.utils.CompressedIO;
 import org.gesis.reshaperdf.utils.sort.Sort;
+import org.gesis.reshaperdf.utils.sort.SortOrder;
+import org.gesis.reshaperdf.utils.sort.SortSettings;
 import org.openrdf.rio.RDFHandlerException;
 
 /**
@@ -33,7 +37,30 @@ public class SortCommand implements ICMD, Thread.UncaughtExceptionHandler {
 
     public String NAME = "sort";
     public String EXPLANATION = "Sorts an N-Triple file in ascending order of codepoints.";
-    public String HELPTEXT = "Usage: "+NAME+" <input file> <output file>\n"+EXPLANATION;
+    public String HELPTEXT = "Usage: "+NAME+" <input file> <output file> [--fan-in <n>] [--memory <size>] [--replacement-selection] [--raw] [--partitions <k>] [--tmp-dir <dirs>] [--compress-tmp] [--unique] [--order <spo|pos|osp|o>] [--io-threads <n>] [--dictionary]\n"+EXPLANATION
+            + "\n--fan-in <n>: Maximum number of intermediate files merged at once, default " + SortSettings.DEFAULT_FAN_IN + "."
+            + "\n--memory <size>: Memory for buffering statements, e.g. 512m or 4g, default is a quarter of the maximum heap size."
+            + "\n--replacement-selection: Produce longer intermediate files by replacement selection."
+            + "\n--raw: Sort the lines as bytes without parsing them, requires valid N-Triples. Lines are copied unchanged."
+            + "\n--partitions <k>: Split the input into k key ranges by sampling and sort them in parallel, default 1. Requires an uncompressed input file."
+            + "\n--tmp-dir <dirs>: Directories for intermediate files, separated by '" + File.pathSeparator + "'. Files are distributed across them. Default is the working directory."
+            + "\n--compress-tmp: Compress intermediate files, trades some CPU time for less disk space and I/O."
+            + "\n--unique: Drop duplicate statements while sorting and merging."
+            + "\n--order <spo|pos|osp|o>: Order of the statement parts to sort by, default spo. Only spo produces an SNT file, o sorts by the object only."
+            + "\n--io-threads <n>: Maximum number of merges running at once, limited to the number of processors. Default " + SortSettings.DEFAULT_IO_THREADS_PER_DIR + " per temporary directory."
+            + "\n--dictionary: Encode terms as order preserving ids and sort on them. Reads the input twice, the dictionary of distinct terms must fit into the heap.";
+
+    private static final String OPT_FAN_IN = "--fan-in";
+    private static final String OPT_MEMORY = "--memory";
+    private static final String OPT_REPLACEMENT_SELECTION = "--replacement-selection";
+    private static final String OPT_RAW = "--raw";
+    private static final String OPT_PARTITIONS = "--partitions";
+    private static final String OPT_TMP_DIR = "--tmp-dir";
+    private static final String OPT_COMPRESS_TMP = "--compress-tmp";
+    private static final String OPT_UNIQUE = "--unique";
+    private static final String OPT_ORDER = "--order";
+    private static final String OPT_IO_THREADS = "--io-threads";
+    private static final String OPT_DICTIONARY = "--dictionary";
 
     @Override
     public String getName() {
@@ -52,6 +79,35 @@ public class SortCommand implements ICMD, Thread.UncaughtExceptionHandler {
 
     @Override
     public CommandExecutionResult execute(String[] args) throws CommandExecutionException {
+        //separate options
+        SortSettings settings = new SortSettings();
+        try {
+            CommandOptions options = new CommandOptions(args, new String[]{OPT_FAN_IN, OPT_MEMORY, OPT_PARTITIONS, OPT_TMP_DIR, OPT_ORDER, OPT_IO_THREADS}, new String[]{OPT_REPLACEMENT_SELECTION, OPT_RAW, OPT_COMPRESS_TMP, OPT_UNIQUE, OPT_DICTIONARY});
+            args = options.getArgs();
+            settings.setFanIn(options.getIntValue(OPT_FAN_IN, SortSettings.DEFAULT_FAN_IN));
+            if (options.isSet(OPT_MEMORY)) {
+                settings.setMemory(SortSettings.parseSize(options.getValue(OPT_MEMORY, null)));
+            }
+            settings.setReplacementSelection(options.isSet(OPT_REPLACEMENT_SELECTION));
+            settings.setRaw(options.isSet(OPT_RAW));
+            settings.setPartitions(options.getIntValue(OPT_PARTITIONS, 1));
+            settings.setCompressTmp(options.isSet(OPT_COMPRESS_TMP));
+            settings.setUnique(options.isSet(OPT_UNIQUE));
+            settings.setDictionary(options.isSet(OPT_DICTIONARY));
+            if (options.isSet(OPT_ORDER)) {
+                settings.setOrder(SortOrder.parse(options.getValue(OPT_ORDER, null)));
+            }
+            if (options.isSet(OPT_TMP_DIR)) {
+                settings.setTmpDirs(SortSettings.parseDirs(options.getValue(OPT_TMP_DIR, null)));
+            }
+            if (options.isSet(OPT_IO_THREADS)) {
+                settings.setIoThreads(options.getIntValue(OPT_IO_THREADS, 1));
+            }
+            settings.validate();
+        } catch (IllegalArgumentException ex) {
+            return new CommandExecutionResult(false, ex.getMessage());
+        }
+
         //check args
         if (args.length != 3) {
             return new CommandExecutionResult(false, "Invalid parameter count.");
@@ -60,12 +116,15 @@ public class SortCommand implements ICMD, Thread.UncaughtExceptionHandler {
         if (!inFile.exists() || !inFile.isFile()) {
             return new CommandExecutionResult(false, "Input file is not a valid file.");
         }
+        if (settings.getPartitions() > 1 && CompressedIO.isCompressed(inFile)) {
+            return new CommandExecutionResult(false, "--partitions requires an uncompressed input file.");
+        }
 
         File outFile = new File(args[2]);
 
         try {
             //Sort.sort(inFile,outFile,this);
-            Sort.sort(inFile, outFile);
+            Sort.sort(inFile, outFile, settings);
         } catch (InterruptedException ex) {
             throw new CommandExecutionException(ex);
         } catch (IOException ex) {
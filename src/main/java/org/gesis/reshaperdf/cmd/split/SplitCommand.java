@@ -19,7 +19,7 @@ package org.gesis.reshaperdf.cmd.split;
 
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionException;
 import org.gesis.reshaperdf.cmd.boundary.CommandExecutionResult;
 import org.gesis.reshaperdf.cmd.boundary.ICMD;
@@ -75,7 +75,7 @@ public class SplitCommand implements ICMD {
         try {
             //use Splitter class
             Splitter.split(inFile, outFilePrefix.getAbsolutePath(), resourcesPerFile);
-        } catch (FileNotFoundException ex) {
+        } catch (IOException ex) {
             throw new CommandExecutionException(ex);
         } catch (RDFHandlerException ex) {
             throw new CommandExecutionException(ex);
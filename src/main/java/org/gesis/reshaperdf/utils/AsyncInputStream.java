@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+
+/**
+ * Reads a source stream on a background thread and hands the data over in
+ * blocks, so an expensive source like a decompressor runs in parallel with the
+ * consumer. Errors of the background thread are rethrown by read() after all
+ * blocks read before the error have been consumed.
+ *
+ * @author Felix Bensmann
+ */
+public class AsyncInputStream extends InputStream {
+
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int CAPACITY = 16;
+    //marks the end of the source
+    private static final byte[] END = new byte[0];
+
+    private final BatchRingBuffer<byte[]> queue = new BatchRingBuffer<byte[]>(CAPACITY);
+    private volatile IOException failure = null;
+    private byte[] block = null;
+    private int pos = 0;
+    private boolean eof = false;
+
+    /**
+     * Ctor, starts reading.
+     *
+     * @param source Stream to read from, closed when exhausted or when this
+     * stream is closed.
+     * @param name Name of the background thread.
+     */
+    public AsyncInputStream(final InputStream source, String name) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    boolean open = true;
+                    while (open) {
+                        byte[] buf = new byte[BLOCK_SIZE];
+                        int len = fill(source, buf);
+                        if (len > 0) {
+                            open = queue.put(len == buf.length ? buf : Arrays.copyOf(buf, len));
+                        }
+                        if (len < buf.length) {
+                            break;
+                        }
+                    }
+                } catch (IOException ex) {
+                    failure = ex;
+                } catch (RuntimeException ex) {
+                    failure = new IOException(ex);
+                } catch (InterruptedException ex) {
+                    failure = new InterruptedIOException();
+                } finally {
+                    try {
+                        source.close();
+                    } catch (IOException ex) {
+                        //nothing left to read
+                    }
+                    try {
+                        queue.put(END);
+                    } catch (InterruptedException ex) {
+                        //consumer is gone
+                    }
+                }
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Reads until the buffer is full or the source is exhausted.
+     *
+     * @return Number of bytes read.
+     */
+    private static int fill(InputStream source, byte[] buf) throws IOException {
+        int len = 0;
+        while (len < buf.length) {
+            int n = source.read(buf, len, buf.length - len);
+            if (n < 0) {
+                break;
+            }
+            len += n;
+        }
+        return len;
+    }
+
+    /**
+     * Makes sure a block with unread data is present.
+     *
+     * @return False at the end of the stream.
+     */
+    private boolean nextBlock() throws IOException {
+        while (!eof && (block == null || pos == block.length)) {
+            try {
+                block = queue.take();
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException();
+            }
+            pos = 0;
+            if (block == END) {
+                eof = true;
+            }
+        }
+        if (eof && failure != null) {
+            throw failure;
+        }
+        return !eof;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextBlock()) {
+            return -1;
+        }
+        return block[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, block.length - pos);
+        System.arraycopy(block, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public void close() {
+        eof = true;
+        block = null;
+        queue.close();
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author Felix Bensmann
+ * A bounded ring buffer that passes batches of elements from exactly one
+ * producer thread to exactly one consumer thread. Producer and consumer only
+ * publish their positions through volatile writes of sequence counters, no
+ * locks are taken. A thread that finds the buffer full or empty parks until
+ * the other side has made progress.
+ * @param <T> Type of the batches.
+ */
+public class BatchRingBuffer<T> {
+
+    private final Object[] slots;
+    private final int mask;
+    //number of batches taken by the consumer
+    private final AtomicLong head = new AtomicLong();
+    //number of batches published by the producer
+    private final AtomicLong tail = new AtomicLong();
+    private volatile Thread waitingConsumer = null;
+    private volatile Thread waitingProducer = null;
+    private volatile boolean closed = false;
+
+    /**
+     * Ctor
+     *
+     * @param capacity Number of batches the buffer can hold, rounded up to a
+     * power of two.
+     */
+    public BatchRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new Object[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Publishes a batch, waits while the buffer is full. Must only be called
+     * by the producer thread.
+     *
+     * @param batch
+     * @return False if the buffer has been closed by the consumer, the batch
+     * is dropped then.
+     * @throws InterruptedException
+     */
+    public boolean put(T batch) throws InterruptedException {
+        long t = tail.get();
+        if (t - head.get() == slots.length) {
+            waitingProducer = Thread.currentThread();
+            try {
+                while (t - head.get() == slots.length && !closed) {
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            } finally {
+                waitingProducer = null;
+            }
+        }
+        if (closed) {
+            return false;
+        }
+        slots[(int) (t & mask)] = batch;
+        tail.set(t + 1); //volatile write, orders the publication before the check for a waiting consumer
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Takes the next batch, waits while the buffer is empty. Must only be
+     * called by the consumer thread.
+     *
+     * @return
+     * @throws InterruptedException
+     */
+    @SuppressWarnings("unchecked")
+    public T take() throws InterruptedException {
+        long h = head.get();
+        if (tail.get() == h) {
+            waitingConsumer = Thread.currentThread();
+            try {
+                while (tail.get() == h) {
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            } finally {
+                waitingConsumer = null;
+            }
+        }
+        int index = (int) (h & mask);
+        T batch = (T) slots[index];
+        slots[index] = null;
+        head.set(h + 1);
+        Thread producer = waitingProducer;
+        if (producer != null) {
+            LockSupport.unpark(producer);
+        }
+        return batch;
+    }
+
+    /**
+     * Called by the consumer when it stops taking batches. A waiting producer
+     * is released and further batches are dropped.
+     */
+    public void close() {
+        closed = true;
+        Thread producer = waitingProducer;
+        if (producer != null) {
+            LockSupport.unpark(producer);
+        }
+    }
+
+    /**
+     * Determines whether no batch is waiting to be taken.
+     * @return
+     */
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Compresses the written data in blocks of fixed size on a pool of threads.
+ * Every block is compressed independently by compress() and the results are
+ * written to the target stream in order. This is suitable for formats whose
+ * decoders accept a concatenation of independently compressed streams, like
+ * gzip members or bzip2 streams.
+ *
+ * @author Felix Bensmann
+ */
+public abstract class BlockCompressorOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final int blockSize;
+    private final int threads;
+    private ExecutorService executor = null;
+    private final Queue<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+    private byte[] block;
+    private int len = 0;
+    private boolean closed = false;
+
+    /**
+     * Ctor
+     *
+     * @param out Stream to write the compressed blocks to.
+     * @param blockSize Number of uncompressed bytes per block.
+     * @param threads Number of compressing threads.
+     */
+    public BlockCompressorOutputStream(OutputStream out, int blockSize, int threads) {
+        this.out = out;
+        this.blockSize = blockSize;
+        this.threads = threads;
+        this.block = new byte[blockSize];
+    }
+
+    /**
+     * Compresses one block into a self-contained compressed stream.
+     *
+     * @param data Uncompressed data.
+     * @param len Number of valid bytes in data.
+     * @return The compressed block.
+     * @throws IOException
+     */
+    protected abstract byte[] compress(byte[] data, int len) throws IOException;
+
+    @Override
+    public void write(int b) throws IOException {
+        if (len == blockSize) {
+            submit();
+        }
+        block[len++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int n) throws IOException {
+        while (n > 0) {
+            if (len == blockSize) {
+                submit();
+            }
+            int c = Math.min(n, blockSize - len);
+            System.arraycopy(b, off, block, len, c);
+            len += c;
+            off += c;
+            n -= c;
+        }
+    }
+
+    /**
+     * Hands the current block to the pool and writes finished blocks while
+     * too many are pending.
+     */
+    private void submit() throws IOException {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "compressor");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        final byte[] data = block;
+        final int n = len;
+        pending.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return compress(data, n);
+            }
+        }));
+        block = new byte[blockSize];
+        len = 0;
+        while (pending.size() > 2 * threads) {
+            writeNext();
+        }
+    }
+
+    /**
+     * Waits for the oldest pending block and writes it.
+     */
+    private void writeNext() throws IOException {
+        try {
+            out.write(pending.remove().get());
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            throw new IOException("Compressing a block failed.", ex.getCause());
+        }
+    }
+
+    /**
+     * Compresses and writes everything written so far. Every flush ends the
+     * current block, so it should not be called frequently. The pool is only
+     * started when a block is full, small streams are compressed by the
+     * calling thread. The pool is stopped by a flush, since many writers
+     * flush at the end of their output without closing the stream.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        if (len > 0 && pending.isEmpty()) {
+            out.write(compress(block, len));
+            len = 0;
+        } else if (len > 0) {
+            submit();
+        }
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.gesis.reshaperdf.utils.sort.NTriplesScanner;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * @author Felix Bensmann
+ * Runs a statement by statement transformation of an N-Triples file on
+ * several threads. The file is split into byte ranges at line breaks, every
+ * range is scanned and handled on its own thread and written to its own
+ * part. The parts are appended to the output file in their original order,
+ * so the order of the statements is kept and sorted input gives sorted
+ * output.
+ *
+ * All parts share the prefix of generated blank node ids, as if the file had
+ * been parsed at once. With a single thread the file is read by a
+ * PullReader, so parsing and handling still overlap. The same applies to a
+ * compressed input file, which cannot be split. A compressed output file is
+ * written by compressing every part on its own, the concatenated parts form
+ * a valid compressed file.
+ */
+public class ChunkedStatementProcessor {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int threads;
+
+    /**
+     * Ctor
+     *
+     * @param threads Number of threads and thus of parts.
+     */
+    public ChunkedStatementProcessor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Processes a file.
+     *
+     * @param inFile N-Triples file.
+     * @param outFile File to write the output to.
+     * @param append True to append to an existing output file.
+     * @param factory Creates the handler of every part.
+     * @throws IOException
+     * @throws RDFHandlerException
+     * @throws InterruptedException
+     */
+    public void process(final File inFile, File outFile, boolean append, IChunkHandlerFactory factory) throws IOException, RDFHandlerException, InterruptedException {
+        if (threads == 1 || CompressedIO.isCompressed(inFile)) {
+            processSequentially(inFile, outFile, append, factory);
+            return;
+        }
+        RandomAccessFile raf = new RandomAccessFile(inFile, "r");
+        final FileChannel channel = raf.getChannel();
+        final String bnodePrefix = NTriplesScanner.newBNodePrefix();
+        long[] bounds = split(channel, threads);
+        File dir = outFile.getAbsoluteFile().getParentFile();
+        final List<File> parts = new ArrayList<File>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        boolean success = false;
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < bounds.length - 1; i++) {
+                final File part = i == 0 ? outFile : File.createTempFile("part", ".nt" + CompressedIO.getSuffix(outFile), dir);
+                final boolean appendPart = i == 0 && append;
+                final long start = bounds[i];
+                final long end = bounds[i + 1];
+                parts.add(part);
+                futures.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        NTriplesScanner scanner = new NTriplesScanner(false, true);
+                        scanner.setBNodePrefix(bnodePrefix);
+                        if (start > 0) {
+                            scanner.setSource("the part of " + inFile.getName() + " starting at byte " + start);
+                        }
+                        OutputStream out = new BufferedOutputStream(CompressedIO.openOutputStream(part, appendPart), BUFFER_SIZE);
+                        try {
+                            scanner.setRDFHandler(factory.createHandler(out));
+                            scanner.parse(new FileRangeInputStream(channel, start, end));
+                        } finally {
+                            out.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof RDFHandlerException) {
+                        throw (RDFHandlerException) cause;
+                    }
+                    throw new IOException("When processing " + inFile.getName(), cause);
+                }
+            }
+            concatenate(outFile, parts.subList(1, parts.size()));
+            success = true;
+        } finally {
+            executor.shutdownNow();
+            raf.close();
+            for (int i = 1; i < parts.size(); i++) {
+                parts.get(i).delete();
+            }
+            if (!success) {
+                System.err.println("Processing of " + inFile.getName() + " failed, " + outFile.getName() + " is incomplete.");
+            }
+        }
+    }
+
+    /**
+     * Passes the statements of a PullReader to a single handler.
+     */
+    private void processSequentially(File inFile, File outFile, boolean append, IChunkHandlerFactory factory) throws IOException, RDFHandlerException {
+        PullReader reader = new PullReader(inFile, false, true);
+        reader.load();
+        OutputStream out = new BufferedOutputStream(CompressedIO.openOutputStream(outFile, append), BUFFER_SIZE);
+        try {
+            RDFHandler handler = factory.createHandler(out);
+            handler.startRDF();
+            while (!reader.isEmpty()) {
+                handler.handleStatement(reader.peek());
+                reader.removeHead();
+            }
+            handler.endRDF();
+        } finally {
+            reader.close();
+            out.close();
+        }
+    }
+
+    /**
+     * Splits a file into ranges of about the same size that start at the
+     * beginning of a line.
+     *
+     * @param channel Channel of the file.
+     * @param n Number of ranges.
+     * @return Start positions of the ranges followed by the file size. Ranges
+     * that would be empty are left out.
+     * @throws IOException
+     */
+    public static long[] split(FileChannel channel, int n) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<Long>();
+        bounds.add(0L);
+        for (int i = 1; i < n; i++) {
+            long pos = nextLineStart(channel, size * i / n);
+            if (pos > bounds.get(bounds.size() - 1) && pos < size) {
+                bounds.add(pos);
+            }
+        }
+        bounds.add(size);
+        long[] arr = new long[bounds.size()];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = bounds.get(i);
+        }
+        return arr;
+    }
+
+    /**
+     * Returns the start of the first line that starts at or after pos.
+     */
+    private static long nextLineStart(FileChannel channel, long pos) throws IOException {
+        if (pos == 0) {
+            return 0;
+        }
+        InputStream in = new FileRangeInputStream(channel, pos - 1, channel.size());
+        byte[] buffer = new byte[8192];
+        int n = in.read(buffer);
+        while (n > 0) {
+            for (int i = 0; i < n; i++) {
+                if (buffer[i] == '\n') {
+                    return pos + i;
+                }
+            }
+            pos += n;
+            n = in.read(buffer);
+        }
+        return channel.size();
+    }
+
+    /**
+     * Appends the parts to the output file and deletes them.
+     */
+    private static void concatenate(File outFile, List<File> parts) throws IOException {
+        FileChannel out = new FileOutputStream(outFile, true).getChannel();
+        try {
+            for (File part : parts) {
+                FileChannel in = new FileInputStream(part).getChannel();
+                try {
+                    long pos = 0;
+                    long size = in.size();
+                    while (pos < size) {
+                        pos += in.transferTo(pos, size - pos, out);
+                    }
+                } finally {
+                    in.close();
+                }
+                part.delete();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+
+/**
+ * Opens files for reading and writing and compresses or decompresses them
+ * transparently depending on the file extension, .gz for gzip and .bz2 for
+ * bzip2. Other files are read and written as they are.
+ *
+ * Decompression runs on a background thread, see AsyncInputStream. Standard
+ * gzip and bzip2 files cannot be split for parallel decompression, because
+ * block boundaries are not known in advance. Compression on the other hand is
+ * done in independent blocks on all processors, see
+ * BlockCompressorOutputStream. The result is a multi-member gzip file or a
+ * concatenation of bzip2 streams, which every common decoder reads as one
+ * file. For the same reason appending to a compressed file is possible.
+ *
+ * @author Felix Bensmann
+ */
+public class CompressedIO {
+
+    public static final String GZIP_SUFFIX = ".gz";
+    public static final String BZIP2_SUFFIX = ".bz2";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int GZIP_BLOCK_SIZE = 1 << 20;
+    //one block of the largest bzip2 block size
+    private static final int BZIP2_BLOCK_SIZE = 900000;
+
+    /**
+     * Returns the compression suffix of a file.
+     *
+     * @param file
+     * @return The suffix or an empty string if the file is not compressed.
+     */
+    public static String getSuffix(File file) {
+        String name = file.getName();
+        if (name.endsWith(GZIP_SUFFIX)) {
+            return GZIP_SUFFIX;
+        }
+        if (name.endsWith(BZIP2_SUFFIX)) {
+            return BZIP2_SUFFIX;
+        }
+        return "";
+    }
+
+    /**
+     * Determines whether a file is read and written compressed.
+     *
+     * @param file
+     * @return
+     */
+    public static boolean isCompressed(File file) {
+        return !getSuffix(file).isEmpty();
+    }
+
+    /**
+     * Removes a compression suffix from a file name, e.g. to determine the
+     * format of the compressed content.
+     *
+     * @param name
+     * @return
+     */
+    public static String removeSuffix(String name) {
+        String suffix = getSuffix(new File(name));
+        return name.substring(0, name.length() - suffix.length());
+    }
+
+    /**
+     * Opens a file for reading, decompressing it if necessary.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static InputStream openInputStream(File file) throws IOException {
+        String suffix = getSuffix(file);
+        if (suffix.isEmpty()) {
+            return new FileInputStream(file);
+        }
+        InputStream fis = new FileInputStream(file);
+        InputStream source;
+        try {
+            if (suffix.equals(GZIP_SUFFIX)) {
+                source = new GZIPInputStream(fis, BUFFER_SIZE);
+            } else {
+                source = new BZip2CompressorInputStream(new BufferedInputStream(fis, BUFFER_SIZE), true);
+            }
+        } catch (IOException ex) {
+            fis.close();
+            throw new IOException("File " + file.getName() + " is not a valid " + suffix + " file.", ex);
+        }
+        return new AsyncInputStream(source, "decompressor " + file.getName());
+    }
+
+    /**
+     * Opens a file for writing, compressing it if necessary.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static OutputStream openOutputStream(File file) throws IOException {
+        return openOutputStream(file, false);
+    }
+
+    /**
+     * Opens a file for writing, compressing it if necessary.
+     *
+     * @param file
+     * @param append True to append to the file.
+     * @return
+     * @throws IOException
+     */
+    public static OutputStream openOutputStream(File file, boolean append) throws IOException {
+        String suffix = getSuffix(file);
+        FileOutputStream fos = new FileOutputStream(file, append);
+        if (suffix.isEmpty()) {
+            return fos;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (suffix.equals(GZIP_SUFFIX)) {
+            return new BlockCompressorOutputStream(fos, GZIP_BLOCK_SIZE, threads) {
+                @Override
+                protected byte[] compress(byte[] data, int len) throws IOException {
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream(len / 4);
+                    GZIPOutputStream gos = new GZIPOutputStream(bos, BUFFER_SIZE);
+                    gos.write(data, 0, len);
+                    gos.close();
+                    return bos.toByteArray();
+                }
+            };
+        }
+        return new BlockCompressorOutputStream(fos, BZIP2_BLOCK_SIZE, threads) {
+            @Override
+            protected byte[] compress(byte[] data, int len) throws IOException {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream(len / 4);
+                BZip2CompressorOutputStream bzos = new BZip2CompressorOutputStream(bos, BZip2CompressorOutputStream.MAX_BLOCKSIZE);
+                bzos.write(data, 0, len);
+                bzos.close();
+                return bos.toByteArray();
+            }
+        };
+    }
+
+}
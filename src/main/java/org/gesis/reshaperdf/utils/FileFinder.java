@@ -76,7 +76,9 @@ public class FileFinder {
     }
 
     /**
-     * Checks whether a filename has one of the specified extensions
+     * Checks whether a filename has one of the specified extensions. The
+     * suffix of a compressed file is ignored, e.g. file.nt.gz has the
+     * extension nt.
      *
      * @param file File to check
      * @param extensions Extensions to compare; Need to be lower case
@@ -85,7 +87,7 @@ public class FileFinder {
      */
     private static boolean isExtenstionConform(File file, String[] extensions) {
         for (String ext : extensions) {
-            if (file.getName().toLowerCase().endsWith(ext)) {
+            if (CompressedIO.removeSuffix(file.getName().toLowerCase()).endsWith(ext)) {
                 return true;
             }
         }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a byte range of a file through a FileChannel with positional reads,
+ * so several streams can read different ranges of the same file at once.
+ * Closing the stream does not close the channel.
+ *
+ * @author Felix Bensmann
+ */
+public class FileRangeInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private long pos;
+    private final long end;
+
+    /**
+     * Ctor
+     *
+     * @param channel Channel of the file.
+     * @param start First byte to read.
+     * @param end Position after the last byte to read.
+     */
+    public FileRangeInputStream(FileChannel channel, long start, long end) {
+        this.channel = channel;
+        this.pos = start;
+        this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (pos >= end) {
+            return -1;
+        }
+        len = (int) Math.min(len, end - pos);
+        int n = channel.read(ByteBuffer.wrap(b, off, len), pos);
+        if (n > 0) {
+            pos += n;
+        }
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, end - pos);
+    }
+
+}
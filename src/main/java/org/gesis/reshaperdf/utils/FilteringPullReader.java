@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import org.openrdf.model.Statement;
+
+/**
+ * @author Felix Bensmann
+ * Pull reader that delivers only the statements of another pull reader that
+ * are accepted by a filter.
+ */
+public class FilteringPullReader implements IPullReader<Statement> {
+
+    private final IPullReader<Statement> reader;
+    private final IStatementFilter filter;
+
+    /**
+     * Ctor
+     * @param reader Loaded reader to read from.
+     * @param filter Filter the statements have to pass.
+     */
+    public FilteringPullReader(IPullReader<Statement> reader, IStatementFilter filter) {
+        this.reader = reader;
+        this.filter = filter;
+        skipRejected();
+    }
+
+    @Override
+    public Statement peek() {
+        return reader.peek();
+    }
+
+    @Override
+    public void removeHead() {
+        reader.removeHead();
+        skipRejected();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return reader.peek() == null;
+    }
+
+    /**
+     * Advances the underlying reader to the next accepted statement.
+     */
+    private void skipRejected() {
+        while (reader.peek() != null && !filter.accept(reader.peek())) {
+            reader.removeHead();
+        }
+    }
+
+}
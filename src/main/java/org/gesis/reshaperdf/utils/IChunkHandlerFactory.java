@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import org.openrdf.rio.RDFHandler;
+
+/**
+ * @author Felix Bensmann
+ * Creates the handlers for the parts of a file processed by the
+ * ChunkedStatementProcessor. Every part gets its own handler, so handlers
+ * need not be thread safe.
+ */
+public interface IChunkHandlerFactory {
+
+    /**
+     * Creates a handler that writes its result to the given stream. The
+     * stream is closed by the caller after endRDF().
+     *
+     * @param out Output of the part.
+     * @return
+     * @throws IOException
+     */
+    public RDFHandler createHandler(OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+/**
+ * @author Felix Bensmann
+ * Interface for readers that can be polled element by element. The head
+ * element is inspected with peek() and dropped with removeHead().
+ * @param <T> Type of the delivered elements.
+ */
+public interface IPullReader<T> {
+
+    /**
+     * Returns the first element but does not remove it.
+     * @return The head element or null if the reader is exhausted.
+     */
+    public T peek();
+
+    /**
+     * Removes the first element.
+     */
+    public void removeHead();
+
+    /**
+     * Determines whether there are elements available from this reader.
+     * @return True if all elements have been consumed.
+     */
+    public boolean isEmpty();
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.IOException;
+import java.util.List;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * @author Felix Bensmann
+ * Handles the batches of resources of a ParallelResourceProcessor. Batches
+ * are handled concurrently on worker threads, their results are written one
+ * after another in the order of the batches. Resources that are not put into
+ * a batch are handled one by one on the writing thread, see
+ * handleResource().
+ * @param <R> Type of the result of a batch.
+ */
+public interface IResourceBatchHandler<R> {
+
+    /**
+     * Handles a batch of resources, is called on a worker thread and must not
+     * touch shared state.
+     *
+     * @param resources The resources of the batch, only valid during the
+     * call.
+     * @param firstResource Number of resources that precede the batch in the
+     * input.
+     * @return
+     * @throws IOException
+     * @throws RDFHandlerException
+     */
+    public R handleBatch(List<ResourceBuffer> resources, long firstResource) throws IOException, RDFHandlerException;
+
+    /**
+     * Writes the result of a batch, is called on the thread that submits the
+     * resources.
+     *
+     * @param result
+     * @throws IOException
+     * @throws RDFHandlerException
+     */
+    public void writeResult(R result) throws IOException, RDFHandlerException;
+
+    /**
+     * Handles a single resource and writes its output right away, without
+     * collecting it. Is called on the thread that submits the resources,
+     * after the results of all earlier batches have been written. The
+     * processor uses it for every resource when it runs on a single thread
+     * and for resources that have been spilled to disk.
+     *
+     * @param res The resource, only valid during the call.
+     * @param index Number of resources that precede it in the input.
+     * @throws IOException
+     * @throws RDFHandlerException
+     */
+    public void handleResource(ResourceBuffer res, long index) throws IOException, RDFHandlerException;
+
+}
@@ -17,12 +17,10 @@
  */
 package org.gesis.reshaperdf.utils;
 
-import org.openrdf.model.Statement;
-
 /**
  * @author Felix Bensmann
  * An inteface for resource handler. These handler can be use by the
- * ResourceReader class.
+ * ResourceReader class or, one per batch, by the ParallelResourceProcessor.
  */
 public interface IResourceHandler {
 
@@ -33,9 +31,10 @@ public interface IResourceHandler {
 
     /**
      * Is called to handle a resource.
-     * @param res 
+     * @param res The resource, only valid during the call. Use
+     * res.toArray() to keep it.
      */
-    public void handleResource(Statement[] res);
+    public void handleResource(ResourceBuffer res);
 
     /**
      * To be called when the processing stops.
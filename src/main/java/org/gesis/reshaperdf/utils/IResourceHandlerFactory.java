@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * @author Felix Bensmann
+ * Creates the resource handlers for the batches processed by a
+ * ParallelResourceProcessor. Every batch gets its own handler, so handlers
+ * need not be thread safe.
+ */
+public interface IResourceHandlerFactory {
+
+    /**
+     * Creates a handler that writes its result to the given stream. The
+     * stream is not closed by the handler.
+     *
+     * @param out Output of the batch.
+     * @param firstResource Number of resources that precede the batch in the
+     * input, for handlers that count resources.
+     * @return
+     * @throws IOException
+     */
+    public IResourceHandler createHandler(OutputStream out, long firstResource) throws IOException;
+
+}
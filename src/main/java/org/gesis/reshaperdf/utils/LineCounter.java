@@ -18,7 +18,7 @@
 package org.gesis.reshaperdf.utils;
 
 import java.io.BufferedInputStream;
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -29,7 +29,7 @@ import java.io.InputStream;
 public class LineCounter {
     
     public static long countLines(String filename) throws IOException {
-    InputStream is = new BufferedInputStream(new FileInputStream(filename));
+    InputStream is = new BufferedInputStream(CompressedIO.openInputStream(new File(filename)));
     try {
         byte[] c = new byte[1024];
         long count = 0;
@@ -19,7 +19,6 @@ package org.gesis.reshaperdf.utils;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -58,7 +57,7 @@ public class LineReader {
      */
     public LineReader(File file, Charset cs) throws FileNotFoundException, IOException{
         this.file=file;
-        br = new BufferedReader(new InputStreamReader(new FileInputStream(file), cs));
+        br = new BufferedReader(new InputStreamReader(CompressedIO.openInputStream(file), cs));
         buf = br.readLine();
     }
     
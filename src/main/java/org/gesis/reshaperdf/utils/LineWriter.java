@@ -20,7 +20,6 @@ package org.gesis.reshaperdf.utils;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
@@ -36,13 +35,13 @@ public class LineWriter {
     private File file = null;
     private BufferedWriter writer = null;
     
-    public LineWriter(File file) throws FileNotFoundException{
+    public LineWriter(File file) throws FileNotFoundException, IOException{
         this(file, Charset.forName(UTF8));      
     }
     
-    public LineWriter(File file, Charset cs) throws FileNotFoundException{
+    public LineWriter(File file, Charset cs) throws FileNotFoundException, IOException{
         this.file = file;
-        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true),cs));
+        writer = new BufferedWriter(new OutputStreamWriter(CompressedIO.openOutputStream(file, true),cs));
     }
     
     public void writeLine(String line) throws IOException{
@@ -19,7 +19,7 @@ package org.gesis.reshaperdf.utils;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import org.openrdf.model.BNode;
 import org.openrdf.model.Statement;
@@ -41,10 +41,11 @@ public class MergeUtils {
      * @param fileArr An array of the file to merge
      * @param outFile The file to write the result to
      * @throws FileNotFoundException
+     * @throws IOException
      * @throws RDFHandlerException
      * @throws IllegalArgumentException 
      */
-    public static void merge(File[] fileArr, File outFile, IStatementFilter filter) throws FileNotFoundException, RDFHandlerException, IllegalArgumentException {
+    public static void merge(File[] fileArr, File outFile, IStatementFilter filter) throws FileNotFoundException, IOException, RDFHandlerException, IllegalArgumentException {
 
         //instanciate a reader for every given file.
         //uses a special reader that can be polled.
@@ -57,7 +58,7 @@ public class MergeUtils {
 
         NTriplesWriter writer;
         //use a special writer that only writes valid triples.
-        writer = new CheckedNTriplesWriter(new FileOutputStream(outFile), filter);
+        writer = new CheckedNTriplesWriter(CompressedIO.openOutputStream(outFile), filter);
         writer.startRDF();
 
         //actual merge routine
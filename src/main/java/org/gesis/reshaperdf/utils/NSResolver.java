@@ -89,7 +89,7 @@ public class NSResolver {
      *
      * @return
      */
-    public static NSResolver getInstance() {
+    public static synchronized NSResolver getInstance() {
         if (instance == null) {
             instance = new NSResolver();
         }
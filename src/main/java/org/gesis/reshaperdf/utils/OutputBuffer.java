@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * @author Felix Bensmann
+ * Collects the output of a batch of resources until it is its turn to be
+ * written. Up to a limit the bytes are held in memory, beyond it the content
+ * is moved to a temporary file, so the results waiting in a
+ * ParallelResourceProcessor take a bounded amount of heap. writeTo() copies
+ * the content, delete() releases the file.
+ */
+public class OutputBuffer extends OutputStream {
+
+    public static final int DEFAULT_MEMORY_LIMIT = 1 << 22;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int memoryLimit;
+    private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private File file = null;
+    private OutputStream fileStream = null;
+    private long size = 0;
+
+    /**
+     * Ctor, uses the default memory limit.
+     */
+    public OutputBuffer() {
+        this(DEFAULT_MEMORY_LIMIT);
+    }
+
+    /**
+     * Ctor
+     * @param memoryLimit Number of bytes held in memory.
+     */
+    public OutputBuffer(int memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (file == null && memory.size() + len > memoryLimit) {
+            file = File.createTempFile("output", ".tmp");
+            file.deleteOnExit();
+            fileStream = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+            memory.writeTo(fileStream);
+            memory = null;
+        }
+        if (file == null) {
+            memory.write(b, off, len);
+        } else {
+            fileStream.write(b, off, len);
+        }
+        size += len;
+    }
+
+    /**
+     * Number of bytes written.
+     * @return
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Determines whether the content has been moved to a temporary file.
+     * @return
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (fileStream != null) {
+            fileStream.flush();
+        }
+    }
+
+    /**
+     * Copies the content to a stream.
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (file == null) {
+            memory.writeTo(out);
+            return;
+        }
+        fileStream.flush();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n = in.read(buffer);
+            while (n > 0) {
+                out.write(buffer, 0, n);
+                n = in.read(buffer);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Releases the content, the buffer must not be used afterwards.
+     */
+    public void delete() {
+        memory = null;
+        if (file != null) {
+            try {
+                fileStream.close();
+            } catch (IOException ex) {
+                //file is deleted anyway
+            }
+            file.delete();
+            fileStream = null;
+            file = null;
+        }
+    }
+
+}
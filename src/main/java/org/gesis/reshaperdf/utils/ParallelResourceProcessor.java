@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * @author Felix Bensmann
+ * Processes the resources of a sorted N-Triples file on several threads. The
+ * calling thread reads the resources and copies them into batches, the
+ * batches are handled on a pool of workers. The results are written by the
+ * calling thread in the order the batches were submitted, so the output
+ * keeps the order of the input. Only a few batches per thread are pending at
+ * a time, the reader waits for the oldest one otherwise.
+ *
+ * The copies are held in memory, a batch is dispatched when it reaches a
+ * number of statements. A resource that the reader has spilled to disk is
+ * not copied into a batch. The pending batches are written first, then the
+ * resource is handled and written on the calling thread, so it is never
+ * held in memory as a whole. With a single thread no copies are made, every
+ * resource is handled and written as soon as it has been read.
+ * @param <R> Type of the result of a batch.
+ */
+public class ParallelResourceProcessor<R> {
+
+    private static final int BATCH_STATEMENTS = 10000;
+
+    private final int threads;
+    private final int spillThreshold;
+    private final IResourceBatchHandler<R> handler;
+    private ExecutorService executor = null;
+    private final Queue<Future<R>> pending = new ArrayDeque<Future<R>>();
+    private List<ResourceBuffer> batch = new ArrayList<ResourceBuffer>();
+    private int batchStatements = 0;
+    private long batchStart = 0;
+    private long resources = 0;
+
+    /**
+     * Ctor, uses the default spill threshold.
+     *
+     * @param threads Number of worker threads.
+     * @param handler Handles the batches and writes their results.
+     */
+    public ParallelResourceProcessor(int threads, IResourceBatchHandler<R> handler) {
+        this(threads, ResourceBuffer.getDefaultSpillThreshold(), handler);
+    }
+
+    /**
+     * Ctor
+     *
+     * @param threads Number of worker threads.
+     * @param spillThreshold Number of statements of a resource held in
+     * memory, see ResourceBuffer.
+     * @param handler Handles the batches and writes their results.
+     */
+    public ParallelResourceProcessor(int threads, int spillThreshold, IResourceBatchHandler<R> handler) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1.");
+        }
+        this.threads = threads;
+        this.spillThreshold = spillThreshold;
+        this.handler = handler;
+    }
+
+    /**
+     * Processes all resources of a file.
+     *
+     * @param inFile Sorted N-Triples file.
+     * @throws IOException
+     * @throws RDFHandlerException
+     * @throws InterruptedException
+     */
+    public void process(File inFile) throws IOException, RDFHandlerException, InterruptedException {
+        ResourcePullReader reader = new ResourcePullReader(inFile, spillThreshold);
+        reader.load();
+        try {
+            while (!reader.isEmpty()) {
+                submit(reader.peekResource());
+                reader.removeHead();
+            }
+            finish();
+        } finally {
+            reader.close();
+            close();
+        }
+    }
+
+    /**
+     * Processes the resources of a file whose subjects are on a list. The
+     * other resources are skipped by the reading thread, if the file has an
+     * index by jumping ahead, see ResourcePullReader.useIndex(). Reading
+     * stops after the last listed subject.
+     *
+     * @param inFile Sorted N-Triples file.
+     * @param subjects String values of the subjects, sorted and without
+     * duplicates.
+     * @throws IOException
+     * @throws RDFHandlerException
+     * @throws InterruptedException
+     */
+    public void process(File inFile, List<String> subjects) throws IOException, RDFHandlerException, InterruptedException {
+        ResourcePullReader reader = new ResourcePullReader(inFile, spillThreshold);
+        reader.useIndex();
+        reader.load();
+        try {
+            int next = 0;
+            while (!reader.isEmpty() && next < subjects.size()) {
+                String subject = subjects.get(next);
+                ResourceBuffer res = reader.peekResource();
+                int vgl = res.getSubject().stringValue().compareTo(subject);
+                if (vgl < 0) {
+                    if (!reader.seek(subject)) {
+                        reader.removeHead();
+                    }
+                } else if (vgl == 0) {
+                    submit(res);
+                    reader.removeHead();
+                } else {
+                    next++;
+                }
+            }
+            finish();
+        } finally {
+            reader.close();
+            close();
+        }
+    }
+
+    /**
+     * Submits a resource. The resource is copied or handled right away, the
+     * buffer can be reused afterwards. May write the results of earlier
+     * batches.
+     *
+     * @param res
+     * @throws IOException
+     * @throws RDFHandlerException
+     * @throws InterruptedException
+     */
+    public void submit(ResourceBuffer res) throws IOException, RDFHandlerException, InterruptedException {
+        if (threads == 1) {
+            handler.handleResource(res, resources);
+            resources++;
+        } else if (res.isSpilled()) {
+            //written in order after everything submitted before
+            dispatch();
+            while (!pending.isEmpty()) {
+                writeNext();
+            }
+            handler.handleResource(res, resources);
+            resources++;
+            batchStart = resources;
+        } else {
+            add(res);
+        }
+    }
+
+    /**
+     * Copies a resource that is held in memory into the current batch and
+     * dispatches the batch when it is full.
+     */
+    private void add(ResourceBuffer res) throws IOException, RDFHandlerException, InterruptedException {
+        ResourceBuffer copy = new ResourceBuffer(spillThreshold);
+        for (int i = 0; i < res.sizeInMemory(); i++) {
+            copy.add(res.get(i));
+        }
+        batch.add(copy);
+        batchStatements += copy.sizeInMemory();
+        resources++;
+        if (batchStatements >= BATCH_STATEMENTS) {
+            dispatch();
+        }
+    }
+
+    /**
+     * Hands the current batch to the pool and writes finished batches while
+     * too many are pending.
+     */
+    private void dispatch() throws IOException, RDFHandlerException, InterruptedException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "resource worker");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        final List<ResourceBuffer> resList = batch;
+        final long first = batchStart;
+        pending.add(executor.submit(new Callable<R>() {
+            @Override
+            public R call() throws Exception {
+                try {
+                    return handler.handleBatch(resList, first);
+                } finally {
+                    for (ResourceBuffer res : resList) {
+                        res.clear();
+                    }
+                }
+            }
+        }));
+        batch = new ArrayList<ResourceBuffer>();
+        batchStatements = 0;
+        batchStart = resources;
+        while (pending.size() > 2 * threads) {
+            writeNext();
+        }
+    }
+
+    /**
+     * Waits for the oldest pending batch and writes its result.
+     */
+    private void writeNext() throws IOException, RDFHandlerException, InterruptedException {
+        R result;
+        try {
+            result = pending.remove().get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RDFHandlerException) {
+                throw (RDFHandlerException) cause;
+            }
+            throw new IOException("When processing a batch of resources", cause);
+        }
+        handler.writeResult(result);
+    }
+
+    /**
+     * Dispatches the last batch and writes all pending results.
+     *
+     * @throws IOException
+     * @throws RDFHandlerException
+     * @throws InterruptedException
+     */
+    public void finish() throws IOException, RDFHandlerException, InterruptedException {
+        dispatch();
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+        close();
+    }
+
+    /**
+     * Stops the workers. Batches that have not been written are dropped.
+     */
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        pending.clear();
+        for (ResourceBuffer res : batch) {
+            res.clear();
+        }
+        batch.clear();
+        batchStatements = 0;
+    }
+
+    /**
+     * Processes all resources of a file with handlers that write
+     * N-Triples. With several threads every batch gets its own handler that
+     * writes to an OutputBuffer, the output of the batches is appended to the
+     * stream in order. Spilled resources get a handler of their own that
+     * writes to the stream directly. With a single thread one handler writes
+     * to the stream directly.
+     *
+     * @param inFile Sorted N-Triples file.
+     * @param out Output stream, is not closed.
+     * @param threads Number of worker threads.
+     * @param factory Creates the handlers.
+     * @throws IOException
+     * @throws RDFHandlerException
+     * @throws InterruptedException
+     */
+    public static void process(File inFile, final OutputStream out, int threads, final IResourceHandlerFactory factory) throws IOException, RDFHandlerException, InterruptedException {
+        if (threads == 1) {
+            ResourcePullReader reader = new ResourcePullReader(inFile);
+            reader.load();
+            try {
+                IResourceHandler resHandler = factory.createHandler(out, 0);
+                resHandler.onStart();
+                while (!reader.isEmpty()) {
+                    resHandler.handleResource(reader.peekResource());
+                    reader.removeHead();
+                }
+                resHandler.onStop();
+            } finally {
+                reader.close();
+            }
+            return;
+        }
+        ParallelResourceProcessor<OutputBuffer> processor = new ParallelResourceProcessor<OutputBuffer>(threads, new IResourceBatchHandler<OutputBuffer>() {
+
+            @Override
+            public OutputBuffer handleBatch(List<ResourceBuffer> resources, long firstResource) throws IOException {
+                OutputBuffer result = new OutputBuffer();
+                IResourceHandler resHandler = factory.createHandler(result, firstResource);
+                resHandler.onStart();
+                for (ResourceBuffer res : resources) {
+                    resHandler.handleResource(res);
+                }
+                resHandler.onStop();
+                return result;
+            }
+
+            @Override
+            public void writeResult(OutputBuffer result) throws IOException {
+                try {
+                    result.writeTo(out);
+                } finally {
+                    result.delete();
+                }
+            }
+
+            @Override
+            public void handleResource(ResourceBuffer res, long index) throws IOException {
+                IResourceHandler resHandler = factory.createHandler(out, index);
+                resHandler.onStart();
+                resHandler.handleResource(res);
+                resHandler.onStop();
+            }
+        });
+        processor.process(inFile);
+    }
+
+}
@@ -19,43 +19,100 @@ package org.gesis.reshaperdf.utils;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.io.InputStream;
+import java.util.Arrays;
+import org.gesis.reshaperdf.utils.sort.NTriplesScanner;
 import org.openrdf.model.Statement;
-import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
-import org.openrdf.rio.RDFParseException;
-import org.openrdf.rio.RDFParser;
-import org.openrdf.rio.Rio;
-import org.openrdf.rio.helpers.NTriplesParserSettings;
 
 /**
  * @author Felix Bensmann A special kind of RDFReader that can be polled. This
- * is achieved by using a producer consumer approach. A thread that uses a
- * standard reader fills a threadsafe queue. Data can be read from the queue by a
- * consumer. Both producer and consumer wait on the queue until they can finish
- * their work.
+ * is achieved by using a producer consumer approach. A thread that uses an
+ * NTriplesScanner fills batches of statements and passes them through a
+ * single producer single consumer ring buffer. The consumer takes a whole
+ * batch at once and delivers its statements one by one, so the threads only
+ * synchronize once per batch. Both producer and consumer wait on the buffer
+ * until they can finish their work.
+ * The producer ends the stream with an empty batch, so the consumer never
+ * waits longer than the producer needs. If the producer fails, the consumer
+ * throws a PullReaderException when it reaches the end of the stream.
  */
-public class PullReader {
+public class PullReader implements IPullReader<Statement> {
 
-    private static final int BUFFER_SIZE = 100000;
+    private static final int BATCH_SIZE = 1024;
+    //number of batches in the ring buffer
+    private static final int BUFFER_SIZE = 128;
+    //marks the end of the stream
+    private static final Statement[] END = new Statement[0];
 
     private File file = null;
-    private BlockingQueue<Statement> queue = null;
-    private boolean fileFinished = false;
+    private BatchRingBuffer<Statement[]> queue = null;
+    //cause of a failed producer, written before the end is published
+    private volatile Throwable failure = null;
+    private boolean ended = false;
     private Statement current = null;
-    private RDFParser parser = null;
+    //batch being filled by the producer
+    private Statement[] fillBatch = new Statement[BATCH_SIZE];
+    private int fillCount = 0;
+    //batch being read by the consumer
+    private Statement[] batch = null;
+    private int batchPos = 0;
+    private NTriplesScanner parser = null;
     private boolean loaded = false;
+    private long start = 0;
 
     public PullReader(File file) {
+        this(file, false);
+    }
+
+    /**
+     * Ctor
+     *
+     * @param file N-Triples file to read.
+     * @param preserveBNodeIds True to keep the blank node ids of the file
+     * instead of generating new ones.
+     */
+    public PullReader(File file, boolean preserveBNodeIds) {
+        this(file, preserveBNodeIds, false);
+    }
+
+    /**
+     * Ctor
+     *
+     * @param file N-Triples file to read.
+     * @param preserveBNodeIds True to keep the blank node ids of the file
+     * instead of generating new ones.
+     * @param lazy True to deliver ByteStatements, whose terms are decoded
+     * only when accessed. Suits readers that look at a single position.
+     */
+    public PullReader(File file, boolean preserveBNodeIds, boolean lazy) {
+        this(file, preserveBNodeIds, lazy, 0, null);
+    }
+
+    /**
+     * Ctor for a reader that starts in the middle of an uncompressed file,
+     * e.g. at an offset taken from a SubjectIndex.
+     *
+     * @param file N-Triples file to read.
+     * @param preserveBNodeIds True to keep the blank node ids of the file
+     * instead of generating new ones.
+     * @param lazy True to deliver ByteStatements.
+     * @param start Byte offset of the line to start with, must be 0 for a
+     * compressed file.
+     * @param bnodePrefix Prefix of generated blank node ids, null for a new
+     * one. Readers on the same file with the same prefix generate the same
+     * ids.
+     */
+    public PullReader(File file, boolean preserveBNodeIds, boolean lazy, long start, String bnodePrefix) {
+        if (start > 0 && CompressedIO.isCompressed(file)) {
+            throw new IllegalArgumentException("Compressed file " + file.getName() + " cannot be read from an offset.");
+        }
         this.file = file;
-        //queue = new LinkedBlockingQueue<Statement>(100000);
-        queue = new ArrayBlockingQueue<Statement>(BUFFER_SIZE);
-        parser = Rio.createParser(RDFFormat.NTRIPLES);
-        parser.getParserConfig().addNonFatalError(NTriplesParserSettings.FAIL_ON_NTRIPLES_INVALID_LINES);
+        this.start = start;
+        queue = new BatchRingBuffer<Statement[]>(BUFFER_SIZE);
+        parser = new NTriplesScanner(preserveBNodeIds, lazy);
+        parser.setBNodePrefix(bnodePrefix);
         parser.setRDFHandler(new RDFHandler() {
 
             @Override
@@ -66,7 +123,7 @@ public class PullReader {
             @Override
             public void endRDF() throws RDFHandlerException {
                 //System.out.println("Pull reader for " + PullReader.this.file.getAbsolutePath() + " finished");
-                fileFinished = true;
+                flush();
             }
 
             @Override
@@ -74,17 +131,17 @@ public class PullReader {
             }
 
             /**
-             * Handles a statement by appending it to the queue.
+             * Handles a statement by appending it to the current batch. Full
+             * batches are passed to the queue.
              *
              * @param st
              * @throws RDFHandlerException
              */
             @Override
             public void handleStatement(Statement st) throws RDFHandlerException {
-                try {
-                    queue.put(st);
-                } catch (InterruptedException ex) {
-                    System.err.println(ex);
+                fillBatch[fillCount++] = st;
+                if (fillCount == BATCH_SIZE) {
+                    flush();
                 }
             }
 
@@ -105,26 +162,33 @@ public class PullReader {
 
                 @Override
                 public void run() {
-
                     try {
-                        FileInputStream fis = new FileInputStream(file);
-                        parser.parse(fis, "");
-                        fis.close();
-                        fileFinished = true;
-                    } catch (IOException ex) {
-                        System.err.println(Thread.currentThread().getName() + "threw an exception. "+ex);
-                        System.exit(-2);
-                    } catch (RDFParseException ex) {
-                        System.err.println(Thread.currentThread().getName() + "threw an exception. "+ex);
-                        System.exit(-2);
-                    } catch (RDFHandlerException ex) {
-                        System.err.println(Thread.currentThread().getName() + "threw an exception. "+ex);
-                        System.exit(-2);
+                        InputStream fis;
+                        if (start > 0) {
+                            FileInputStream in = new FileInputStream(file);
+                            in.getChannel().position(start);
+                            fis = in;
+                        } else {
+                            fis = CompressedIO.openInputStream(file);
+                        }
+                        try {
+                            parser.parse(fis);
+                        } finally {
+                            fis.close();
+                        }
+                        flush();
+                    } catch (Throwable ex) {
+                        //handed over to the consumer
+                        failure = ex;
+                    }
+                    try {
+                        queue.put(END);
+                    } catch (InterruptedException ex) {
+                        //nobody can wait for the end of a stream whose producer is interrupted
                     }
                 }
             });
             t.setName("PullReader thread for " + getFile().getAbsolutePath());
-            t.setUncaughtExceptionHandler(new MyUncaughtExceptionHandler());
             t.setDaemon(true);
             t.start();
             this.removeHead();
@@ -132,15 +196,36 @@ public class PullReader {
         }
     }
 
+    /**
+     * Passes the statements collected by the producer to the queue.
+     *
+     * @throws RDFHandlerException If the producer has been interrupted or the
+     * reader has been closed, this stops the parser.
+     */
+    private void flush() throws RDFHandlerException {
+        if (fillCount == 0) {
+            return;
+        }
+        try {
+            if (!queue.put(fillCount == BATCH_SIZE ? fillBatch : Arrays.copyOf(fillBatch, fillCount))) {
+                throw new RDFHandlerException("Reader has been closed.");
+            }
+        } catch (InterruptedException ex) {
+            throw new RDFHandlerException(ex);
+        }
+        fillBatch = new Statement[BATCH_SIZE];
+        fillCount = 0;
+    }
+
     /**
      * Determines whether there are statements available from this reader.
      *
      * @return True if all statements from the file are read and the queue is
      * empty.
      */
+    @Override
     public boolean isEmpty() {
-        return fileFinished && queue.isEmpty() && current == null;
-
+        return ended && current == null;
     }
 
     /**
@@ -148,36 +233,58 @@ public class PullReader {
      *
      * @return
      */
+    @Override
     public Statement peek() {
         return current;
     }
 
     /**
-     * Removes the first element.
+     * Removes the first element. Waits for the producer if the current batch
+     * is exhausted.
+     *
+     * @throws PullReaderException If the producer failed to read the file.
      */
+    @Override
     public void removeHead() {
-        //uses a workaround to compensate that there is no blocking peek method in the queue
+        if (batch != null && batchPos < batch.length) {
+            current = batch[batchPos];
+            batch[batchPos++] = null;
+            return;
+        }
+        current = null;
+        if (ended) {
+            return;
+        }
         try {
-            current = queue.poll(5, TimeUnit.SECONDS);
-            if (current == null && !fileFinished) {
-                System.out.println(Thread.currentThread().getName() +"on file "+file.getName()+" second chance for producer.");
-                current = queue.poll(20, TimeUnit.SECONDS);
-                if (current == null && !fileFinished) {
-                    System.err.println(Thread.currentThread().getName()+": Unable to retrieve statement from pull reader " + file.getAbsolutePath());
-                    System.exit(-1);
-                }
-            }
+            batch = queue.take();
         } catch (InterruptedException ex) {
-            System.err.println(ex);
+            Thread.currentThread().interrupt();
+            throw new PullReaderException("Interrupted while reading " + file.getAbsolutePath(), ex);
         }
+        if (batch == END) {
+            ended = true;
+            batch = null;
+            if (failure != null) {
+                throw new PullReaderException("When reading " + file.getAbsolutePath() + ": " + failure.getMessage(), failure);
+            }
+            return;
+        }
+        current = batch[0];
+        batch[0] = null;
+        batchPos = 1;
     }
 
     public File getFile() {
         return file;
     }
 
+    /**
+     * Releases the buffered statements and stops the producer if it has not
+     * finished yet.
+     */
     public void close() {
-        queue = null;
+        queue.close();
+        batch = null;
     }
 
 }
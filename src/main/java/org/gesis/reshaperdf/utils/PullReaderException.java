@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+/**
+ * @author Felix Bensmann
+ * Thrown by a PullReader on the consumer side if its producer thread could
+ * not read the file. Unchecked, because the IPullReader methods do not
+ * declare exceptions.
+ */
+public class PullReaderException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PullReaderException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
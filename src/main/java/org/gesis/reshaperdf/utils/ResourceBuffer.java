@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.gesis.reshaperdf.utils.sort.RunReader;
+import org.gesis.reshaperdf.utils.sort.RunWriter;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * @author Felix Bensmann
+ * The statements of one resource in a growable array that is reused for the
+ * following resources. Readers hand out the buffer as a view of the current
+ * resource, which is only valid until the reader moves on. Use toArray() to
+ * keep a resource.
+ *
+ * Whether a statement belongs to the resource is decided on the subject
+ * terms. Consecutive subjects are usually the same object or, when read
+ * lazily, byte ranges that are compared without decoding them.
+ *
+ * Only the first statements up to the spill threshold are held in memory.
+ * Further statements of an oversized resource are written to a temporary
+ * file in the binary run format of the sort, which keeps blank node ids.
+ * read() delivers all statements and can be called repeatedly, get() only
+ * reaches the statements in memory. Buffers created without a threshold use
+ * the default one, see setDefaultSpillThreshold().
+ */
+public class ResourceBuffer {
+
+    public static final int DEFAULT_SPILL_THRESHOLD = 100000;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    //threshold of the readers that are not given one
+    private static volatile int defaultSpillThreshold = DEFAULT_SPILL_THRESHOLD;
+
+    private final int spillThreshold;
+    private final File spillDir;
+    private Statement[] statements = new Statement[INITIAL_CAPACITY];
+    private int size = 0;
+    private File spillFile = null;
+    private OutputStream spillStream = null;
+    private RunWriter spillWriter = null;
+    private int spilled = 0;
+    private final List<RunReader> spillReaders = new ArrayList<RunReader>();
+
+    /**
+     * Ctor, uses the default spill threshold.
+     */
+    public ResourceBuffer() {
+        this(getDefaultSpillThreshold());
+    }
+
+    /**
+     * Ctor
+     * @param spillThreshold Number of statements held in memory, the
+     * remaining statements of a resource are spilled to disk.
+     */
+    public ResourceBuffer(int spillThreshold) {
+        this(spillThreshold, null);
+    }
+
+    /**
+     * Ctor
+     * @param spillThreshold Number of statements held in memory, the
+     * remaining statements of a resource are spilled to disk.
+     * @param spillDir Directory of the spill file, null for the default
+     * temporary directory.
+     */
+    public ResourceBuffer(int spillThreshold, File spillDir) {
+        checkSpillThreshold(spillThreshold);
+        this.spillThreshold = spillThreshold;
+        this.spillDir = spillDir;
+    }
+
+    /**
+     * Spill threshold of the buffers whose creator does not pass one, e.g.
+     * the buffers of the commands.
+     * @return
+     */
+    public static int getDefaultSpillThreshold() {
+        return defaultSpillThreshold;
+    }
+
+    /**
+     * Sets the spill threshold of the buffers created afterwards without an
+     * explicit one.
+     * @param spillThreshold
+     */
+    public static void setDefaultSpillThreshold(int spillThreshold) {
+        checkSpillThreshold(spillThreshold);
+        defaultSpillThreshold = spillThreshold;
+    }
+
+    private static void checkSpillThreshold(int spillThreshold) {
+        if (spillThreshold < 1) {
+            throw new IllegalArgumentException("Spill threshold must be at least 1.");
+        }
+    }
+
+    /**
+     * Number of statements of the resource, including spilled ones.
+     * @return
+     */
+    public int size() {
+        return size + spilled;
+    }
+
+    /**
+     * Number of statements held in memory, these are reachable by get().
+     * @return
+     */
+    public int sizeInMemory() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Determines whether a part of the resource has been spilled to disk.
+     * @return
+     */
+    public boolean isSpilled() {
+        return spilled > 0;
+    }
+
+    /**
+     * Returns a statement of the resource.
+     * @param i Index, less than sizeInMemory().
+     * @return
+     */
+    public Statement get(int i) {
+        if (i >= size) {
+            throw new IndexOutOfBoundsException("Statement " + i + " is not in memory, use read().");
+        }
+        return statements[i];
+    }
+
+    /**
+     * Subject of the resource.
+     * @return The subject or null if the buffer is empty.
+     */
+    public Resource getSubject() {
+        return size == 0 ? null : statements[0].getSubject();
+    }
+
+    /**
+     * Determines whether a statement has the subject of this resource.
+     * @param st
+     * @return True if so or if the buffer is empty.
+     */
+    public boolean belongsTo(Statement st) {
+        if (size == 0) {
+            return true;
+        }
+        Resource subject = statements[0].getSubject();
+        Resource other = st.getSubject();
+        return subject == other || subject.equals(other);
+    }
+
+    /**
+     * Appends a statement, spills it if the threshold has been reached.
+     * @param st
+     * @throws IllegalStateException If the spill file cannot be written.
+     */
+    public void add(Statement st) {
+        if (size < spillThreshold) {
+            if (size == statements.length) {
+                statements = Arrays.copyOf(statements, Math.min(2 * size, spillThreshold));
+            }
+            statements[size++] = st;
+            return;
+        }
+        try {
+            if (spillWriter == null) {
+                spillFile = File.createTempFile("resource", ".run", spillDir);
+                spillFile.deleteOnExit();
+                spillStream = new FileOutputStream(spillFile);
+                spillWriter = new RunWriter(spillStream);
+            }
+            spillWriter.handleStatement(st);
+            spilled++;
+        } catch (IOException ex) {
+            throw new IllegalStateException("When spilling resource " + getSubject(), ex);
+        } catch (RDFHandlerException ex) {
+            throw new IllegalStateException("When spilling resource " + getSubject(), ex);
+        }
+    }
+
+    /**
+     * Opens a reader on all statements of the resource, the spilled ones
+     * included. Can be called repeatedly, e.g. to write a resource after
+     * examining it. The reader is only valid until the buffer is cleared.
+     * @return
+     * @throws IllegalStateException If the spill file cannot be read.
+     */
+    public IPullReader<Statement> read() {
+        RunReader spillReader = null;
+        if (spillWriter != null) {
+            try {
+                spillWriter.endRDF();
+                spillReader = new RunReader(spillFile, new FileInputStream(spillFile));
+                spillReaders.add(spillReader);
+                spillReader.load();
+            } catch (IOException ex) {
+                throw new IllegalStateException("When reading spilled resource " + getSubject(), ex);
+            } catch (RDFHandlerException ex) {
+                throw new IllegalStateException("When reading spilled resource " + getSubject(), ex);
+            }
+        }
+        final RunReader spillPart = spillReader;
+        return new IPullReader<Statement>() {
+            private int pos = 0;
+
+            @Override
+            public Statement peek() {
+                if (pos < size) {
+                    return statements[pos];
+                }
+                return spillPart == null ? null : spillPart.peek();
+            }
+
+            @Override
+            public void removeHead() {
+                if (pos < size) {
+                    pos++;
+                } else if (spillPart != null) {
+                    spillPart.removeHead();
+                }
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return peek() == null;
+            }
+        };
+    }
+
+    /**
+     * Empties the buffer and deletes the spill file. Large buffers are
+     * shrunk, so a single huge resource does not keep its memory.
+     */
+    public void clear() {
+        if (statements.length > INITIAL_CAPACITY && size < statements.length / 4) {
+            statements = new Statement[Math.max(INITIAL_CAPACITY, statements.length / 2)];
+        } else {
+            Arrays.fill(statements, 0, size, null);
+        }
+        size = 0;
+        if (spillWriter != null) {
+            for (RunReader reader : spillReaders) {
+                try {
+                    reader.close();
+                } catch (IOException ex) {
+                    //file is deleted anyway
+                }
+            }
+            spillReaders.clear();
+            try {
+                spillStream.close();
+            } catch (IOException ex) {
+                //file is deleted anyway
+            }
+            spillFile.delete();
+            spillWriter = null;
+            spillStream = null;
+            spillFile = null;
+            spilled = 0;
+        }
+    }
+
+    /**
+     * Copies the statements of the resource, including spilled ones.
+     * @return
+     */
+    public Statement[] toArray() {
+        if (spilled == 0) {
+            return Arrays.copyOf(statements, size);
+        }
+        Statement[] arr = new Statement[size()];
+        IPullReader<Statement> reader = read();
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = reader.peek();
+            reader.removeHead();
+        }
+        return arr;
+    }
+
+}
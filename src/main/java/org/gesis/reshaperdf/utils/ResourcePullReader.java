@@ -18,30 +18,53 @@
 package org.gesis.reshaperdf.utils;
 
 import java.io.File;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.io.IOException;
+import org.gesis.reshaperdf.utils.sort.NTriplesScanner;
+import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 
 /**
  * @author Felix Bensmann
  * Uses a PullReader to summarize statements in a sorted N-Triples file and
- * provide the together as resource.
+ * provide the together as resource. The statements are read lazily and
+ * collected in a ResourceBuffer that is reused for every resource, see
+ * peekResource(). peek() returns a copy for callers that keep resources.
+ * Callers that read every resource only once can use streamResource(), which
+ * does not buffer the resource at all.
+ *
+ * With a SubjectIndex the reader can jump ahead to a given subject, see
+ * seek(). The statements after a jump are read by a new PullReader that
+ * generates the same blank node ids. Compressed files cannot be read from an
+ * offset, they are always read sequentially.
  */
-public class ResourcePullReader {
+public class ResourcePullReader implements IPullReader<Statement[]> {
 
     private File inFile = null;
     private PullReader pullReader = null;
-    private Queue<Statement> queue = null;
-    private String currentResource = null;
+    private final ResourceBuffer buffer;
+    private Statement[] copy = null;
+    private IPullReader<Statement> stream = null;
+    private final String bnodePrefix = NTriplesScanner.newBNodePrefix();
+    private SubjectIndex index = null;
 
     /**
      * Ctor
      * @param file 
      */
     public ResourcePullReader(File file) {
+        this(file, ResourceBuffer.getDefaultSpillThreshold());
+    }
+
+    /**
+     * Ctor
+     * @param file
+     * @param spillThreshold Number of statements of a resource held in
+     * memory, see ResourceBuffer.
+     */
+    public ResourcePullReader(File file, int spillThreshold) {
         this.inFile = file;
-        pullReader = new PullReader(file);
-        queue = new LinkedList<Statement>();
+        pullReader = new PullReader(file, false, true, 0, bnodePrefix);
+        buffer = new ResourceBuffer(spillThreshold);
     }
 
     public File getFile() {
@@ -52,40 +75,169 @@ public class ResourcePullReader {
         pullReader.load();
     }
 
-    public boolean isEmpty() {
-        return pullReader.isEmpty() && queue.isEmpty();
+    /**
+     * Sets the index of the file, enables seek().
+     * @param index The index or null.
+     * @throws IllegalArgumentException If the file is compressed.
+     */
+    public void setIndex(SubjectIndex index) {
+        if (index != null && CompressedIO.isCompressed(inFile)) {
+            throw new IllegalArgumentException("Compressed file " + inFile.getName() + " cannot be read from an index.");
+        }
+        this.index = index;
     }
 
     /**
-     * Delivers the first resource but does not remove it.
-     * @return 
+     * Loads the index of the file if it has an up to date one and enables
+     * seek(). Compressed files are never read from an index.
+     * @return True if an index is used.
+     * @throws IOException If the index cannot be read.
      */
-    public Statement[] peek() {
-        if (this.isEmpty()) {
-            return null;
+    public boolean useIndex() throws IOException {
+        SubjectIndex idx = SubjectIndex.load(inFile);
+        if (idx == null) {
+            return false;
         }
-        if (currentResource == null) {
-            currentResource = pullReader.peek().getSubject().stringValue();
+        System.err.println("Using index " + SubjectIndex.getIndexFile(inFile).getName() + ".");
+        setIndex(idx);
+        return true;
+    }
+
+    /**
+     * Jumps to the last indexed resource whose subject is not greater than
+     * the given one, if it lies ahead of the first resource. The resources in
+     * between are skipped, they are all less than the given subject. Must not
+     * be called while a resource is streamed.
+     * @param subject String value of a subject.
+     * @return True if the reader has jumped.
+     */
+    public boolean seek(String subject) {
+        if (index == null) {
+            return false;
         }
-        if (queue.isEmpty() && !pullReader.isEmpty()) {
+        int entry = index.floor(subject);
+        ResourceBuffer res = peekResource();
+        if (entry < 0 || res == null || index.getSubject(entry).compareTo(res.getSubject().stringValue()) <= 0) {
+            return false;
+        }
+        pullReader.close();
+        buffer.clear();
+        copy = null;
+        pullReader = new PullReader(inFile, false, true, index.getOffset(entry), bnodePrefix);
+        pullReader.load();
+        return true;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return pullReader.isEmpty() && buffer.isEmpty();
+    }
+
+    /**
+     * Delivers the first resource but does not remove it. The buffer is
+     * reused, its content is only valid until removeHead() is called.
+     * @return The resource or null if the reader is exhausted.
+     */
+    public ResourceBuffer peekResource() {
+        if (buffer.isEmpty()) {
             //read whole resource if available
-            while (!pullReader.isEmpty() && currentResource.equals(pullReader.peek().getSubject().stringValue())) {
-                queue.add(pullReader.peek());
+            while (!pullReader.isEmpty() && buffer.belongsTo(pullReader.peek())) {
+                buffer.add(pullReader.peek());
                 pullReader.removeHead();
             }
-            if (!pullReader.isEmpty()) {
-                currentResource = pullReader.peek().getSubject().stringValue();
+        }
+        return buffer.isEmpty() ? null : buffer;
+    }
+
+    /**
+     * Delivers the statements of the first resource one by one without
+     * buffering them. The resource is removed by removeHead(), remaining
+     * statements are skipped then. Must not be mixed with the other methods
+     * for the same resource.
+     * @return
+     */
+    public IPullReader<Statement> streamResource() {
+        if (stream == null) {
+            if (!buffer.isEmpty()) {
+                stream = buffer.read();
+            } else {
+                final Resource subject = pullReader.isEmpty() ? null : pullReader.peek().getSubject();
+                stream = new IPullReader<Statement>() {
+                    @Override
+                    public Statement peek() {
+                        if (pullReader.isEmpty()) {
+                            return null;
+                        }
+                        Statement st = pullReader.peek();
+                        Resource other = st.getSubject();
+                        return other == subject || other.equals(subject) ? st : null;
+                    }
+
+                    @Override
+                    public void removeHead() {
+                        if (peek() != null) {
+                            pullReader.removeHead();
+                        }
+                    }
+
+                    @Override
+                    public boolean isEmpty() {
+                        return peek() == null;
+                    }
+                };
             }
         }
-        return queue.toArray(new Statement[queue.size()]);
+        return stream;
+    }
 
+    /**
+     * Determines whether another resource follows the first one.
+     * @return 
+     */
+    public boolean hasNextResource() {
+        peekResource();
+        return !pullReader.isEmpty();
     }
 
     /**
-     * Removes the first resource from the queue.
+     * Delivers a copy of the first resource but does not remove it.
+     * @return 
      */
+    @Override
+    public Statement[] peek() {
+        if (copy == null) {
+            ResourceBuffer res = peekResource();
+            if (res == null) {
+                return null;
+            }
+            copy = res.toArray();
+        }
+        return copy;
+    }
+
+    /**
+     * Removes the first resource.
+     */
+    @Override
     public void removeHead() {
-        queue.clear();
+        if (stream != null) {
+            while (!stream.isEmpty()) {
+                stream.removeHead();
+            }
+            stream = null;
+        } else {
+            peekResource();
+        }
+        buffer.clear();
+        copy = null;
+    }
+
+    /**
+     * Stops reading and releases the spill file of the current resource.
+     */
+    public void close() {
+        buffer.clear();
+        pullReader.close();
     }
 
 }
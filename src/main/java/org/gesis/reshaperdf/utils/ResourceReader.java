@@ -19,33 +19,38 @@ package org.gesis.reshaperdf.utils;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.LinkedList;
-import java.util.Queue;
 import org.openrdf.model.Statement;
 import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
+import org.gesis.reshaperdf.utils.sort.NTriplesScanner;
 import org.openrdf.rio.RDFParseException;
-import org.openrdf.rio.RDFParser;
-import org.openrdf.rio.helpers.NTriplesParserSettings;
-import org.openrdf.rio.ntriples.NTriplesParser;
 
 /**
  * @author Felix Bensmann
- * Reader that uses NTriplesParster to parse sorted NT files. Collects
+ * Reader that uses NTriplesScanner to parse sorted NT files. Collects
  * statements that belong to the same resource. These resources can then be
- * handled by a resource handler to be set beforehand.
+ * handled by a resource handler to be set beforehand. Statements are scanned
+ * lazily and collected in a ResourceBuffer that is reused for every
+ * resource.
  */
 public class ResourceReader {
 
     private IResourceHandler resHandler = null;
-    private RDFParser ntParser = null;
-    private Queue<Statement> resBuffer = null;
-    private String currentResource = null; //subject string of current resource
+    private NTriplesScanner ntParser = null;
+    private final ResourceBuffer resBuffer;
 
     public ResourceReader() {
-        ntParser = new NTriplesParser();
-        ntParser.getParserConfig().addNonFatalError(NTriplesParserSettings.FAIL_ON_NTRIPLES_INVALID_LINES);
-        resBuffer = new LinkedList<Statement>();
+        this(ResourceBuffer.getDefaultSpillThreshold());
+    }
+
+    /**
+     * Ctor
+     * @param spillThreshold Number of statements of a resource held in
+     * memory, see ResourceBuffer.
+     */
+    public ResourceReader(int spillThreshold) {
+        resBuffer = new ResourceBuffer(spillThreshold);
+        ntParser = new NTriplesScanner(false, true);
         ntParser.setRDFHandler(new RDFHandler() {
 
             @Override
@@ -57,7 +62,7 @@ public class ResourceReader {
             @Override
             public void endRDF() throws RDFHandlerException {
                 if (!resBuffer.isEmpty()) {
-                    resHandler.handleResource(resBuffer.toArray(new Statement[resBuffer.size()]));
+                    resHandler.handleResource(resBuffer);
                     resBuffer.clear();
                 }
                 resHandler.onStop();
@@ -70,19 +75,11 @@ public class ResourceReader {
 
             @Override
             public void handleStatement(Statement st) throws RDFHandlerException {
-                if (currentResource == null) { //statement is the very first one
-                    currentResource = st.getSubject().stringValue();
-                    resBuffer.add(st);
-                } else { //statement is not the first
-                    if (st.getSubject().stringValue().equals(currentResource)) {//stmt belongs to the same resource
-                        resBuffer.add(st);
-                    } else { //stmt belongs to a new resource
-                        resHandler.handleResource(resBuffer.toArray(new Statement[resBuffer.size()]));
-                        currentResource = st.getSubject().stringValue();
-                        resBuffer.clear();
-                        resBuffer.add(st);
-                    }
+                if (!resBuffer.belongsTo(st)) { //stmt belongs to a new resource
+                    resHandler.handleResource(resBuffer);
+                    resBuffer.clear();
                 }
+                resBuffer.add(st);
             }
 
             @Override
@@ -98,7 +95,7 @@ public class ResourceReader {
     }
 
     public void parse(InputStream is, String baseURI) throws RDFParseException, RDFHandlerException, IOException {
-        ntParser.parse(is, baseURI);
+        ntParser.parse(is);
     }
 
 }
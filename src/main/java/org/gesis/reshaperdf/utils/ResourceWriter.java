@@ -19,7 +19,6 @@ package org.gesis.reshaperdf.utils;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import org.openrdf.model.Statement;
@@ -34,8 +33,8 @@ public class ResourceWriter {
     private CheckedNTriplesWriter writer = null;
     private OutputStream out = null;
     
-    public ResourceWriter(File file, IStatementFilter filter) throws FileNotFoundException, RDFHandlerException{
-        out = new FileOutputStream(file);
+    public ResourceWriter(File file, IStatementFilter filter) throws FileNotFoundException, IOException, RDFHandlerException{
+        out = CompressedIO.openOutputStream(file);
         writer = new CheckedNTriplesWriter(out,filter);
         writer.startRDF();
     }
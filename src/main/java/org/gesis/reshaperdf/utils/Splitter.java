@@ -19,14 +19,15 @@ package org.gesis.reshaperdf.utils;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import org.openrdf.model.Statement;
 import org.openrdf.rio.RDFHandlerException;
 
 /**
  * @author Felix Bensmann
  * Splits a sorted N-Triples file into parts with equal amount of resources. The
- * splitter regards resources bounds.
+ * splitter regards resources bounds. The parts are compressed like the input
+ * file.
  */
 public class Splitter {
 
@@ -40,45 +41,48 @@ public class Splitter {
      * @param resourcesPerFile Number of resource per file. Last file can
      * contain less.
      * @throws FileNotFoundException
+     * @throws IOException
      * @throws RDFHandlerException
      */
-    public static void split(File inFile, String outFilePrefix, long resourcesPerFile) throws FileNotFoundException, RDFHandlerException {
+    public static void split(File inFile, String outFilePrefix, long resourcesPerFile) throws FileNotFoundException, IOException, RDFHandlerException {
 
         //use resource pull reader
         ResourcePullReader rpReader = new ResourcePullReader(inFile);
         rpReader.load();
 
         CheckedNTriplesWriter writer = null;
+        String suffix = ".nt" + CompressedIO.getSuffix(inFile);
 
         long cnt = 0;
         long fileCnt = 1;
 
-        File outFile1 = new File(outFilePrefix + fileCnt + ".nt");
+        File outFile1 = new File(outFilePrefix + fileCnt + suffix);
         System.out.println("Starting file " + outFile1.getAbsolutePath());
 
-        writer = new CheckedNTriplesWriter(new FileOutputStream(outFile1), new StrictStatementFilter());
+        writer = new CheckedNTriplesWriter(CompressedIO.openOutputStream(outFile1), new StrictStatementFilter());
         writer.startRDF();
         while (!rpReader.isEmpty()) {
-            Statement[] res = rpReader.peek();
-            rpReader.removeHead();
+            IPullReader<Statement> res = rpReader.streamResource();
             cnt++;
             if (cnt % resourcesPerFile == 0) {
                 writer.endRDF();
                 fileCnt++;
-                File outFile = new File("" + outFilePrefix + fileCnt + ".nt");
+                File outFile = new File("" + outFilePrefix + fileCnt + suffix);
                 System.out.println("Starting file " + outFile.getAbsolutePath());
-                writer = new CheckedNTriplesWriter(new FileOutputStream(outFile), new StrictStatementFilter());
+                writer = new CheckedNTriplesWriter(CompressedIO.openOutputStream(outFile), new StrictStatementFilter());
                 writer.startRDF();
             }
             writeStatements(writer, res);
+            rpReader.removeHead();
         }
         writer.endRDF();
 
     }
 
-    private static void writeStatements(CheckedNTriplesWriter writer, Statement[] res) throws RDFHandlerException {
-        for (int i = 0; i < res.length; i++) {
-            writer.handleStatement(res[i]);
+    private static void writeStatements(CheckedNTriplesWriter writer, IPullReader<Statement> res) throws RDFHandlerException {
+        while (!res.isEmpty()) {
+            writer.handleStatement(res.peek());
+            res.removeHead();
         }
 
     }
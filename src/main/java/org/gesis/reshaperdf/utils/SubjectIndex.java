@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.gesis.reshaperdf.utils.sort.RawLine;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+
+/**
+ * @author Felix Bensmann
+ * A sparse index of the resources of an uncompressed SNT file, stored in a
+ * sidecar file next to it. Every n-th resource is recorded with its subject
+ * and the byte offset of its first statement, so a reader can jump close to
+ * a given subject instead of scanning the file from the start.
+ *
+ * The sidecar is a text file. The first line holds the size and the
+ * modification time of the indexed file, an index that does not match the
+ * file any more is ignored. Every further line holds an offset and the
+ * subject in N-Triples notation, separated by a tab. Only resources with a
+ * URI as subject are recorded.
+ */
+public class SubjectIndex {
+
+    public static final String SUFFIX = ".idx";
+    public static final int DEFAULT_INTERVAL = 1000;
+    private static final String HEADER = "#subjectindex";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int INITIAL_LINE_SIZE = 1 << 10;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final long[] offsets;
+    private final String[] subjects;
+
+    private SubjectIndex(long[] offsets, String[] subjects) {
+        this.offsets = offsets;
+        this.subjects = subjects;
+    }
+
+    /**
+     * Returns the sidecar file of an SNT file.
+     * @param sntFile
+     * @return
+     */
+    public static File getIndexFile(File sntFile) {
+        return new File(sntFile.getPath() + SUFFIX);
+    }
+
+    /**
+     * Indexes an SNT file and writes the sidecar file.
+     *
+     * @param sntFile Uncompressed SNT file.
+     * @param interval Number of resources between two entries.
+     * @return Number of entries.
+     * @throws IOException
+     */
+    public static int write(File sntFile, int interval) throws IOException {
+        if (CompressedIO.isCompressed(sntFile)) {
+            throw new IllegalArgumentException("Compressed files cannot be indexed.");
+        }
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be at least 1.");
+        }
+        long length = sntFile.length();
+        long lastModified = sntFile.lastModified();
+        InputStream in = new FileInputStream(sntFile);
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(getIndexFile(sntFile)), UTF8));
+        int entries = 0;
+        try {
+            out.write(HEADER + "\t" + length + "\t" + lastModified + "\n");
+            byte[] buffer = new byte[BUFFER_SIZE];
+            byte[] line = new byte[INITIAL_LINE_SIZE];
+            int lineLength = 0;
+            int[] m = new int[RawLine.STRIDE];
+            byte[] lastSubject = null;
+            int lastKind = -1;
+            long lineStart = 0;
+            long pos = 0;
+            long sinceEntry = interval;
+            //a last line without a line break is not indexed, which does no harm
+            int n = in.read(buffer);
+            while (n > 0) {
+                for (int i = 0; i < n; i++) {
+                    byte b = buffer[i];
+                    if (b != '\n') {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, 2 * lineLength);
+                        }
+                        line[lineLength++] = b;
+                        continue;
+                    }
+                    //the subject is delimited like the scanner does, invalid lines are skipped by readers
+                    if (RawLine.scan(line, 0, lineLength, m, 0) == RawLine.VALID) {
+                        int kind = RawLine.subjectKind(m, 0);
+                        byte[] subject = line;
+                        int start = m[RawLine.S_START];
+                        int end = m[RawLine.S_END];
+                        if (isEscaped(line, start, end)) {
+                            //compared decoded, like the readers compare subjects
+                            subject = NTriplesUtil.unescapeString(new String(line, start, end - start, UTF8)).getBytes(UTF8);
+                            start = 0;
+                            end = subject.length;
+                        }
+                        if (kind != lastKind || !equals(subject, start, end, lastSubject)) {
+                            if (sinceEntry >= interval && kind == RawLine.URI) {
+                                String token = new String(line, m[RawLine.S_START], m[RawLine.S_END] - m[RawLine.S_START], UTF8);
+                                out.write(lineStart + "\t<" + token + ">\n");
+                                entries++;
+                                sinceEntry = 0;
+                            }
+                            sinceEntry++;
+                            lastSubject = Arrays.copyOfRange(subject, start, end);
+                            lastKind = kind;
+                        }
+                    }
+                    lineLength = 0;
+                    lineStart = pos + i + 1;
+                }
+                pos += n;
+                n = in.read(buffer);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+        return entries;
+    }
+
+    private static boolean isEscaped(byte[] b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (b[i] == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean equals(byte[] b, int start, int end, byte[] x) {
+        if (x == null || end - start != x.length) {
+            return false;
+        }
+        for (int i = 0; i < x.length; i++) {
+            if (b[start + i] != x[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Loads the index of an SNT file.
+     *
+     * @param sntFile
+     * @return The index or null if the file has no index or an outdated one.
+     * @throws IOException
+     */
+    public static SubjectIndex load(File sntFile) throws IOException {
+        File indexFile = getIndexFile(sntFile);
+        if (!indexFile.isFile() || CompressedIO.isCompressed(sntFile)) {
+            return null;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), UTF8));
+        try {
+            String first = reader.readLine();
+            String[] header = first == null ? new String[0] : first.split("\t");
+            if (header.length != 3 || !header[0].equals(HEADER)) {
+                throw new IOException(indexFile.getName() + " is not a subject index.");
+            }
+            if (Long.parseLong(header[1]) != sntFile.length() || Long.parseLong(header[2]) != sntFile.lastModified()) {
+                System.err.println("Ignoring outdated index " + indexFile.getName() + ".");
+                return null;
+            }
+            List<Long> offsets = new ArrayList<Long>();
+            List<String> subjects = new ArrayList<String>();
+            String line = reader.readLine();
+            while (line != null) {
+                int tab = line.indexOf('\t');
+                String token = line.substring(tab + 1);
+                String subject = NTriplesUtil.unescapeString(token.substring(1, token.length() - 1));
+                if (!subjects.isEmpty() && subjects.get(subjects.size() - 1).compareTo(subject) >= 0) {
+                    System.err.println("Ignoring index " + indexFile.getName() + ", the file is not sorted.");
+                    return null;
+                }
+                offsets.add(Long.parseLong(line.substring(0, tab)));
+                subjects.add(subject);
+                line = reader.readLine();
+            }
+            long[] arr = new long[offsets.size()];
+            for (int i = 0; i < arr.length; i++) {
+                arr[i] = offsets.get(i);
+            }
+            return new SubjectIndex(arr, subjects.toArray(new String[subjects.size()]));
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid index " + indexFile.getName(), ex);
+        } catch (IndexOutOfBoundsException ex) {
+            throw new IOException("Invalid index " + indexFile.getName(), ex);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid index " + indexFile.getName(), ex);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Number of entries.
+     * @return
+     */
+    public int size() {
+        return subjects.length;
+    }
+
+    /**
+     * Finds the last entry whose subject is not greater than the given one.
+     *
+     * @param subject String value of a subject.
+     * @return Number of the entry or -1 if all subjects are greater.
+     */
+    public int floor(String subject) {
+        int idx = Arrays.binarySearch(subjects, subject);
+        return idx >= 0 ? idx : -idx - 2;
+    }
+
+    /**
+     * Byte offset of the first statement of an entry's resource.
+     * @param entry
+     * @return
+     */
+    public long getOffset(int entry) {
+        return offsets[entry];
+    }
+
+    /**
+     * String value of an entry's subject.
+     * @param entry
+     * @return
+     */
+    public String getSubject(int entry) {
+        return subjects[entry];
+    }
+
+}
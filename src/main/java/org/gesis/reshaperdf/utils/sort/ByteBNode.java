@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.openrdf.model.BNode;
+
+/**
+ * A blank node that is a view into the bytes of an N-Triples line. The id is
+ * built from the label like NTriplesScanner does, so it is equal to the
+ * blank node the scanner would have created.
+ *
+ * @author bensmafx
+ */
+public class ByteBNode extends ByteTerm implements BNode {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final String prefix;
+    private String id = null;
+
+    /**
+     * Ctor
+     *
+     * @param bytes Buffer holding the label.
+     * @param start Start of the label, after "_:".
+     * @param end End of the label.
+     * @param escaped True if the label may contain escape sequences.
+     * @param prefix Prefix of the generated id, null to use the label as id.
+     */
+    public ByteBNode(byte[] bytes, int start, int end, boolean escaped, String prefix) {
+        super(bytes, start, end, escaped);
+        this.prefix = prefix;
+    }
+
+    @Override
+    public String getID() {
+        if (id == null) {
+            id = toID(prefix, decoded());
+        }
+        return id;
+    }
+
+    /**
+     * Builds the id of a blank node like RDFParserBase does, long labels are
+     * replaced by their MD5 hash.
+     *
+     * @param prefix Prefix unique for a parse or null to keep the label.
+     * @param label Label of the blank node.
+     * @return
+     */
+    static String toID(String prefix, String label) {
+        if (prefix == null) {
+            return label;
+        }
+        if (label.length() > 32) {
+            byte[] digest;
+            try {
+                digest = MessageDigest.getInstance("MD5").digest(label.getBytes(UTF8));
+            } catch (NoSuchAlgorithmException ex) {
+                throw new RuntimeException(ex);
+            }
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+                hex[2 * i + 1] = HEX[digest[i] & 0xF];
+            }
+            label = new String(hex);
+        }
+        return prefix + label;
+    }
+
+    @Override
+    public String stringValue() {
+        return getID();
+    }
+
+    @Override
+    public String toString() {
+        return "_:" + getID();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof ByteBNode) {
+            ByteBNode other = (ByteBNode) o;
+            if (isByteComparable(other) && (prefix == null ? other.prefix == null : prefix.equals(other.prefix))) {
+                return sameBytes(other);
+            }
+        }
+        if (o instanceof BNode) {
+            return getID().equals(((BNode) o).getID());
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return getID().hashCode();
+    }
+
+}
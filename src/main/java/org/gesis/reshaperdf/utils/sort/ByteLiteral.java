@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+
+/**
+ * A literal that is a view into the bytes of an N-Triples line. The label is
+ * decoded on its own, everything else is delegated to a LiteralImpl that is
+ * built on first use. Literals of the same kind are tested for equality on
+ * their bytes.
+ *
+ * @author bensmafx
+ */
+public class ByteLiteral extends ByteTerm implements Literal {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int kind;
+    private final int xStart;
+    private final int xEnd;
+    private Literal literal = null;
+
+    /**
+     * Ctor
+     *
+     * @param bytes Buffer holding the literal.
+     * @param start Start of the label, after the quote.
+     * @param end End of the label.
+     * @param escaped True if the literal may contain escape sequences.
+     * @param kind One of the literal kinds of RawLine.
+     * @param xStart Start of the language tag or datatype.
+     * @param xEnd End of the language tag or datatype.
+     */
+    public ByteLiteral(byte[] bytes, int start, int end, boolean escaped, int kind, int xStart, int xEnd) {
+        super(bytes, start, end, escaped);
+        this.kind = kind;
+        this.xStart = xStart;
+        this.xEnd = xEnd;
+    }
+
+    private Literal literal() {
+        if (literal == null) {
+            if (kind == RawLine.LANG_LITERAL) {
+                literal = new LiteralImpl(decoded(), RawLine.decode(bytes, xStart, xEnd));
+            } else if (kind == RawLine.TYPED_LITERAL) {
+                literal = new LiteralImpl(decoded(), new URIImpl(RawLine.decode(bytes, xStart, xEnd)));
+            } else {
+                literal = new LiteralImpl(decoded());
+            }
+        }
+        return literal;
+    }
+
+    @Override
+    public String getLabel() {
+        return decoded();
+    }
+
+    @Override
+    public String stringValue() {
+        return decoded();
+    }
+
+    @Override
+    public String getLanguage() {
+        return literal().getLanguage();
+    }
+
+    @Override
+    public URI getDatatype() {
+        return literal().getDatatype();
+    }
+
+    @Override
+    public byte byteValue() {
+        return literal().byteValue();
+    }
+
+    @Override
+    public short shortValue() {
+        return literal().shortValue();
+    }
+
+    @Override
+    public int intValue() {
+        return literal().intValue();
+    }
+
+    @Override
+    public long longValue() {
+        return literal().longValue();
+    }
+
+    @Override
+    public BigInteger integerValue() {
+        return literal().integerValue();
+    }
+
+    @Override
+    public BigDecimal decimalValue() {
+        return literal().decimalValue();
+    }
+
+    @Override
+    public float floatValue() {
+        return literal().floatValue();
+    }
+
+    @Override
+    public double doubleValue() {
+        return literal().doubleValue();
+    }
+
+    @Override
+    public boolean booleanValue() {
+        return literal().booleanValue();
+    }
+
+    @Override
+    public XMLGregorianCalendar calendarValue() {
+        return literal().calendarValue();
+    }
+
+    @Override
+    public String toString() {
+        return literal().toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof ByteLiteral) {
+            ByteLiteral other = (ByteLiteral) o;
+            if (kind == other.kind && isByteComparable(other)) {
+                return sameBytes(other) && sameTag(other);
+            }
+        }
+        return literal().equals(o);
+    }
+
+    /**
+     * Compares language tags ignoring case and datatypes exactly.
+     */
+    private boolean sameTag(ByteLiteral other) {
+        int len = xEnd - xStart;
+        if (len != other.xEnd - other.xStart) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            byte x = bytes[xStart + i];
+            byte y = other.bytes[other.xStart + i];
+            if (x != y && (kind != RawLine.LANG_LITERAL || Character.toLowerCase(x) != Character.toLowerCase(y))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return literal().hashCode();
+    }
+
+}
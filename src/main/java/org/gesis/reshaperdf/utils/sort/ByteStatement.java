@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+
+/**
+ * A statement that is a view into the bytes of an N-Triples line, as created
+ * by NTriplesScanner in lazy mode. Terms are created on first access and
+ * decoded only when their string is needed, so a filter that looks at the
+ * predicate does not pay for subject and object. Statements of the same
+ * parse are compared and tested for equality on their bytes.
+ *
+ * @author bensmafx
+ */
+public class ByteStatement implements Statement, Comparable<ByteStatement> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] bytes;
+    private final int[] meta;
+    private final String bnodePrefix;
+    private Resource subject = null;
+    private URI predicate = null;
+    private Value object = null;
+
+    /**
+     * Ctor
+     *
+     * @param bytes Buffer holding the line.
+     * @param meta Positions of the line as produced by RawLine.scan() at
+     * index 0.
+     * @param bnodePrefix Prefix of generated blank node ids, null to use the
+     * labels as ids.
+     */
+    public ByteStatement(byte[] bytes, int[] meta, String bnodePrefix) {
+        this.bytes = bytes;
+        this.meta = meta;
+        this.bnodePrefix = bnodePrefix;
+    }
+
+    private boolean isEscaped() {
+        return RawLine.isEscaped(meta, 0);
+    }
+
+    @Override
+    public Resource getSubject() {
+        if (subject == null) {
+            if (RawLine.subjectKind(meta, 0) == RawLine.URI) {
+                subject = new ByteURI(bytes, meta[RawLine.S_START], meta[RawLine.S_END], isEscaped());
+            } else {
+                subject = new ByteBNode(bytes, meta[RawLine.S_START], meta[RawLine.S_END], isEscaped(), bnodePrefix);
+            }
+        }
+        return subject;
+    }
+
+    @Override
+    public URI getPredicate() {
+        if (predicate == null) {
+            predicate = new ByteURI(bytes, meta[RawLine.P_START], meta[RawLine.P_END], isEscaped());
+        }
+        return predicate;
+    }
+
+    @Override
+    public Value getObject() {
+        if (object == null) {
+            int kind = RawLine.objectKind(meta, 0);
+            if (kind == RawLine.URI) {
+                object = new ByteURI(bytes, meta[RawLine.O_START], meta[RawLine.O_END], isEscaped());
+            } else if (kind == RawLine.BNODE) {
+                object = new ByteBNode(bytes, meta[RawLine.O_START], meta[RawLine.O_END], isEscaped(), bnodePrefix);
+            } else {
+                object = new ByteLiteral(bytes, meta[RawLine.O_START], meta[RawLine.O_END], isEscaped(), kind, meta[RawLine.X_START], meta[RawLine.X_END]);
+            }
+        }
+        return object;
+    }
+
+    @Override
+    public Resource getContext() {
+        return null;
+    }
+
+    /**
+     * Compares in the order of StatementsComparatorSPO.
+     *
+     * @param other
+     * @return
+     */
+    @Override
+    public int compareTo(ByteStatement other) {
+        return RawLine.compare(bytes, meta, 0, other.bytes, other.meta, 0);
+    }
+
+    /**
+     * Equal to every statement with equal terms, like StatementImpl. Terms of
+     * two ByteStatements are compared on their bytes.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof Statement) {
+            Statement other = (Statement) o;
+            return getObject().equals(other.getObject())
+                    && getSubject().equals(other.getSubject())
+                    && getPredicate().equals(other.getPredicate());
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 961 * getSubject().hashCode() + 31 * getPredicate().hashCode() + getObject().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + getSubject() + ", " + getPredicate() + ", " + getObject() + ")";
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.nio.charset.Charset;
+import org.openrdf.model.Value;
+
+/**
+ * Base class of terms that are views into the bytes of an N-Triples line.
+ * The term is decoded into a String on first use only. Two terms whose
+ * ranges contain no escape sequences can be compared and tested for
+ * equality on their bytes.
+ *
+ * @author bensmafx
+ */
+public abstract class ByteTerm implements Value {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    protected final byte[] bytes;
+    protected final int start;
+    protected final int end;
+    protected final boolean escaped;
+    private String decoded = null;
+
+    /**
+     * Ctor
+     *
+     * @param bytes Buffer holding the term.
+     * @param start Start of the term.
+     * @param end End of the term.
+     * @param escaped True if the term may contain escape sequences.
+     */
+    protected ByteTerm(byte[] bytes, int start, int end, boolean escaped) {
+        this.bytes = bytes;
+        this.start = start;
+        this.end = end;
+        this.escaped = escaped;
+    }
+
+    /**
+     * Returns the decoded term, without brackets, quotes or "_:".
+     * @return
+     */
+    protected String decoded() {
+        if (decoded == null) {
+            decoded = escaped ? RawLine.decode(bytes, start, end) : new String(bytes, start, end - start, UTF8);
+        }
+        return decoded;
+    }
+
+    /**
+     * Determines whether the terms can be compared on their bytes.
+     */
+    protected boolean isByteComparable(ByteTerm other) {
+        return !escaped && !other.escaped;
+    }
+
+    /**
+     * Tests the bytes of both terms for equality.
+     */
+    protected boolean sameBytes(ByteTerm other) {
+        int len = end - start;
+        if (len != other.end - other.start) {
+            return false;
+        }
+        for (int i = len - 1; i >= 0; i--) {
+            if (bytes[start + i] != other.bytes[other.start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the terms like String.compareTo() on the decoded terms, on
+     * the bytes if possible.
+     *
+     * @param other
+     * @return
+     */
+    public int compareTerm(ByteTerm other) {
+        if (isByteComparable(other)) {
+            return RawLine.compareUTF16(bytes, start, end, other.bytes, other.start, other.end);
+        }
+        return decoded().compareTo(other.decoded());
+    }
+
+}
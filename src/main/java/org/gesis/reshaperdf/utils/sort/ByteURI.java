@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import org.openrdf.model.URI;
+import org.openrdf.model.util.URIUtil;
+
+/**
+ * A URI that is a view into the bytes of an N-Triples line. Equal to every
+ * URI with the same string, like URIImpl.
+ *
+ * @author bensmafx
+ */
+public class ByteURI extends ByteTerm implements URI {
+
+    private static final long serialVersionUID = 1L;
+
+    public ByteURI(byte[] bytes, int start, int end, boolean escaped) {
+        super(bytes, start, end, escaped);
+    }
+
+    @Override
+    public String stringValue() {
+        return decoded();
+    }
+
+    @Override
+    public String toString() {
+        return decoded();
+    }
+
+    @Override
+    public String getNamespace() {
+        String uri = decoded();
+        return uri.substring(0, URIUtil.getLocalNameIndex(uri));
+    }
+
+    @Override
+    public String getLocalName() {
+        String uri = decoded();
+        return uri.substring(URIUtil.getLocalNameIndex(uri));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof ByteURI && isByteComparable((ByteURI) o)) {
+            return sameBytes((ByteURI) o);
+        }
+        if (o instanceof URI) {
+            return decoded().equals(o.toString());
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return decoded().hashCode();
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
+import org.gesis.reshaperdf.utils.CompressedIO;
+import org.gesis.reshaperdf.utils.PullReader;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * Sort on dictionary encoded statements. A first pass over the input collects
+ * the distinct terms of each statement part into a TripleDictionary, whose
+ * ids preserve the order of the terms. A second pass encodes the statements
+ * as three ids, which are sorted and merged by comparing ints instead of
+ * strings. Intermediate files hold 12 bytes per statement, the terms are only
+ * decoded when the output is written.
+ *
+ * The dictionary has to fit into the heap in addition to the memory budget,
+ * so this pays off for data in which terms repeat heavily. Blank node labels
+ * of the input are kept, so that both passes see the same terms.
+ *
+ * @author bensmafx
+ */
+public class DictionarySort {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private DictionarySort() {
+    }
+
+    /**
+     * Sorts the file.
+     *
+     * @param inFile N-Triples file to sort
+     * @param outFile File to store results in
+     * @param settings Tuning parameters
+     * @throws IOException
+     * @throws RDFHandlerException
+     * @throws InterruptedException
+     */
+    public static void sort(File inFile, File outFile, SortSettings settings) throws IOException, RDFHandlerException, InterruptedException {
+        System.out.println("Building the term dictionary.");
+        TripleDictionary dictionary = new TripleDictionary(settings.getOrder());
+        PullReader pReader = new PullReader(inFile, true);
+        pReader.load();
+        while (!pReader.isEmpty()) {
+            dictionary.add(pReader.peek());
+            pReader.removeHead();
+        }
+        pReader.close();
+        dictionary.seal();
+        int[] sizes = dictionary.sizes();
+        System.out.println("Dictionary holds " + sizes[0] + " subjects, " + sizes[1] + " predicates and " + sizes[2] + " objects.");
+
+        long budget = settings.getMemoryBudget();
+        System.out.println("Using a memory budget of " + (budget / (1024 * 1024)) + " MB.");
+        IdTripleBuffer buffer = new IdTripleBuffer(budget);
+        Workspace workspace = null;
+        MultithreadMerger<IdTriple> merger = null;
+        int fileNr = 0;
+
+        pReader = new PullReader(inFile, true);
+        pReader.load();
+        try {
+            while (!pReader.isEmpty()) {
+                if (buffer.isFull()) {
+                    if (workspace == null) {
+                        System.out.println("Use extensive sorting approach.");
+                        Workspace.checkFreeSpace(settings.getTmpDirs(), inFile.length());
+                        workspace = new Workspace(settings.getTmpDirs(), settings.isCompressTmp());
+                        merger = new MultithreadMerger<IdTriple>(outFile, workspace, settings.getFanIn(), new IdTripleComparator(), new IdTripleFormat(workspace, dictionary), settings.isUnique(), settings.getMergeThreads());
+                    }
+                    File file = workspace.newFile("lv0_" + ++fileNr);
+                    writeRun(buffer, file, workspace, settings.isUnique());
+                    merger.registerFile(file, 0);
+                    buffer.clear();
+                }
+                Statement stmt = pReader.peek();
+                pReader.removeHead();
+                buffer.add(dictionary.key(stmt, 0), dictionary.key(stmt, 1), dictionary.key(stmt, 2));
+            }
+            pReader.close();
+
+            if (workspace == null) {
+                System.out.println("Use in-memory sorting approach.");
+                buffer.sort();
+                OutputStream fos = CompressedIO.openOutputStream(outFile);
+                try {
+                    CheckedNTriplesWriter writer = new CheckedNTriplesWriter(fos, null);
+                    writer.startRDF();
+                    int written = buffer.write(writer, dictionary, settings.isUnique());
+                    writer.endRDF();
+                    System.out.println("Wrote file: " + outFile.getName() + " (" + written + " statements)");
+                } finally {
+                    fos.close();
+                }
+            } else {
+                if (!buffer.isEmpty()) {
+                    File file = workspace.newFile("lv0_" + ++fileNr);
+                    writeRun(buffer, file, workspace, settings.isUnique());
+                    merger.registerFile(file, 0);
+                }
+                buffer = null;
+                System.out.println("All level 0 files habe been processed.");
+                merger.finish();
+                merger.waitForIt();
+                workspace.delete();
+            }
+        } finally {
+            pReader.close();
+            if (merger != null) {
+                merger.shutdownNow();
+            }
+        }
+        System.out.println("Complete");
+    }
+
+    private static void writeRun(IdTripleBuffer buffer, File file, Workspace workspace, boolean unique) throws IOException {
+        buffer.sort();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(workspace.openOutput(file), BUFFER_SIZE));
+        int written;
+        try {
+            written = buffer.write(out, unique);
+        } finally {
+            out.close();
+        }
+        System.out.println("Wrote file: " + file.getName() + " (" + written + " statements)");
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.util.Comparator;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerWrapper;
+
+/**
+ * Passes sorted statements on to another handler and drops every statement
+ * that equals its predecessor according to the comparator. N-Triples only
+ * allows absolute IRIs, so statements that are equal in the sort order are
+ * equal statements.
+ *
+ * @author bensmafx
+ */
+public class DuplicateFilter extends RDFHandlerWrapper {
+
+    private final Comparator<Statement> comparator;
+    private Statement last = null;
+
+    /**
+     * Ctor
+     *
+     * @param handler Handler to pass the statements on to.
+     * @param comparator Comparator the statements are sorted by.
+     */
+    public DuplicateFilter(RDFHandler handler, Comparator<Statement> comparator) {
+        super(handler);
+        this.comparator = comparator;
+    }
+
+    @Override
+    public void handleStatement(Statement st) throws RDFHandlerException {
+        if (last != null && comparator.compare(last, st) == 0) {
+            return;
+        }
+        last = st;
+        super.handleStatement(st);
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.File;
+import java.util.SortedMap;
+
+/**
+ * Receives progress reports of a MultithreadMerger. The reports are issued
+ * by the merge threads, one after every completed merge step.
+ *
+ * @author bensmafx
+ */
+public interface IMergeProgressListener {
+
+    /**
+     * Called when a merge step has written its file.
+     *
+     * @param file The merged file.
+     * @param level Level of the merged file.
+     * @param runsPerLevel Number of files per level that still have to be
+     * merged, including the files being merged at the moment.
+     * @param bytesMerged Total size of all files merged so far.
+     */
+    public void mergeFinished(File file, int level, SortedMap<Integer, Integer> runsPerLevel, long bytesMerged);
+
+}
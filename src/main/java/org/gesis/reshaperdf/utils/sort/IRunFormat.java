@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The file format of the elements handled by the external sort. Intermediate
+ * files and the output file may use different representations.
+ *
+ * @author bensmafx
+ * @param <T> Type of the sorted elements.
+ */
+public interface IRunFormat<T> {
+
+    /**
+     * Opens an intermediate file for reading.
+     * @param file
+     * @return A loaded reader.
+     * @throws IOException
+     */
+    public IRunReader<T> openReader(File file) throws IOException;
+
+    /**
+     * Opens a file for writing.
+     * @param file
+     * @param output True if the file is the final output of the sort, false
+     * for an intermediate file.
+     * @return
+     * @throws IOException
+     */
+    public IRunWriter<T> openWriter(File file, boolean output) throws IOException;
+
+}
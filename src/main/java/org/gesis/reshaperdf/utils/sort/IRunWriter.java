@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.IOException;
+
+/**
+ * Writes the elements of a run file of the external sort.
+ *
+ * @author bensmafx
+ * @param <T> Type of the elements in the run.
+ */
+public interface IRunWriter<T> {
+
+    /**
+     * Appends an element to the file.
+     * @param element
+     * @throws IOException
+     */
+    public void write(T element) throws IOException;
+
+    /**
+     * Flushes and closes the file.
+     * @throws IOException
+     */
+    public void close() throws IOException;
+
+}
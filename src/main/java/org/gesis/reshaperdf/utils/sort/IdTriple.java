@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+/**
+ * A statement encoded by a TripleDictionary as three ids in key order.
+ *
+ * @author bensmafx
+ */
+public class IdTriple {
+
+    private final int k1;
+    private final int k2;
+    private final int k3;
+
+    /**
+     * Ctor
+     *
+     * @param k1 Id at key position 0.
+     * @param k2 Id at key position 1.
+     * @param k3 Id at key position 2.
+     */
+    public IdTriple(int k1, int k2, int k3) {
+        this.k1 = k1;
+        this.k2 = k2;
+        this.k3 = k3;
+    }
+
+    public int getK1() {
+        return k1;
+    }
+
+    public int getK2() {
+        return k2;
+    }
+
+    public int getK3() {
+        return k3;
+    }
+
+    /**
+     * Compares two encoded statements id by id.
+     *
+     * @return A negative number, zero or a positive number if the first
+     * statement is smaller than, equal to or greater than the second.
+     */
+    public static int compare(int a1, int a2, int a3, int b1, int b2, int b3) {
+        if (a1 != b1) {
+            return a1 < b1 ? -1 : 1;
+        }
+        if (a2 != b2) {
+            return a2 < b2 ? -1 : 1;
+        }
+        if (a3 != b3) {
+            return a3 < b3 ? -1 : 1;
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * Buffers encoded statements as three ids each in one int array. Costs 20
+ * bytes per statement including the arrays needed for sorting. The array
+ * grows on demand up to the given capacity.
+ *
+ * @author bensmafx
+ */
+public class IdTripleBuffer {
+
+    //ids plus the order and merge arrays of the sort
+    public static final int BYTES_PER_TRIPLE = 20;
+    private static final int INITIAL_SIZE = 1 << 16;
+    private static final int MAX_TRIPLES = (Integer.MAX_VALUE - 8) / 3;
+
+    private final int capacity;
+    private int[] keys;
+    private int size = 0;
+    private int[] order = null;
+
+    /**
+     * Ctor
+     *
+     * @param capacity Maximum number of bytes to occupy.
+     */
+    public IdTripleBuffer(long capacity) {
+        this.capacity = (int) Math.max(1, Math.min(MAX_TRIPLES, capacity / BYTES_PER_TRIPLE));
+        keys = new int[3 * Math.min(INITIAL_SIZE, this.capacity)];
+    }
+
+    /**
+     * Appends an encoded statement.
+     *
+     * @throws IllegalStateException If the buffer is full.
+     */
+    public void add(int k1, int k2, int k3) {
+        if (isFull()) {
+            throw new IllegalStateException("Buffer is full.");
+        }
+        if (3 * (size + 1) > keys.length) {
+            int[] tmp = new int[3 * (int) Math.min(2L * size, capacity)];
+            System.arraycopy(keys, 0, tmp, 0, 3 * size);
+            keys = tmp;
+        }
+        keys[3 * size] = k1;
+        keys[3 * size + 1] = k2;
+        keys[3 * size + 2] = k3;
+        size++;
+        order = null;
+    }
+
+    public boolean isFull() {
+        return size >= capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sorts the statements by their ids.
+     */
+    public void sort() {
+        order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = 3 * i;
+        }
+        int[] tmp = new int[size];
+        mergeSort(order, tmp, 0, size);
+    }
+
+    private int compare(int a, int b) {
+        return IdTriple.compare(keys[a], keys[a + 1], keys[a + 2], keys[b], keys[b + 1], keys[b + 2]);
+    }
+
+    private void mergeSort(int[] a, int[] tmp, int from, int to) {
+        if (to - from < 16) { //insertion sort for small ranges
+            for (int i = from + 1; i < to; i++) {
+                int x = a[i];
+                int j = i - 1;
+                while (j >= from && compare(a[j], x) > 0) {
+                    a[j + 1] = a[j];
+                    j--;
+                }
+                a[j + 1] = x;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(a, tmp, from, mid);
+        mergeSort(a, tmp, mid, to);
+        if (compare(a[mid - 1], a[mid]) <= 0) {
+            return; //already in order
+        }
+        System.arraycopy(a, from, tmp, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && compare(tmp[i], tmp[j]) <= 0)) {
+                a[k] = tmp[i++];
+            } else {
+                a[k] = tmp[j++];
+            }
+        }
+    }
+
+    /**
+     * Writes the ids of the statements, in sorted order if sort() has been
+     * called before.
+     *
+     * @param out
+     * @param unique True if a statement equal to its predecessor is to be
+     * dropped, requires sort() to have been called before.
+     * @return Number of written statements.
+     * @throws IOException
+     */
+    public int write(DataOutputStream out, boolean unique) throws IOException {
+        int written = 0;
+        int last = -1;
+        for (int i = 0; i < size; i++) {
+            int pos = order != null ? order[i] : 3 * i;
+            if (unique && last >= 0 && compare(last, pos) == 0) {
+                continue;
+            }
+            out.writeInt(keys[pos]);
+            out.writeInt(keys[pos + 1]);
+            out.writeInt(keys[pos + 2]);
+            last = pos;
+            written++;
+        }
+        return written;
+    }
+
+    /**
+     * Decodes the statements and passes them to a handler, in sorted order if
+     * sort() has been called before.
+     *
+     * @param handler
+     * @param dictionary Dictionary the statements have been encoded with.
+     * @param unique True if a statement equal to its predecessor is to be
+     * dropped, requires sort() to have been called before.
+     * @return Number of written statements.
+     * @throws RDFHandlerException
+     */
+    public int write(RDFHandler handler, TripleDictionary dictionary, boolean unique) throws RDFHandlerException {
+        int written = 0;
+        int last = -1;
+        for (int i = 0; i < size; i++) {
+            int pos = order != null ? order[i] : 3 * i;
+            if (unique && last >= 0 && compare(last, pos) == 0) {
+                continue;
+            }
+            handler.handleStatement(dictionary.decode(keys[pos], keys[pos + 1], keys[pos + 2]));
+            last = pos;
+            written++;
+        }
+        return written;
+    }
+
+    /**
+     * Removes all statements but keeps the allocated array.
+     */
+    public void clear() {
+        size = 0;
+        order = null;
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
+import org.gesis.reshaperdf.utils.CompressedIO;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * Run format for encoded statements. Intermediate files hold three ids of 4
+ * bytes each per statement, the output file is decoded and written as
+ * N-Triples.
+ *
+ * @author bensmafx
+ */
+public class IdTripleFormat implements IRunFormat<IdTriple> {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Workspace workspace;
+    private final TripleDictionary dictionary;
+
+    /**
+     * Ctor
+     *
+     * @param workspace Workspace the intermediate files belong to.
+     * @param dictionary Dictionary the statements have been encoded with.
+     */
+    public IdTripleFormat(Workspace workspace, TripleDictionary dictionary) {
+        this.workspace = workspace;
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public IRunReader<IdTriple> openReader(File file) throws IOException {
+        IdTripleReader reader = new IdTripleReader(file, new DataInputStream(new BufferedInputStream(workspace.openInput(file), BUFFER_SIZE)));
+        reader.removeHead();
+        return reader;
+    }
+
+    @Override
+    public IRunWriter<IdTriple> openWriter(File file, boolean output) throws IOException {
+        if (output) {
+            final OutputStream fos = CompressedIO.openOutputStream(file);
+            final CheckedNTriplesWriter writer = new CheckedNTriplesWriter(fos, null);
+            try {
+                writer.startRDF();
+            } catch (RDFHandlerException ex) {
+                throw new IOException(ex);
+            }
+            return new IRunWriter<IdTriple>() {
+
+                @Override
+                public void write(IdTriple element) throws IOException {
+                    try {
+                        writer.handleStatement(dictionary.decode(element.getK1(), element.getK2(), element.getK3()));
+                    } catch (RDFHandlerException ex) {
+                        throw new IOException(ex);
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        writer.endRDF();
+                    } catch (RDFHandlerException ex) {
+                        throw new IOException(ex);
+                    } finally {
+                        fos.close();
+                    }
+                }
+            };
+        }
+        OutputStream stream = workspace.openOutput(file);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+        return new IRunWriter<IdTriple>() {
+
+            @Override
+            public void write(IdTriple element) throws IOException {
+                out.writeInt(element.getK1());
+                out.writeInt(element.getK2());
+                out.writeInt(element.getK3());
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+
+    /**
+     * Reads the encoded statements of a sorted file.
+     */
+    private static class IdTripleReader implements IRunReader<IdTriple> {
+
+        private final File file;
+        private final DataInputStream in;
+        private IdTriple current = null;
+
+        IdTripleReader(File file, DataInputStream in) {
+            this.file = file;
+            this.in = in;
+        }
+
+        @Override
+        public IdTriple peek() {
+            return current;
+        }
+
+        @Override
+        public void removeHead() {
+            int k1;
+            try {
+                k1 = in.readInt();
+            } catch (EOFException ex) {
+                current = null;
+                return;
+            } catch (IOException ex) {
+                throw new IllegalStateException("When reading run file " + file.getAbsolutePath(), ex);
+            }
+            try {
+                current = new IdTriple(k1, in.readInt(), in.readInt());
+            } catch (IOException ex) {
+                throw new IllegalStateException("Corrupt run file " + file.getAbsolutePath(), ex);
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return current == null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.util.Comparator;
+import java.util.List;
+import org.gesis.reshaperdf.utils.IPullReader;
+
+/**
+ * A tournament tree (loser tree) over a number of sorted readers. The tree
+ * delivers the elements of all readers in ascending order. Every removal costs
+ * log2(k) comparisons, independent of the number of readers k.
+ *
+ * Internal node i stores the loser of the match played at i, node 0 stores
+ * the overall winner. Exhausted readers are treated as greater than any
+ * element. On equal elements the reader with the lower index wins, so the
+ * merge is stable.
+ *
+ * @author bensmafx
+ * @param <T> Type of the merged elements.
+ */
+public class LoserTree<T> implements IPullReader<T> {
+
+    private final List<? extends IPullReader<T>> readers;
+    private final Comparator<? super T> comparator;
+    private final int k;
+    private final int[] tree;
+
+    /**
+     * Ctor
+     *
+     * @param readers Sorted readers to merge, must already be loaded.
+     * @param comparator Comparator the readers are sorted by.
+     */
+    public LoserTree(List<? extends IPullReader<T>> readers, Comparator<? super T> comparator) {
+        this.readers = readers;
+        this.comparator = comparator;
+        this.k = readers.size();
+        this.tree = new int[Math.max(k, 1)];
+        build();
+    }
+
+    /**
+     * Plays the initial tournament.
+     */
+    private void build() {
+        if (k == 0) {
+            tree[0] = -1;
+            return;
+        }
+        int[] winners = new int[2 * k];
+        for (int i = 0; i < k; i++) {
+            winners[k + i] = i;
+        }
+        for (int node = k - 1; node > 0; node--) {
+            int a = winners[2 * node];
+            int b = winners[2 * node + 1];
+            if (beats(a, b)) {
+                winners[node] = a;
+                tree[node] = b;
+            } else {
+                winners[node] = b;
+                tree[node] = a;
+            }
+        }
+        tree[0] = (k == 1) ? 0 : winners[1];
+    }
+
+    /**
+     * Determines whether the head of reader a is smaller than the head of
+     * reader b.
+     */
+    private boolean beats(int a, int b) {
+        T x = readers.get(a).peek();
+        T y = readers.get(b).peek();
+        if (x == null) {
+            return false;
+        }
+        if (y == null) {
+            return true;
+        }
+        int res = comparator.compare(x, y);
+        if (res == 0) {
+            return a < b;
+        }
+        return res < 0;
+    }
+
+    /**
+     * Returns the smallest head element of all readers.
+     *
+     * @return The element or null if all readers are exhausted.
+     */
+    @Override
+    public T peek() {
+        if (k == 0) {
+            return null;
+        }
+        return readers.get(tree[0]).peek();
+    }
+
+    /**
+     * Removes the smallest element and replays the path of its reader.
+     */
+    @Override
+    public void removeHead() {
+        if (k == 0) {
+            return;
+        }
+        int winner = tree[0];
+        readers.get(winner).removeHead();
+        for (int node = (winner + k) >> 1; node > 0; node >>= 1) {
+            if (beats(tree[node], winner)) {
+                int tmp = tree[node];
+                tree[node] = winner;
+                winner = tmp;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    /**
+     * Returns the index of the reader that delivers the current head.
+     * @return
+     */
+    public int getHeadIndex() {
+        return tree[0];
+    }
+
+}
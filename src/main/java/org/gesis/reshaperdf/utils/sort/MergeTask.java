@@ -18,124 +18,142 @@
 package org.gesis.reshaperdf.utils.sort;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Comparator;
-import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
-import org.gesis.reshaperdf.utils.PullReader;
-import org.openrdf.model.Statement;
-import org.openrdf.rio.RDFHandlerException;
-import org.openrdf.rio.ntriples.NTriplesWriter;
 
 /**
+ * Merges a group of sorted files into one sorted file. The files are merged in
+ * a single pass using a loser tree, so the number of files only affects the
+ * cost of a comparison by log2(n). Files are read and written by the run
+ * format, only the final merge writes the output representation. In unique
+ * mode elements equal to their predecessor are dropped.
  *
  * @author bensmafx
+ * @param <T> Type of the merged elements.
  */
-public class MergeTask implements Runnable {
+public class MergeTask<T> implements Runnable {
 
     private final File file;
-    private final File fileA;
-    private final File fileB;
-    private final Comparator<Statement> comparator;
-    private final MultithreadMerger merger;
+    private final File[] inFiles;
+    private final Comparator<? super T> comparator;
+    private final IRunFormat<T> format;
+    private final MultithreadMerger<T> merger;
     private final int level;
-    
-    public MergeTask(File file, File fileA, File fileB, Comparator<Statement> comparator, MultithreadMerger merger, int level){
-        this.file=file;
-        this.fileA=fileA;
-        this.fileB=fileB;
-        this.comparator=comparator;
-        this.merger=merger;
-        this.level=level;
+    private final boolean finalMerge;
+    private final boolean unique;
+    private final long inputSize;
+
+    /**
+     * Ctor
+     *
+     * @param file Merged file.
+     * @param inFiles Sorted files to merge.
+     * @param comparator Comparator the files are sorted by.
+     * @param format Format of the files.
+     * @param merger Merger to report the result to.
+     * @param level Level of the merged file.
+     * @param finalMerge True if this task produces the final output.
+     * @param unique True if duplicates are to be dropped.
+     */
+    public MergeTask(File file, File[] inFiles, Comparator<? super T> comparator, IRunFormat<T> format, MultithreadMerger<T> merger, int level, boolean finalMerge, boolean unique) {
+        this.file = file;
+        this.inFiles = inFiles;
+        this.comparator = comparator;
+        this.format = format;
+        this.merger = merger;
+        this.level = level;
+        this.finalMerge = finalMerge;
+        this.unique = unique;
+        long size = 0;
+        for (File f : inFiles) {
+            size += f.length();
+        }
+        this.inputSize = size;
     }
-    
-    
+
+    /**
+     * Total size of the files to merge in bytes.
+     * @return
+     */
+    public long getInputSize() {
+        return inputSize;
+    }
+
     @Override
     public void run() {
-        merge(file, fileA, fileB, comparator);
-        merger.registerFile(file,level+1);        
+        try {
+            long bytes = merge(file, inFiles);
+            merger.mergeFinished(file, level, finalMerge, inFiles, bytes);
+        } catch (IOException ex) {
+            merger.mergeFailed(file, ex);
+        } catch (RuntimeException ex) {
+            merger.mergeFailed(file, ex);
+        }
     }
-    
-    
-    
+
     /**
-     * Merges two alphabetically sorted files.
+     * Merges a number of alphabetically sorted run files. The merged files
+     * are deleted afterwards.
      *
-     * @param file Merged inFile.
-     * @param fileA First inFile to merge.
-     * @param fileB Second inFile to merge.
-     * @param comparator Implementation of statements comparator to use.
+     * @param file Merged file.
+     * @param inFiles Files to merge.
+     * @return Total size of the merged files in bytes.
+     * @throws IOException
      */
-    public void merge(File file, File fileA, File fileB, Comparator<Statement> comparator) {
-        System.out.println(Thread.currentThread().getName()+": started merging files "+fileA.getName()+" and "+fileB.getName()+" to "+file.getName());
-        
-        PullReader readerA = new PullReader(fileA);
-        readerA.load();
-        PullReader readerB = new PullReader(fileB);
-        readerB.load();
+    public long merge(File file, File[] inFiles) throws IOException {
+        System.out.println(Thread.currentThread().getName() + ": started merging " + inFiles.length + " files to " + file.getName());
 
-        CheckedNTriplesWriter writer;
+        long bytes = 0;
+        ArrayList<IRunReader<T>> readers = new ArrayList<IRunReader<T>>(inFiles.length);
         try {
-            //use a special writer that only writes valid triples.
-            FileOutputStream fos = new FileOutputStream(file);
-            writer = new CheckedNTriplesWriter(fos, null);
-            writer.startRDF();
-
-            Statement a = readerA.peek();
-            readerA.removeHead();
-            Statement b = readerB.peek();
-            readerB.removeHead();
-
-            while (a != null && b != null) {
-
-                //compare
-                int result = comparator.compare(a, b);
+            for (File f : inFiles) {
+                bytes += f.length();
+                readers.add(format.openReader(f));
+            }
+            LoserTree<T> tree = new LoserTree<T>(readers, comparator);
 
-                //a<b
-                if (result < 0) {
-                    writer.handleStatement(a);
-                    a = readerA.peek();
-                    readerA.removeHead();
-                } //a>b
-                else if (result > 0) {
-                    writer.handleStatement(b);
-                    b = readerB.peek();
-                    readerB.removeHead();
-                } //a==b
-                else {
-                    writer.handleStatement(a);
-                    writer.handleStatement(b);
-                    a = readerA.peek();
-                    readerA.removeHead();
-                    b = readerB.peek();
-                    readerB.removeHead();
+            IRunWriter<T> writer = format.openWriter(file, finalMerge);
+            boolean complete = false;
+            try {
+                T last = null;
+                T element = tree.peek();
+                while (element != null) {
+                    if (!unique || last == null || comparator.compare(last, element) != 0) {
+                        writer.write(element);
+                        last = element;
+                    }
+                    tree.removeHead();
+                    element = tree.peek();
+                }
+                complete = true;
+            } finally {
+                if (complete) {
+                    writer.close();
+                } else {
+                    closeQuietly(writer);
+                    //a partial run must not stay in the workspace
+                    file.delete();
                 }
             }
-            //transfer remaining statements
-            while (a != null) {
-                writer.handleStatement(a);
-                a = readerA.peek();
-                readerA.removeHead();
-            }
-            while (b != null) {
-                writer.handleStatement(b);
-                b = readerB.peek();
-                readerB.removeHead();
+        } finally {
+            for (IRunReader<T> reader : readers) {
+                reader.close();
             }
-            writer.endRDF();
-            fos.close();
-            readerA.close();
-            fileA.delete();
-            readerB.close();
-            fileB.delete();
+        }
+        for (File f : inFiles) {
+            f.delete();
+        }
+        System.out.println(Thread.currentThread().getName() + ": ended merging " + inFiles.length + " files to " + file.getName());
+        return bytes;
+    }
+
+    private static void closeQuietly(IRunWriter<?> writer) {
+        try {
+            writer.close();
         } catch (IOException ex) {
-            System.err.println(ex);
-        } catch (RDFHandlerException ex) {
-            System.err.println(ex);
+            //the failure of the merge is reported instead
         }
-        System.out.println(Thread.currentThread().getName()+": ended merging files "+fileA.getName()+" and "+fileB.getName()+" to "+file.getName());
     }
-    
-    
-    
+
 }
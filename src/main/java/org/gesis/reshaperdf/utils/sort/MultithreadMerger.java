@@ -18,69 +18,288 @@
 package org.gesis.reshaperdf.utils.sort;
 
 import java.io.File;
-import static java.lang.Math.log;
-import static java.lang.Math.pow;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import org.gesis.reshaperdf.utils.StatementsComparatorSPO;
 
 /**
+ * Schedules the merge steps of the external sort. Sorted files are registered
+ * with their level. As soon as fanIn files of the same level are present they
+ * are merged into one file of the next level. After the last level 0 file has
+ * been registered the remaining files are merged into the output file, if
+ * necessary after some intermediate merges of the smallest files. A single
+ * remaining file is passed through a final merge as well, in order to convert
+ * it from the intermediate to the output representation.
+ *
+ * Merges run on a pool of threads whose size is given by the caller, see
+ * SortSettings.getMergeThreads(). Merges that exceed the pool wait in a queue
+ * and are started alternately largest and smallest first, so the largest
+ * pending merges are spread over time instead of competing for the disks
+ * all at once.
+ *
+ * Completion is signalled by a latch that is released by the final merge, so
+ * waitForIt() returns as soon as the output has been written. A failed merge
+ * step releases the latch as well and its exception is rethrown by
+ * waitForIt(). Every completed merge step is reported to a progress listener.
  *
  * @author bensmafx
+ * @param <T> Type of the sorted elements.
  */
-public class MultithreadMerger {
+public class MultithreadMerger<T> {
 
-    private static final int THREADS = 10;
     private final ExecutorService executor;
-    private final Map<Integer, File> map;
+    private final int threads;
+    //merges waiting for a free thread
+    private final List<MergeTask<T>> pending = new ArrayList<MergeTask<T>>();
+    private final Map<Integer, List<File>> map;
     private final File outFile;
-    private int lastLevel = -1;
-    private final File workspace;
+    private final Workspace workspace;
     private final AtomicInteger counter;
-    private int fileCountdown = -1;
-    private int powersOfTwo = -1;
+    private final int fanIn;
+    private final Comparator<? super T> comparator;
+    private final IRunFormat<T> format;
+    private final boolean unique;
+    private final CountDownLatch done = new CountDownLatch(1);
+    //level of every registered file that has not been merged completely
+    private final Map<File, Integer> unmerged = new HashMap<File, Integer>();
+    private IMergeProgressListener listener = new IMergeProgressListener() {
+        @Override
+        public void mergeFinished(File file, int level, SortedMap<Integer, Integer> runsPerLevel, long bytesMerged) {
+            System.out.println("Merge progress: files per level " + runsPerLevel + ", " + (bytesMerged / (1024 * 1024)) + " MB merged.");
+        }
+    };
+    //scheduled merges that have not finished, including pending ones
+    private int runningTasks = 0;
+    private int activeTasks = 0;
+    private boolean pickLarge = true;
+    private boolean inputFinished = false;
+    private long bytesMerged = 0;
+    private IOException failure = null;
 
-    public MultithreadMerger(int nrOfFiles, File outFile, File workspace) {
+    /**
+     * Ctor
+     *
+     * @param outFile File to store the final result in.
+     * @param workspace Workspace for intermediate files.
+     * @param fanIn Maximum number of files merged in one step.
+     * @param comparator Comparator the files are sorted by.
+     * @param format Format of the files.
+     * @param unique True if duplicates are to be dropped in every merge.
+     * @param threads Maximum number of merges running at the same time.
+     */
+    public MultithreadMerger(File outFile, Workspace workspace, int fanIn, Comparator<? super T> comparator, IRunFormat<T> format, boolean unique, int threads) {
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Fan-in must be at least 2.");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Merge threads must be at least 1.");
+        }
         this.outFile = outFile;
         this.workspace = workspace;
-        this.fileCountdown = nrOfFiles;
-        this.powersOfTwo = nrOfFiles / 2;
-        executor = Executors.newFixedThreadPool(THREADS);//creating a pool of THREADS threads    
-        map = new ConcurrentHashMap<Integer, File>();
-        lastLevel = (int) Math.round(log(nrOfFiles) / log(2));
+        this.fanIn = fanIn;
+        this.comparator = comparator;
+        this.format = format;
+        this.unique = unique;
+        this.threads = threads;
+        executor = Executors.newFixedThreadPool(threads);
+        map = new TreeMap<Integer, List<File>>();
         counter = new AtomicInteger();
     }
 
+    /**
+     * Replaces the default listener, which prints the progress to stdout.
+     *
+     * @param listener
+     */
+    public synchronized void setProgressListener(IMergeProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Registers a sorted file. Schedules a merge step if enough files of the
+     * same level are available.
+     *
+     * @param file Sorted file.
+     * @param level Number of merge steps the file has been through.
+     */
     public synchronized void registerFile(File file, int level) {
-        if (level == lastLevel) {  //exit condition
-            file.renameTo(outFile);
-            executor.shutdown();
+        if (failure != null) {
             return;
         }
-//        fileCountdown--;
-//        if (fileCountdown == powersOfTwo) {
-//            System.gc();
-//            powersOfTwo /= 2;
-//        }
-
-        File fileA = map.remove(level); //contains() may not work in multithreading environment
-        if (fileA != null) {
-            File resultingFile = new File(workspace, "lv" + (level + 1) + "_" + counter.incrementAndGet());
-            MergeTask task = new MergeTask(resultingFile, fileA, file, new StatementsComparatorSPO(), this, level);
-            executor.execute(task);
+        unmerged.put(file, level);
+        List<File> list = map.get(level);
+        if (list == null) {
+            list = new ArrayList<File>(fanIn);
+            map.put(level, list);
+        }
+        list.add(file);
+        if (list.size() >= fanIn) {
+            map.remove(level);
+            schedule(list, level + 1, false);
         } else {
-            map.put(level, file);
+            scheduleFinalMerges();
         }
     }
 
-    public void waitForIt() throws InterruptedException {
-        while (!executor.isTerminated()) {
-            Thread.sleep(1000 * 5);
+    /**
+     * Signals that all level 0 files have been registered.
+     */
+    public synchronized void finish() {
+        inputFinished = true;
+        scheduleFinalMerges();
+    }
+
+    /**
+     * Called by a merge task when it has written its file.
+     *
+     * @param file The merged file.
+     * @param level Level of the merged file.
+     * @param finalMerge True if the file is the output file.
+     * @param inFiles The files that have been merged.
+     * @param bytes Total size of the merged files.
+     */
+    synchronized void mergeFinished(File file, int level, boolean finalMerge, File[] inFiles, long bytes) {
+        runningTasks--;
+        activeTasks--;
+        bytesMerged += bytes;
+        for (File f : inFiles) {
+            unmerged.remove(f);
+        }
+        if (failure != null) {
+            return;
+        }
+        if (finalMerge) {
+            done.countDown();
+        } else {
+            registerFile(file, level);
         }
+        SortedMap<Integer, Integer> runsPerLevel = new TreeMap<Integer, Integer>();
+        for (Integer l : unmerged.values()) {
+            Integer count = runsPerLevel.get(l);
+            runsPerLevel.put(l, count == null ? 1 : count + 1);
+        }
+        listener.mergeFinished(file, level, runsPerLevel, bytesMerged);
+        dispatch();
+    }
 
+    /**
+     * Called by a merge task that could not write its file. No further
+     * merges are scheduled and the waiting thread is woken up.
+     *
+     * @param file The file that should have been written.
+     * @param ex Cause of the failure.
+     */
+    synchronized void mergeFailed(File file, Exception ex) {
+        runningTasks--;
+        activeTasks--;
+        runningTasks -= pending.size();
+        pending.clear();
+        if (failure == null) {
+            failure = new IOException("When merging to " + file.getName(), ex);
+            done.countDown();
+        }
+    }
+
+    /**
+     * When all input has been registered and no merge is running any more, the
+     * remaining files are merged. If they exceed the fan-in the smallest files
+     * are merged first.
+     */
+    private void scheduleFinalMerges() {
+        if (!inputFinished || runningTasks > 0) {
+            return;
+        }
+        List<File> remaining = new ArrayList<File>();
+        List<Integer> levels = new ArrayList<Integer>();
+        for (Map.Entry<Integer, List<File>> entry : map.entrySet()) { //ascending levels
+            for (File f : entry.getValue()) {
+                remaining.add(f);
+                levels.add(entry.getKey());
+            }
+        }
+        map.clear();
+
+        if (remaining.isEmpty()) {
+            done.countDown();
+        } else if (remaining.size() <= fanIn) {
+            schedule(remaining, levels.get(levels.size() - 1) + 1, true);
+        } else {
+            //merge just enough of the smallest files to allow a final merge
+            int groupSize = Math.min(fanIn, remaining.size() - fanIn + 1);
+            for (int i = groupSize; i < remaining.size(); i++) {
+                List<File> list = map.get(levels.get(i));
+                if (list == null) {
+                    list = new ArrayList<File>();
+                    map.put(levels.get(i), list);
+                }
+                list.add(remaining.get(i));
+            }
+            schedule(remaining.subList(0, groupSize), levels.get(groupSize - 1) + 1, false);
+        }
+    }
+
+    private void schedule(List<File> files, int level, boolean finalMerge) {
+        File resultingFile = finalMerge ? outFile : workspace.newFile("lv" + level + "_" + counter.incrementAndGet());
+        MergeTask<T> task = new MergeTask<T>(resultingFile, files.toArray(new File[files.size()]), comparator, format, this, level, finalMerge, unique);
+        runningTasks++;
+        pending.add(task);
+        dispatch();
+    }
+
+    /**
+     * Starts pending merges while threads are free, alternately the largest
+     * and the smallest one.
+     */
+    private void dispatch() {
+        while (activeTasks < threads && !pending.isEmpty()) {
+            int pick = 0;
+            for (int i = 1; i < pending.size(); i++) {
+                long size = pending.get(i).getInputSize();
+                long picked = pending.get(pick).getInputSize();
+                if (pickLarge ? size > picked : size < picked) {
+                    pick = i;
+                }
+            }
+            pickLarge = !pickLarge;
+            activeTasks++;
+            executor.execute(pending.remove(pick));
+        }
+    }
+
+    /**
+     * Stops the merge threads without waiting for running merges. Called when
+     * the sort is aborted before finish(), has no effect after waitForIt().
+     */
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Blocks until the output file has been written or a merge failed. Call
+     * finish() before.
+     *
+     * @throws InterruptedException
+     * @throws IOException If a merge step failed.
+     */
+    public void waitForIt() throws InterruptedException, IOException {
+        done.await();
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
     }
 
 }
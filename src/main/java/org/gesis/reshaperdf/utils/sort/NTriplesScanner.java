@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.UUID;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * Parses N-Triples without the Rio parser. Lines are split and scanned on
+ * their UTF-8 bytes by RawLineInput and RawLine.scan(), the terms are decoded
+ * directly from the located byte ranges. Only terms containing escape
+ * sequences go through NTriplesUtil. Subject and predicate of the previous
+ * line are reused if the next line repeats them, which is the common case
+ * for sorted files.
+ *
+ * Like the Rio parser with non-fatal invalid lines, lines that are not valid
+ * N-Triples are skipped. Every skipped line is reported on stderr with its
+ * line number, as are lines that are accepted with a deviation, see
+ * RawLine.getWarning(). Blank node ids are generated the way Rio does, that
+ * is a prefix that is unique for every parse() is put in front of the label,
+ * unless the ids are to be preserved.
+ *
+ * In lazy mode the scanner creates ByteStatements instead. The lines are
+ * copied into shared slabs and the terms are decoded only when they are
+ * accessed. URIs are only checked for a colon, like URIImpl does, lines
+ * with escape sequences are decoded once to check them.
+ *
+ * @author bensmafx
+ */
+public class NTriplesScanner {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int SLAB_SIZE = 1 << 16;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ValueFactory factory = ValueFactoryImpl.getInstance();
+    private final boolean preserveBNodeIds;
+    private final boolean lazy;
+    private RDFHandler handler = null;
+    private String bnodePrefix = null;
+    private String fixedBNodePrefix = null;
+    private String source = null;
+    //buffer the lines of ByteStatements are copied to
+    private byte[] slab = null;
+    private int slabPos = 0;
+    private final LastTerm lastSubject = new LastTerm();
+    private final LastTerm lastPredicate = new LastTerm();
+    private long skippedLines = 0;
+
+    public NTriplesScanner() {
+        this(false, false);
+    }
+
+    public NTriplesScanner(boolean preserveBNodeIds) {
+        this(preserveBNodeIds, false);
+    }
+
+    /**
+     * Ctor
+     *
+     * @param preserveBNodeIds True to keep the blank node ids of the input
+     * instead of generating new ones.
+     * @param lazy True to create ByteStatements.
+     */
+    public NTriplesScanner(boolean preserveBNodeIds, boolean lazy) {
+        this.preserveBNodeIds = preserveBNodeIds;
+        this.lazy = lazy;
+    }
+
+    public void setRDFHandler(RDFHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Uses the given prefix for generated blank node ids instead of a new
+     * one for every parse(). Allows parts of one file that are parsed
+     * separately to share their blank nodes.
+     *
+     * @param prefix Prefix as created by newBNodePrefix() or null.
+     */
+    public void setBNodePrefix(String prefix) {
+        this.fixedBNodePrefix = prefix;
+    }
+
+    /**
+     * Names the input in messages about invalid lines, e.g. if the stream is
+     * a part of a file and the line numbers count from the start of the part.
+     *
+     * @param source Description of the input or null.
+     */
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Creates a prefix for blank node ids like Rio does for every document.
+     * @return
+     */
+    public static String newBNodePrefix() {
+        return "genid-" + UUID.randomUUID().toString().replaceAll("-", "") + "-";
+    }
+
+    /**
+     * Parses a stream and passes its statements to the handler. The stream
+     * is not closed.
+     *
+     * @param in N-Triples input.
+     * @throws IOException
+     * @throws RDFHandlerException If the handler fails.
+     */
+    public void parse(InputStream in) throws IOException, RDFHandlerException {
+        bnodePrefix = fixedBNodePrefix != null ? fixedBNodePrefix : newBNodePrefix();
+        lastSubject.clear();
+        lastPredicate.clear();
+        skippedLines = 0;
+        slab = null;
+        RawLineInput input = new RawLineInput(in, BUFFER_SIZE);
+        int[] m = new int[RawLine.STRIDE];
+        handler.startRDF();
+        while (input.next()) {
+            byte[] b = input.getBuffer();
+            int res = RawLine.scan(b, input.getStart(), input.getEnd(), m, 0);
+            if (res == RawLine.EMPTY) {
+                continue;
+            }
+            Statement st = null;
+            if (res == RawLine.VALID) {
+                String warning = RawLine.getWarning(m, 0);
+                if (warning != null) {
+                    System.err.println(warning + " in line " + input.getLineNr() + location() + ".");
+                }
+                if (lazy) {
+                    st = toByteStatement(b, m);
+                    m = new int[RawLine.STRIDE];
+                } else {
+                    st = toStatement(b, m);
+                }
+            }
+            if (st == null) {
+                System.err.println("Skipped invalid line " + input.getLineNr() + location() + ".");
+                skippedLines++;
+            } else {
+                handler.handleStatement(st);
+            }
+        }
+        handler.endRDF();
+    }
+
+    /**
+     * Number of invalid lines skipped by the last parse().
+     * @return
+     */
+    public long getSkippedLines() {
+        return skippedLines;
+    }
+
+    private String location() {
+        return source == null ? "" : " of " + source;
+    }
+
+    /**
+     * Builds the statement of a scanned line.
+     *
+     * @return The statement or null if a term is not valid, e.g. a relative
+     * URI or a literal the value factory refuses.
+     */
+    private Statement toStatement(byte[] b, int[] m) {
+        boolean escaped = RawLine.isEscaped(m, 0);
+        try {
+            int sKind = RawLine.subjectKind(m, 0);
+            Resource subject = (Resource) lastSubject.get(b, m[RawLine.S_START], m[RawLine.S_END], sKind);
+            if (subject == null) {
+                String s = string(b, m[RawLine.S_START], m[RawLine.S_END], escaped);
+                subject = sKind == RawLine.URI ? factory.createURI(s) : createBNode(s);
+                lastSubject.set(b, m[RawLine.S_START], m[RawLine.S_END], sKind, subject);
+            }
+            URI predicate = (URI) lastPredicate.get(b, m[RawLine.P_START], m[RawLine.P_END], RawLine.URI);
+            if (predicate == null) {
+                predicate = factory.createURI(string(b, m[RawLine.P_START], m[RawLine.P_END], escaped));
+                lastPredicate.set(b, m[RawLine.P_START], m[RawLine.P_END], RawLine.URI, predicate);
+            }
+            Value object;
+            String o = string(b, m[RawLine.O_START], m[RawLine.O_END], escaped);
+            switch (RawLine.objectKind(m, 0)) {
+                case RawLine.URI:
+                    object = factory.createURI(o);
+                    break;
+                case RawLine.BNODE:
+                    object = createBNode(o);
+                    break;
+                case RawLine.LANG_LITERAL:
+                    object = factory.createLiteral(o, string(b, m[RawLine.X_START], m[RawLine.X_END], false));
+                    break;
+                case RawLine.TYPED_LITERAL:
+                    object = factory.createLiteral(o, factory.createURI(string(b, m[RawLine.X_START], m[RawLine.X_END], escaped)));
+                    break;
+                default:
+                    object = factory.createLiteral(o);
+            }
+            return factory.createStatement(subject, predicate, object);
+        } catch (RuntimeException ex) {
+            //invalid URI or escape sequence, or a literal the factory fails on
+            return null;
+        }
+    }
+
+    /**
+     * Copies a scanned line to the slab and wraps it in a ByteStatement. The
+     * positions are moved to the slab, m becomes part of the statement.
+     *
+     * @return The statement or null if a URI is not absolute.
+     */
+    private Statement toByteStatement(byte[] b, int[] m) {
+        int kind = RawLine.objectKind(m, 0);
+        if (RawLine.isEscaped(m, 0)) {
+            //escape sequences are checked by decoding the line once
+            if (toStatement(b, m) == null) {
+                return null;
+            }
+        } else if ((RawLine.subjectKind(m, 0) == RawLine.URI && !hasColon(b, m[RawLine.S_START], m[RawLine.S_END]))
+                || !hasColon(b, m[RawLine.P_START], m[RawLine.P_END])
+                || (kind == RawLine.URI && !hasColon(b, m[RawLine.O_START], m[RawLine.O_END]))
+                || (kind == RawLine.TYPED_LITERAL && !hasColon(b, m[RawLine.X_START], m[RawLine.X_END]))) {
+            return null;
+        }
+        int lineStart = m[RawLine.LINE_START];
+        int len = m[RawLine.LINE_END] - lineStart;
+        if (slab == null || slab.length - slabPos < len) {
+            slab = new byte[Math.max(len, SLAB_SIZE)];
+            slabPos = 0;
+        }
+        System.arraycopy(b, lineStart, slab, slabPos, len);
+        int shift = slabPos - lineStart;
+        for (int i = RawLine.LINE_START; i <= RawLine.X_END; i++) {
+            m[i] += shift;
+        }
+        slabPos += len;
+        return new ByteStatement(slab, m, preserveBNodeIds ? null : bnodePrefix);
+    }
+
+    private static boolean hasColon(byte[] b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (b[i] == ':') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String string(byte[] b, int start, int end, boolean escaped) {
+        if (escaped) {
+            return RawLine.decode(b, start, end);
+        }
+        return new String(b, start, end - start, UTF8);
+    }
+
+    /**
+     * Creates a blank node like RDFParserBase does.
+     */
+    private Resource createBNode(String label) {
+        return factory.createBNode(ByteBNode.toID(preserveBNodeIds ? null : bnodePrefix, label));
+    }
+
+    /**
+     * The bytes and the value of the term of the previous line.
+     */
+    private static class LastTerm {
+
+        private byte[] bytes = new byte[256];
+        private int length = -1;
+        private int kind = -1;
+        private Value value = null;
+
+        void clear() {
+            length = -1;
+            value = null;
+        }
+
+        /**
+         * Returns the value if the term has the given bytes and kind, null
+         * otherwise.
+         */
+        Value get(byte[] b, int start, int end, int kind) {
+            int len = end - start;
+            if (len != length || kind != this.kind) {
+                return null;
+            }
+            for (int i = len - 1; i >= 0; i--) { //URIs mostly differ at the end
+                if (bytes[i] != b[start + i]) {
+                    return null;
+                }
+            }
+            return value;
+        }
+
+        void set(byte[] b, int start, int end, int kind, Value value) {
+            int len = end - start;
+            if (bytes.length < len) {
+                bytes = new byte[Math.max(len, 2 * bytes.length)];
+            }
+            System.arraycopy(b, start, bytes, 0, len);
+            this.length = len;
+            this.kind = kind;
+            this.value = value;
+        }
+    }
+
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.gesis.reshaperdf.utils.CompressedIO;
+import org.gesis.reshaperdf.utils.PullReader;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.NTriplesParserSettings;
+import org.openrdf.rio.helpers.StatementCollector;
+
+/**
+ * Range partitioned sort. Lines at random positions of the input are sampled
+ * and sorted, every n-th sample becomes a splitter. The input is scattered
+ * into one bucket file per key range between two splitters. The buckets are
+ * sorted independently by a pool of threads, each with an equal share of the
+ * memory budget. Since all keys of a bucket are smaller than those of the
+ * next bucket, the sorted buckets are concatenated to the output file without
+ * a final merge. Sampling needs random access, so the input must not be
+ * compressed. A compressed output is written by compressing the sorted
+ * buckets, their concatenation is a valid compressed file.
+ *
+ * In statement mode the buckets use the binary run format and are sorted
+ * without parsing them again, in raw mode they hold the unchanged lines.
+ *
+ * @author bensmafx
+ */
+public class PartitionedSort {
+
+    private static final int SAMPLES_PER_PARTITION = 100;
+    private static final int SAMPLE_BLOCK_SIZE = 1 << 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private PartitionedSort() {
+    }
+
+    /**
+     * Sorts the file.
+     *
+     * @param inFile N-Triples file to sort
+     * @param outFile File to store results in
+     * @param settings Tuning parameters
+     * @throws IOException
+     * @throws RDFHandlerException
+     * @throws InterruptedException
+     */
+    public static void sort(File inFile, File outFile, SortSettings settings) throws IOException, RDFHandlerException, InterruptedException {
+        if (CompressedIO.isCompressed(inFile)) {
+            throw new IllegalArgumentException("Partitioned sorting requires an uncompressed input file.");
+        }
+        Workspace.checkFreeSpace(settings.getTmpDirs(), inFile.length());
+        int threads = Math.min(settings.getPartitions(), Runtime.getRuntime().availableProcessors());
+        SortSettings bucketSettings = settings.copy();
+        bucketSettings.setPartitions(1);
+        bucketSettings.setMemory(Math.max(1, settings.getMemoryBudget() / threads));
+        bucketSettings.setIoThreads(Math.max(1, settings.getIoThreads() / threads));
+
+        List<byte[]> samples = sampleLines(inFile, settings.getPartitions() * SAMPLES_PER_PARTITION);
+        Workspace workspace = new Workspace(settings.getTmpDirs(), settings.isCompressTmp());
+        File[] buckets;
+        if (settings.isRaw()) {
+            List<RawLine> splitters = pickSplitters(parseRawLines(samples), settings.getPartitions(), new RawLineComparator());
+            buckets = scatterLines(inFile, workspace, splitters);
+        } else {
+            Comparator<Statement> comparator = settings.getOrder().newComparator();
+            List<Statement> splitters = pickSplitters(parseStatements(samples), settings.getPartitions(), comparator);
+            buckets = scatterStatements(inFile, workspace, splitters, comparator);
+        }
+        System.out.println("Scattered input into " + buckets.length + " buckets.");
+
+        File[] sorted = sortBuckets(buckets, workspace, bucketSettings, threads, CompressedIO.getSuffix(outFile));
+        concatenate(sorted, outFile);
+        workspace.delete();
+        System.out.println("Complete");
+    }
+
+    /**
+     * Reads complete lines at random positions of the file.
+     *
+     * @param file
+     * @param count Number of samples to take.
+     * @return The lines without line break.
+     * @throws IOException
+     */
+    private static List<byte[]> sampleLines(File file, int count) throws IOException {
+        List<byte[]> samples = new ArrayList<byte[]>(count);
+        long length = file.length();
+        if (length == 0) {
+            return samples;
+        }
+        Random random = new Random(length); //reproducible for the same input
+        byte[] block = new byte[SAMPLE_BLOCK_SIZE];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            for (int i = 0; i < count; i++) {
+                long pos = (long) (random.nextDouble() * length);
+                raf.seek(pos);
+                int n = raf.read(block);
+                int start = 0;
+                if (pos > 0) { //skip the partial line
+                    while (start < n && block[start] != '\n') {
+                        start++;
+                    }
+                    start++;
+                }
+                int end = start;
+                while (end < n && block[end] != '\n') {
+                    end++;
+                }
+                if (start < end && (end < n || pos + n == length)) {
+                    samples.add(Arrays.copyOfRange(block, start, end));
+                }
+            }
+        } finally {
+            raf.close();
+        }
+        return samples;
+    }
+
+    private static List<RawLine> parseRawLines(List<byte[]> lines) {
+        List<RawLine> list = new ArrayList<RawLine>(lines.size());
+        for (byte[] line : lines) {
+            int[] meta = new int[RawLine.STRIDE];
+            if (RawLine.scan(line, 0, line.length, meta, 0) == RawLine.VALID) {
+                list.add(new RawLine(line, meta));
+            }
+        }
+        return list;
+    }
+
+    private static List<Statement> parseStatements(List<byte[]> lines) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        for (byte[] line : lines) {
+            bos.write(line);
+            bos.write('\n');
+        }
+        List<Statement> list = new ArrayList<Statement>(lines.size());
+        RDFParser parser = Rio.createParser(RDFFormat.NTRIPLES);
+        parser.getParserConfig().addNonFatalError(NTriplesParserSettings.FAIL_ON_NTRIPLES_INVALID_LINES);
+        parser.setRDFHandler(new StatementCollector(list));
+        try {
+            parser.parse(new ByteArrayInputStream(bos.toByteArray()), "");
+        } catch (RDFParseException ex) {
+            throw new IOException("When parsing samples", ex);
+        } catch (RDFHandlerException ex) {
+            throw new IOException("When parsing samples", ex);
+        }
+        return list;
+    }
+
+    /**
+     * Sorts the samples and picks evenly spaced splitters. Equal splitters
+     * are dropped.
+     *
+     * @param samples
+     * @param partitions Desired number of partitions.
+     * @param comparator
+     * @return Sorted list of at most partitions - 1 splitters.
+     */
+    static <T> List<T> pickSplitters(List<T> samples, int partitions, Comparator<? super T> comparator) {
+        Collections.sort(samples, comparator);
+        List<T> splitters = new ArrayList<T>(partitions - 1);
+        for (int i = 1; i < partitions && !samples.isEmpty(); i++) {
+            T candidate = samples.get((int) ((long) i * samples.size() / partitions));
+            if (splitters.isEmpty() || comparator.compare(splitters.get(splitters.size() - 1), candidate) < 0) {
+                splitters.add(candidate);
+            }
+        }
+        return splitters;
+    }
+
+    /**
+     * Determines the bucket of an element, that is the number of splitters
+     * smaller or equal to it.
+     */
+    static <T> int bucketOf(T element, List<T> splitters, Comparator<? super T> comparator) {
+        int lo = 0;
+        int hi = splitters.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparator.compare(splitters.get(mid), element) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static File[] scatterStatements(File inFile, Workspace workspace, List<Statement> splitters, Comparator<Statement> comparator) throws IOException, RDFHandlerException {
+        File[] buckets = new File[splitters.size() + 1];
+        OutputStream[] streams = new OutputStream[buckets.length];
+        RunWriter[] writers = new RunWriter[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = workspace.newFile("bucket_" + i);
+            streams[i] = workspace.openOutput(buckets[i]);
+            writers[i] = new RunWriter(streams[i]);
+        }
+
+        PullReader pReader = new PullReader(inFile);
+        pReader.load();
+        while (!pReader.isEmpty()) {
+            Statement stmt = pReader.peek();
+            pReader.removeHead();
+            writers[bucketOf(stmt, splitters, comparator)].handleStatement(stmt);
+        }
+        pReader.close();
+
+        for (int i = 0; i < buckets.length; i++) {
+            writers[i].endRDF();
+            streams[i].close();
+        }
+        return buckets;
+    }
+
+    private static File[] scatterLines(File inFile, Workspace workspace, List<RawLine> splitters) throws IOException {
+        Comparator<RawLine> comparator = new RawLineComparator();
+        File[] buckets = new File[splitters.size() + 1];
+        OutputStream[] streams = new OutputStream[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = workspace.newFile("bucket_" + i);
+            streams[i] = new BufferedOutputStream(workspace.openOutput(buckets[i]), BUFFER_SIZE);
+        }
+
+        RawLineInput input = new RawLineInput(new FileInputStream(inFile));
+        long skipped = 0;
+        while (input.next()) {
+            int[] meta = new int[RawLine.STRIDE];
+            int res = RawLine.scan(input.getBuffer(), input.getStart(), input.getEnd(), meta, 0);
+            if (res == RawLine.VALID) {
+                RawLine line = new RawLine(input.getBuffer(), meta);
+                line.write(streams[bucketOf(line, splitters, comparator)]);
+            } else if (res == RawLine.INVALID) {
+                System.err.println("Skipped invalid line " + input.getLineNr() + ".");
+                skipped++;
+            }
+        }
+        input.close();
+        if (skipped > 0) {
+            System.out.println(skipped + " invalid lines have been skipped.");
+        }
+
+        for (OutputStream stream : streams) {
+            stream.close();
+        }
+        return buckets;
+    }
+
+    /**
+     * Sorts the buckets in parallel.
+     *
+     * @param suffix Compression suffix of the output.
+     * @return The sorted buckets in the order of the input.
+     */
+    private static File[] sortBuckets(File[] buckets, final Workspace workspace, final SortSettings settings, int threads, String suffix) throws IOException, InterruptedException {
+        File[] sorted = new File[buckets.length];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(buckets.length);
+        for (int i = 0; i < buckets.length; i++) {
+            final File bucket = buckets[i];
+            final File result = workspace.newFile("sorted_" + i + suffix);
+            sorted[i] = result;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    if (settings.isRaw()) {
+                        RawSort.sort(workspace.openInput(bucket), result, settings);
+                    } else {
+                        RunReader reader = new RunReader(bucket, workspace.openInput(bucket));
+                        reader.load();
+                        Sort.sort(reader, result, settings);
+                        reader.close();
+                    }
+                    bucket.delete();
+                    return null;
+                }
+            }));
+        }
+        executor.shutdown();
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException ex) {
+            executor.shutdownNow();
+            throw new IOException("When sorting a bucket", ex.getCause());
+        }
+        return sorted;
+    }
+
+    private static void concatenate(File[] files, File outFile) throws IOException {
+        FileOutputStream fos = new FileOutputStream(outFile);
+        FileChannel out = fos.getChannel();
+        try {
+            for (File file : files) {
+                FileInputStream fis = new FileInputStream(file);
+                FileChannel in = fis.getChannel();
+                try {
+                    long pos = 0;
+                    long size = in.size();
+                    while (pos < size) {
+                        pos += in.transferTo(pos, size - pos, out);
+                    }
+                } finally {
+                    fis.close();
+                }
+                file.delete();
+            }
+        } finally {
+            fos.close();
+        }
+    }
+
+}
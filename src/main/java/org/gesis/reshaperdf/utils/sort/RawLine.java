@@ -0,0 +1,555 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+
+/**
+ * An N-Triples line kept as UTF-8 bytes. The positions of the terms in the
+ * line are stored in an int array, so that lines can be compared without
+ * building Statement objects. The static methods work on arbitrary byte and
+ * int arrays and are shared with the RawLineArena, which stores many lines in
+ * a single pair of arrays.
+ *
+ * For each line STRIDE ints are stored: start and end of the line, start and
+ * end of subject, predicate and object, start and end of the language tag or
+ * datatype of a literal object, and the term kinds. Term ranges exclude the
+ * angle brackets of URIs, the "_:" of blank nodes and the quotes of literals.
+ *
+ * Like the Rio parser, scan() accepts URIs containing spaces and literals
+ * with an empty language tag, which is dropped. Such lines are flagged, see
+ * getWarning(). Literals typed rdf:langString are rejected, because a
+ * literal of this type requires a language tag.
+ *
+ * @author bensmafx
+ */
+public class RawLine {
+
+    public static final int STRIDE = 11;
+
+    static final int LINE_START = 0;
+    static final int LINE_END = 1;
+    public static final int S_START = 2;
+    public static final int S_END = 3;
+    static final int P_START = 4;
+    static final int P_END = 5;
+    static final int O_START = 6;
+    static final int O_END = 7;
+    static final int X_START = 8;
+    static final int X_END = 9;
+    static final int KINDS = 10;
+
+    //term kinds
+    public static final int URI = 0;
+    static final int BNODE = 1;
+    static final int PLAIN_LITERAL = 2;
+    static final int LANG_LITERAL = 3;
+    static final int TYPED_LITERAL = 4;
+
+    //layout of the kinds field
+    private static final int SUBJECT_SHIFT = 0;
+    private static final int OBJECT_SHIFT = 4;
+    private static final int KIND_MASK = 0xF;
+    private static final int ESCAPED = 1 << 8;
+    //deviations from N-Triples that the Rio parser tolerates with an error
+    private static final int SPACE_IN_URI = 1 << 9;
+    private static final int EMPTY_LANGUAGE = 1 << 10;
+
+    //results of scan()
+    public static final int VALID = 1;
+    public static final int EMPTY = 0;
+    public static final int INVALID = -1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte[] XSD_STRING = "http://www.w3.org/2001/XMLSchema#string".getBytes(UTF8);
+    private static final byte[] RDF_LANG_STRING = "http://www.w3.org/1999/02/22-rdf-syntax-ns#langString".getBytes(UTF8);
+
+    private final byte[] bytes;
+    private final int[] meta;
+
+    /**
+     * Ctor
+     *
+     * @param bytes Buffer holding the line.
+     * @param meta Positions of the line as produced by scan() at index 0.
+     */
+    public RawLine(byte[] bytes, int[] meta) {
+        this.bytes = bytes;
+        this.meta = meta;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public int[] getMeta() {
+        return meta;
+    }
+
+    /**
+     * Writes the line followed by a line break.
+     * @param out
+     * @throws IOException
+     */
+    public void write(OutputStream out) throws IOException {
+        write(bytes, meta, 0, out);
+    }
+
+    static void write(byte[] b, int[] m, int base, OutputStream out) throws IOException {
+        out.write(b, m[base + LINE_START], m[base + LINE_END] - m[base + LINE_START]);
+        out.write('\n');
+    }
+
+    /**
+     * Determines the term positions of an N-Triples line.
+     *
+     * @param b Buffer holding the line.
+     * @param start Start of the line.
+     * @param end End of the line, excluding the line break.
+     * @param m Array to store the positions in.
+     * @param base Index in m where to store the positions.
+     * @return VALID, EMPTY for a blank or comment line or INVALID.
+     */
+    public static int scan(byte[] b, int start, int end, int[] m, int base) {
+        int i = skipSpace(b, start, end);
+        if (i == end || b[i] == '#') {
+            return EMPTY;
+        }
+        m[base + LINE_START] = i;
+        int kinds = 0;
+
+        //subject
+        if (b[i] == '<') {
+            m[base + S_START] = i + 1;
+            i = endOfURI(b, i + 1, end);
+            if (i < 0) {
+                return INVALID;
+            }
+            m[base + S_END] = i++;
+            kinds |= URI << SUBJECT_SHIFT;
+            kinds |= spaceFlag(b, m[base + S_START], m[base + S_END]);
+        } else if (b[i] == '_' && i + 1 < end && b[i + 1] == ':') {
+            m[base + S_START] = i + 2;
+            i = endOfLabel(b, i + 2, end);
+            m[base + S_END] = i;
+            kinds |= BNODE << SUBJECT_SHIFT;
+        } else {
+            return INVALID;
+        }
+        if (i == m[base + S_START]) {
+            return INVALID;
+        }
+
+        //predicate
+        i = skipSpace(b, i, end);
+        if (i == end || b[i] != '<') {
+            return INVALID;
+        }
+        m[base + P_START] = i + 1;
+        i = endOfURI(b, i + 1, end);
+        if (i < 0) {
+            return INVALID;
+        }
+        m[base + P_END] = i++;
+        kinds |= spaceFlag(b, m[base + P_START], m[base + P_END]);
+
+        //object
+        i = skipSpace(b, i, end);
+        if (i == end) {
+            return INVALID;
+        }
+        m[base + X_START] = 0;
+        m[base + X_END] = 0;
+        if (b[i] == '<') {
+            m[base + O_START] = i + 1;
+            i = endOfURI(b, i + 1, end);
+            if (i < 0) {
+                return INVALID;
+            }
+            m[base + O_END] = i++;
+            kinds |= URI << OBJECT_SHIFT;
+            kinds |= spaceFlag(b, m[base + O_START], m[base + O_END]);
+        } else if (b[i] == '_' && i + 1 < end && b[i + 1] == ':') {
+            m[base + O_START] = i + 2;
+            i = endOfLabel(b, i + 2, end);
+            m[base + O_END] = i;
+            if (i == m[base + O_START]) {
+                return INVALID;
+            }
+            kinds |= BNODE << OBJECT_SHIFT;
+        } else if (b[i] == '"') {
+            m[base + O_START] = ++i;
+            while (i < end && b[i] != '"') {
+                if (b[i] == '\\') {
+                    i++;
+                }
+                i++;
+            }
+            if (i >= end) {
+                return INVALID;
+            }
+            m[base + O_END] = i++;
+            if (i < end && b[i] == '@') {
+                m[base + X_START] = ++i;
+                while (i < end && (isLetterOrDigit(b[i]) || b[i] == '-')) {
+                    i++;
+                }
+                m[base + X_END] = i;
+                if (i == m[base + X_START]) {
+                    m[base + X_START] = 0;
+                    m[base + X_END] = 0;
+                    kinds |= PLAIN_LITERAL << OBJECT_SHIFT | EMPTY_LANGUAGE;
+                } else {
+                    kinds |= LANG_LITERAL << OBJECT_SHIFT;
+                }
+            } else if (i + 2 < end && b[i] == '^' && b[i + 1] == '^' && b[i + 2] == '<') {
+                m[base + X_START] = i + 3;
+                i = endOfURI(b, i + 3, end);
+                if (i < 0) {
+                    return INVALID;
+                }
+                m[base + X_END] = i++;
+                if (equals(b, m[base + X_START], m[base + X_END], RDF_LANG_STRING)) {
+                    return INVALID;
+                }
+                kinds |= TYPED_LITERAL << OBJECT_SHIFT;
+                kinds |= spaceFlag(b, m[base + X_START], m[base + X_END]);
+            } else {
+                kinds |= PLAIN_LITERAL << OBJECT_SHIFT;
+            }
+        } else {
+            return INVALID;
+        }
+
+        //terminating dot, optionally followed by a comment
+        i = skipSpace(b, i, end);
+        if (i == end || b[i] != '.') {
+            return INVALID;
+        }
+        m[base + LINE_END] = ++i;
+        i = skipSpace(b, i, end);
+        if (i != end && b[i] != '#') {
+            return INVALID;
+        }
+
+        for (int j = m[base + LINE_START]; j < m[base + LINE_END]; j++) {
+            if (b[j] == '\\') {
+                kinds |= ESCAPED;
+                break;
+            }
+        }
+        m[base + KINDS] = kinds;
+        return VALID;
+    }
+
+    private static int skipSpace(byte[] b, int i, int end) {
+        while (i < end && (b[i] == ' ' || b[i] == '\t' || b[i] == '\r')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int spaceFlag(byte[] b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (b[i] == ' ') {
+                return SPACE_IN_URI;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean equals(byte[] b, int start, int end, byte[] x) {
+        if (end - start != x.length) {
+            return false;
+        }
+        for (int i = 0; i < x.length; i++) {
+            if (b[start + i] != x[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetterOrDigit(byte c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * Finds the closing bracket of a URI. Like the Rio parser any other
+     * character is accepted.
+     */
+    private static int endOfURI(byte[] b, int i, int end) {
+        while (i < end && b[i] != '>') {
+            i++;
+        }
+        return i < end ? i : -1;
+    }
+
+    /**
+     * Finds the end of a blank node label, which is ended by white space or
+     * the start of the next term.
+     */
+    private static int endOfLabel(byte[] b, int i, int end) {
+        int start = i;
+        while (i < end && b[i] != ' ' && b[i] != '\t' && b[i] != '<' && b[i] != '"') {
+            i++;
+        }
+        //a label does not end with a dot, the dot terminates the statement
+        if (i > start && b[i - 1] == '.') {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Compares two lines in the order of StatementsComparatorSPO.
+     *
+     * @param a Buffer of the first line.
+     * @param ma Positions of the first line.
+     * @param ia Index of the first line in ma.
+     * @param b Buffer of the second line.
+     * @param mb Positions of the second line.
+     * @param ib Index of the second line in mb.
+     * @return
+     */
+    public static int compare(byte[] a, int[] ma, int ia, byte[] b, int[] mb, int ib) {
+        int ka = ma[ia + KINDS];
+        int kb = mb[ib + KINDS];
+        if (((ka | kb) & ESCAPED) != 0) {
+            return compareDecoded(a, ma, ia, b, mb, ib);
+        }
+        int res = compareUTF16(a, ma[ia + S_START], ma[ia + S_END], b, mb[ib + S_START], mb[ib + S_END]);
+        if (res != 0) {
+            return res;
+        }
+        res = compareUTF16(a, ma[ia + P_START], ma[ia + P_END], b, mb[ib + P_START], mb[ib + P_END]);
+        if (res != 0) {
+            return res;
+        }
+        int oa = (ka >> OBJECT_SHIFT) & KIND_MASK;
+        int ob = (kb >> OBJECT_SHIFT) & KIND_MASK;
+        if (oa == URI && ob == URI) {
+            return compareUTF16(a, ma[ia + O_START], ma[ia + O_END], b, mb[ib + O_START], mb[ib + O_END]);
+        }
+        if (isLiteral(oa) && isLiteral(ob)) {
+            //label, datatype, language, a missing language is bigger
+            res = compareUTF16(a, ma[ia + O_START], ma[ia + O_END], b, mb[ib + O_START], mb[ib + O_END]);
+            if (res == 0) {
+                res = compareDatatypes(a, ma, ia, oa, b, mb, ib, ob);
+                if (res == 0) {
+                    if (oa == LANG_LITERAL && ob == LANG_LITERAL) {
+                        res = compareLanguages(a, ma[ia + X_START], ma[ia + X_END], b, mb[ib + X_START], mb[ib + X_END]);
+                    } else if (oa == LANG_LITERAL) {
+                        res = -1;
+                    } else if (ob == LANG_LITERAL) {
+                        res = 1;
+                    }
+                }
+            }
+            return res;
+        }
+        //different kinds of terms are compared by their string representation
+        return compareDecoded(a, ma, ia, b, mb, ib);
+    }
+
+    private static boolean isLiteral(int kind) {
+        return kind == PLAIN_LITERAL || kind == LANG_LITERAL || kind == TYPED_LITERAL;
+    }
+
+    private static int compareDatatypes(byte[] a, int[] ma, int ia, int oa, byte[] b, int[] mb, int ib, int ob) {
+        if (oa == TYPED_LITERAL && ob == TYPED_LITERAL) {
+            return compareUTF16(a, ma[ia + X_START], ma[ia + X_END], b, mb[ib + X_START], mb[ib + X_END]);
+        }
+        byte[] x = datatype(oa);
+        byte[] y = datatype(ob);
+        if (x != null && y != null) {
+            return compareUTF16(x, 0, x.length, y, 0, y.length);
+        }
+        if (x != null) {
+            return compareUTF16(x, 0, x.length, b, mb[ib + X_START], mb[ib + X_END]);
+        }
+        return compareUTF16(a, ma[ia + X_START], ma[ia + X_END], y, 0, y.length);
+    }
+
+    private static byte[] datatype(int kind) {
+        if (kind == PLAIN_LITERAL) {
+            return XSD_STRING;
+        } else if (kind == LANG_LITERAL) {
+            return RDF_LANG_STRING;
+        }
+        return null;
+    }
+
+    /**
+     * Compares language tags ignoring case, since literals store them in
+     * lower case. Tags consist of ASCII letters, digits and dashes only.
+     */
+    private static int compareLanguages(byte[] a, int aStart, int aEnd, byte[] b, int bStart, int bEnd) {
+        int la = aEnd - aStart;
+        int lb = bEnd - bStart;
+        int n = Math.min(la, lb);
+        for (int i = 0; i < n; i++) {
+            int x = toLowerCase(a[aStart + i]);
+            int y = toLowerCase(b[bStart + i]);
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return la - lb;
+    }
+
+    private static int toLowerCase(byte c) {
+        return (c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c;
+    }
+
+    /**
+     * Compares UTF-8 byte ranges in the order of String.compareTo(), that is by
+     * UTF-16 code units. This equals the byte order except for characters
+     * above U+FFFF, which are encoded as surrogates in UTF-16 and thus sort
+     * before U+E000 to U+FFFF.
+     */
+    static int compareUTF16(byte[] a, int aStart, int aEnd, byte[] b, int bStart, int bEnd) {
+        int la = aEnd - aStart;
+        int lb = bEnd - bStart;
+        int n = Math.min(la, lb);
+        for (int i = 0; i < n; i++) {
+            int x = a[aStart + i] & 0xFF;
+            int y = b[bStart + i] & 0xFF;
+            if (x != y) {
+                //lead bytes of U+E000 to U+FFFF are moved above those of 4 byte sequences
+                if (x == 0xEE || x == 0xEF) {
+                    x += 0x10;
+                }
+                if (y == 0xEE || y == 0xEF) {
+                    y += 0x10;
+                }
+                return x - y;
+            }
+        }
+        return la - lb;
+    }
+
+    /**
+     * Slow path for lines with escape sequences and for objects of different
+     * kinds. Decodes the terms and compares them like the Statement based
+     * comparator.
+     */
+    private static int compareDecoded(byte[] a, int[] ma, int ia, byte[] b, int[] mb, int ib) {
+        int res = decode(a, ma[ia + S_START], ma[ia + S_END]).compareTo(decode(b, mb[ib + S_START], mb[ib + S_END]));
+        if (res != 0) {
+            return res;
+        }
+        res = decode(a, ma[ia + P_START], ma[ia + P_END]).compareTo(decode(b, mb[ib + P_START], mb[ib + P_END]));
+        if (res != 0) {
+            return res;
+        }
+        int oa = (ma[ia + KINDS] >> OBJECT_SHIFT) & KIND_MASK;
+        int ob = (mb[ib + KINDS] >> OBJECT_SHIFT) & KIND_MASK;
+        String la = decode(a, ma[ia + O_START], ma[ia + O_END]);
+        String lb = decode(b, mb[ib + O_START], mb[ib + O_END]);
+        if (oa == URI && ob == URI) {
+            return la.compareTo(lb);
+        }
+        if (isLiteral(oa) && isLiteral(ob)) {
+            res = la.compareTo(lb);
+            if (res == 0) {
+                res = decodeDatatype(a, ma, ia, oa).compareTo(decodeDatatype(b, mb, ib, ob));
+                if (res == 0) {
+                    String langA = oa == LANG_LITERAL ? decode(a, ma[ia + X_START], ma[ia + X_END]).toLowerCase() : null;
+                    String langB = ob == LANG_LITERAL ? decode(b, mb[ib + X_START], mb[ib + X_END]).toLowerCase() : null;
+                    if (langA != null && langB != null) {
+                        res = langA.compareTo(langB);
+                    } else if (langA != null) {
+                        res = -1;
+                    } else if (langB != null) {
+                        res = 1;
+                    }
+                }
+            }
+            return res;
+        }
+        return toString(a, ma, ia, oa, la).compareTo(toString(b, mb, ib, ob, lb));
+    }
+
+    public static int subjectKind(int[] m, int base) {
+        return (m[base + KINDS] >> SUBJECT_SHIFT) & KIND_MASK;
+    }
+
+    static int objectKind(int[] m, int base) {
+        return (m[base + KINDS] >> OBJECT_SHIFT) & KIND_MASK;
+    }
+
+    static boolean isEscaped(int[] m, int base) {
+        return (m[base + KINDS] & ESCAPED) != 0;
+    }
+
+    /**
+     * Describes the deviation from N-Triples a scanned line has been
+     * accepted with.
+     *
+     * @param m Positions of the line.
+     * @param base Index of the line in m.
+     * @return The message or null if the line is valid N-Triples.
+     */
+    public static String getWarning(int[] m, int base) {
+        int kinds = m[base + KINDS];
+        if ((kinds & SPACE_IN_URI) != 0) {
+            return "URI includes an unencoded space";
+        }
+        if ((kinds & EMPTY_LANGUAGE) != 0) {
+            return "Language tag is empty and has been dropped";
+        }
+        return null;
+    }
+
+    static String decode(byte[] b, int start, int end) {
+        String str = new String(b, start, end - start, UTF8);
+        if (str.indexOf('\\') >= 0) {
+            str = NTriplesUtil.unescapeString(str);
+        }
+        return str;
+    }
+
+    private static String decodeDatatype(byte[] b, int[] m, int i, int kind) {
+        byte[] dt = datatype(kind);
+        if (dt != null) {
+            return new String(dt, UTF8);
+        }
+        return decode(b, m[i + X_START], m[i + X_END]);
+    }
+
+    /**
+     * Builds the string representation of an object like Value.toString().
+     */
+    private static String toString(byte[] b, int[] m, int i, int kind, String value) {
+        switch (kind) {
+            case URI:
+                return value;
+            case BNODE:
+                return "_:" + value;
+            case LANG_LITERAL:
+                return "\"" + value + "\"@" + decode(b, m[i + X_START], m[i + X_END]).toLowerCase();
+            default:
+                return "\"" + value + "\"^^<" + decodeDatatype(b, m, i, kind) + ">";
+        }
+    }
+
+}
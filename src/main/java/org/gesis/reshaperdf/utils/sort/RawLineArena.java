@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stores N-Triples lines as UTF-8 bytes in one large byte array together with
+ * their term positions in one int array. Costs the length of a line plus
+ * RawLine.STRIDE ints per line, instead of the object graph of a Statement.
+ * The arrays grow on demand up to the given capacity.
+ *
+ * @author bensmafx
+ */
+public class RawLineArena {
+
+    private static final int INITIAL_SIZE = 1 << 20;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final long capacity;
+    private byte[] bytes;
+    private int[] meta;
+    private int used = 0;
+    private int size = 0;
+    private int[] order = null;
+
+    /**
+     * Ctor
+     *
+     * @param capacity Maximum number of bytes to occupy.
+     */
+    public RawLineArena(long capacity) {
+        this.capacity = capacity;
+        bytes = new byte[(int) Math.min(INITIAL_SIZE, capacity)];
+        meta = new int[RawLine.STRIDE * 1024];
+    }
+
+    /**
+     * Appends a line.
+     *
+     * @param b Buffer holding the line.
+     * @param start Start of the line.
+     * @param end End of the line, excluding the line break.
+     * @return RawLine.VALID if the line has been added, RawLine.EMPTY or
+     * RawLine.INVALID if it has been skipped.
+     * @throws IllegalStateException If the arena is full. Check with fits()
+     * before.
+     */
+    public int add(byte[] b, int start, int end) {
+        int len = end - start;
+        if (!fits(len)) {
+            throw new IllegalStateException("Arena is full.");
+        }
+        if (used + len > bytes.length) {
+            long newSize = Math.min((long) bytes.length * 2, Math.min(capacity, MAX_ARRAY_SIZE));
+            byte[] tmp = new byte[(int) Math.max(newSize, (long) used + len)];
+            System.arraycopy(bytes, 0, tmp, 0, used);
+            bytes = tmp;
+        }
+        if ((size + 1) * RawLine.STRIDE > meta.length) {
+            int[] tmp = new int[meta.length * 2];
+            System.arraycopy(meta, 0, tmp, 0, size * RawLine.STRIDE);
+            meta = tmp;
+        }
+        System.arraycopy(b, start, bytes, used, len);
+        int res = RawLine.scan(bytes, used, used + len, meta, size * RawLine.STRIDE);
+        if (res == RawLine.VALID) {
+            used += len;
+            size++;
+            order = null;
+        }
+        return res;
+    }
+
+    /**
+     * Determines whether a line of the given length can be added. The first
+     * line is always accepted.
+     * @param len
+     * @return
+     */
+    public boolean fits(int len) {
+        long bytesNeeded = (long) used + len;
+        if (size == 0) {
+            return bytesNeeded <= MAX_ARRAY_SIZE;
+        }
+        return bytesNeeded <= MAX_ARRAY_SIZE && bytesNeeded + 4L * RawLine.STRIDE * (size + 1) <= capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Sorts the lines in the order of StatementsComparatorSPO. The sort is
+     * stable.
+     */
+    public void sort() {
+        order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i * RawLine.STRIDE;
+        }
+        int[] tmp = new int[size];
+        mergeSort(order, tmp, 0, size);
+    }
+
+    private void mergeSort(int[] a, int[] tmp, int from, int to) {
+        if (to - from < 16) { //insertion sort for small ranges
+            for (int i = from + 1; i < to; i++) {
+                int x = a[i];
+                int j = i - 1;
+                while (j >= from && RawLine.compare(bytes, meta, a[j], bytes, meta, x) > 0) {
+                    a[j + 1] = a[j];
+                    j--;
+                }
+                a[j + 1] = x;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(a, tmp, from, mid);
+        mergeSort(a, tmp, mid, to);
+        if (RawLine.compare(bytes, meta, a[mid - 1], bytes, meta, a[mid]) <= 0) {
+            return; //already in order
+        }
+        System.arraycopy(a, from, tmp, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && RawLine.compare(bytes, meta, tmp[i], bytes, meta, tmp[j]) <= 0)) {
+                a[k] = tmp[i++];
+            } else {
+                a[k] = tmp[j++];
+            }
+        }
+    }
+
+    /**
+     * Writes the lines, in sorted order if sort() has been called before.
+     * @param out
+     * @param unique True if a line equal to its predecessor is to be dropped,
+     * requires sort() to have been called before.
+     * @return Number of written lines.
+     * @throws IOException
+     */
+    public int write(OutputStream out, boolean unique) throws IOException {
+        int written = 0;
+        int last = -1;
+        for (int i = 0; i < size; i++) {
+            int base = order != null ? order[i] : i * RawLine.STRIDE;
+            if (unique && last >= 0 && RawLine.compare(bytes, meta, last, bytes, meta, base) == 0) {
+                continue;
+            }
+            RawLine.write(bytes, meta, base, out);
+            last = base;
+            written++;
+        }
+        return written;
+    }
+
+    /**
+     * Removes all lines but keeps the allocated arrays.
+     */
+    public void clear() {
+        used = 0;
+        size = 0;
+        order = null;
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.util.Comparator;
+
+/**
+ * Compares raw N-Triples lines in the order of StatementsComparatorSPO.
+ *
+ * @author bensmafx
+ */
+public class RawLineComparator implements Comparator<RawLine> {
+
+    @Override
+    public int compare(RawLine o1, RawLine o2) {
+        return RawLine.compare(o1.getBytes(), o1.getMeta(), 0, o2.getBytes(), o2.getMeta(), 0);
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import org.gesis.reshaperdf.utils.CompressedIO;
+
+/**
+ * Run format for raw N-Triples lines. Intermediate files and the output file
+ * are plain N-Triples, one statement per line.
+ *
+ * @author bensmafx
+ */
+public class RawLineFormat implements IRunFormat<RawLine> {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Workspace workspace;
+
+    /**
+     * Ctor
+     *
+     * @param workspace Workspace the intermediate files belong to.
+     */
+    public RawLineFormat(Workspace workspace) {
+        this.workspace = workspace;
+    }
+
+    @Override
+    public IRunReader<RawLine> openReader(File file) throws IOException {
+        RawLineReader reader = new RawLineReader(file, workspace.openInput(file));
+        reader.removeHead();
+        return reader;
+    }
+
+    @Override
+    public IRunWriter<RawLine> openWriter(File file, boolean output) throws IOException {
+        OutputStream stream = output ? CompressedIO.openOutputStream(file) : workspace.openOutput(file);
+        final OutputStream out = new BufferedOutputStream(stream, BUFFER_SIZE);
+        return new IRunWriter<RawLine>() {
+
+            @Override
+            public void write(RawLine element) throws IOException {
+                element.write(out);
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+
+    /**
+     * Reads the lines of a sorted file, each into a RawLine of its own.
+     */
+    private static class RawLineReader implements IRunReader<RawLine> {
+
+        private final File file;
+        private final RawLineInput input;
+        private RawLine current = null;
+
+        RawLineReader(File file, InputStream stream) throws IOException {
+            this.file = file;
+            this.input = new RawLineInput(stream);
+        }
+
+        @Override
+        public RawLine peek() {
+            return current;
+        }
+
+        @Override
+        public void removeHead() {
+            try {
+                current = null;
+                while (current == null && input.next()) {
+                    byte[] bytes = Arrays.copyOfRange(input.getBuffer(), input.getStart(), input.getEnd());
+                    int[] meta = new int[RawLine.STRIDE];
+                    if (RawLine.scan(bytes, 0, bytes.length, meta, 0) == RawLine.VALID) {
+                        current = new RawLine(bytes, meta);
+                    }
+                }
+            } catch (IOException ex) {
+                throw new IllegalStateException("When reading run file " + file.getAbsolutePath(), ex);
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return current == null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits an input stream into lines without decoding them. After next() the
+ * current line is found in getBuffer() between getStart() and getEnd(). The
+ * buffer is reused, its content is only valid until the next call.
+ *
+ * @author bensmafx
+ */
+public class RawLineInput {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private byte[] buffer;
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    private int start = 0;
+    private int end = 0;
+    private long lineNr = 0;
+
+    public RawLineInput(InputStream in) {
+        this(in, BUFFER_SIZE);
+    }
+
+    /**
+     * Ctor
+     *
+     * @param in Stream to read.
+     * @param bufferSize Initial size of the buffer, it grows for longer lines.
+     */
+    public RawLineInput(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return False if the end of the stream has been reached.
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        int i = pos;
+        while (true) {
+            while (i < limit) {
+                if (buffer[i] == '\n') {
+                    start = pos;
+                    end = i;
+                    pos = i + 1;
+                    lineNr++;
+                    return true;
+                }
+                i++;
+            }
+            if (eof) {
+                if (pos < limit) { //last line without line break
+                    start = pos;
+                    end = limit;
+                    pos = limit;
+                    lineNr++;
+                    return true;
+                }
+                return false;
+            }
+            //move the partial line to the front, grow for long lines
+            int len = limit - pos;
+            if (len == buffer.length) {
+                byte[] tmp = new byte[buffer.length * 2];
+                System.arraycopy(buffer, pos, tmp, 0, len);
+                buffer = tmp;
+            } else {
+                System.arraycopy(buffer, pos, buffer, 0, len);
+            }
+            i -= pos;
+            pos = 0;
+            limit = len;
+            int n = in.read(buffer, limit, buffer.length - limit);
+            if (n < 0) {
+                eof = true;
+            } else {
+                limit += n;
+            }
+        }
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * Number of the current line, starting at 1.
+     * @return
+     */
+    public long getLineNr() {
+        return lineNr;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.gesis.reshaperdf.utils.CompressedIO;
+
+/**
+ * Sorts an N-Triples file line by line without parsing it into Statements.
+ * Lines are kept as UTF-8 bytes in a RawLineArena and compared on their byte
+ * ranges, the order equals the one of StatementsComparatorSPO. Lines are
+ * written as they are read, so escapes and blank node labels are preserved.
+ * Blank and comment lines are dropped, invalid lines are reported and
+ * dropped.
+ *
+ * If the input does not fit into the memory budget sorted runs are written to
+ * the workspace and merged by a MultithreadMerger.
+ *
+ * @author bensmafx
+ */
+public class RawSort {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private RawSort() {
+    }
+
+    /**
+     * Sorts the file.
+     *
+     * @param inFile N-Triples file to sort
+     * @param outFile File to store results in
+     * @param settings Tuning parameters
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void sort(File inFile, File outFile, SortSettings settings) throws IOException, InterruptedException {
+        sort(CompressedIO.openInputStream(inFile), outFile, settings, inFile.length());
+    }
+
+    /**
+     * Sorts the lines of a stream.
+     *
+     * @param in Stream on N-Triples, is closed afterwards
+     * @param outFile File to store results in
+     * @param settings Tuning parameters
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void sort(InputStream in, File outFile, SortSettings settings) throws IOException, InterruptedException {
+        sort(in, outFile, settings, 0);
+    }
+
+    /**
+     * Sorts the lines of a stream. Before the first intermediate file is
+     * written the temporary directories are checked for enough free space.
+     *
+     * @param in Stream on N-Triples, is closed afterwards
+     * @param outFile File to store results in
+     * @param settings Tuning parameters
+     * @param inputSize Size of the input in bytes, 0 if unknown
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    static void sort(InputStream in, File outFile, SortSettings settings, long inputSize) throws IOException, InterruptedException {
+        long budget = settings.getMemoryBudget();
+        System.out.println("Using a memory budget of " + (budget / (1024 * 1024)) + " MB.");
+
+        RawLineArena arena = new RawLineArena(budget);
+        RawLineInput input = new RawLineInput(in);
+        Workspace workspace = null;
+        MultithreadMerger<RawLine> merger = null;
+        int fileNr = 0;
+        long skipped = 0;
+
+        try {
+            while (input.next()) {
+                int len = input.getEnd() - input.getStart();
+                if (!arena.fits(len)) {
+                    if (workspace == null) {
+                        System.out.println("Use extensive sorting approach.");
+                        Workspace.checkFreeSpace(settings.getTmpDirs(), inputSize);
+                        workspace = new Workspace(settings.getTmpDirs(), settings.isCompressTmp());
+                        merger = new MultithreadMerger<RawLine>(outFile, workspace, settings.getFanIn(), new RawLineComparator(), new RawLineFormat(workspace), settings.isUnique(), settings.getMergeThreads());
+                    }
+                    File file = workspace.newFile("lv0_" + ++fileNr);
+                    writeSorted(arena, file, workspace.openOutput(file), settings.isUnique());
+                    merger.registerFile(file, 0);
+                    arena.clear();
+                }
+                if (arena.add(input.getBuffer(), input.getStart(), input.getEnd()) == RawLine.INVALID) {
+                    System.err.println("Skipped invalid line " + input.getLineNr() + ".");
+                    skipped++;
+                }
+            }
+            input.close();
+
+            if (workspace == null) {
+                System.out.println("Use in-memory sorting approach.");
+                writeSorted(arena, outFile, CompressedIO.openOutputStream(outFile), settings.isUnique());
+            } else {
+                if (!arena.isEmpty()) {
+                    File file = workspace.newFile("lv0_" + ++fileNr);
+                    writeSorted(arena, file, workspace.openOutput(file), settings.isUnique());
+                    merger.registerFile(file, 0);
+                }
+                arena = null;
+                System.out.println("All level 0 files habe been processed.");
+                merger.finish();
+                merger.waitForIt();
+                workspace.delete();
+            }
+        } finally {
+            if (merger != null) {
+                merger.shutdownNow();
+            }
+        }
+        if (skipped > 0) {
+            System.out.println(skipped + " invalid lines have been skipped.");
+        }
+        System.out.println("Complete");
+    }
+
+    private static void writeSorted(RawLineArena arena, File file, OutputStream stream, boolean unique) throws IOException {
+        arena.sort();
+        OutputStream out = new BufferedOutputStream(stream, BUFFER_SIZE);
+        int written;
+        try {
+            written = arena.write(out, unique);
+        } finally {
+            out.close();
+        }
+        System.out.println("Wrote file: " + file.getName() + " (" + written + " statements)");
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.gesis.reshaperdf.utils.IPullReader;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * Produces level 0 files by replacement selection. A heap that fills the
+ * memory budget delivers its smallest statement to the current file and is
+ * refilled from the input. Statements that are smaller than the last written
+ * one are tagged for the next file. On random input the files are about twice
+ * as long as the heap, on presorted input a single file is produced.
+ *
+ * @author bensmafx
+ */
+public class ReplacementSelection {
+
+    private ReplacementSelection() {
+    }
+
+    /**
+     * Writes the already read statements and all remaining statements from
+     * the reader into sorted level 0 files.
+     *
+     * @param buffer Statements already read from the input.
+     * @param pReader Reader on the input file, must already be loaded.
+     * @param budget Memory budget for the heap in bytes.
+     * @param comparator Comparator to sort by.
+     * @param unique True if duplicates are to be dropped.
+     * @param workspace Workspace where to store the files.
+     * @param merger Merger to register the files with.
+     * @throws RDFHandlerException
+     * @throws IOException
+     */
+    public static void generateRuns(List<Statement> buffer, IPullReader<Statement> pReader, long budget, Comparator<Statement> comparator, boolean unique, Workspace workspace, MultithreadMerger<Statement> merger) throws RDFHandlerException, IOException {
+        PriorityQueue<HeapEntry> heap = new PriorityQueue<HeapEntry>(1024, new HeapEntryComparator(comparator));
+        long heapSize = 0;
+
+        //fill the heap
+        for (Statement stmt : buffer) {
+            HeapEntry entry = new HeapEntry(0, stmt);
+            heap.add(entry);
+            heapSize += entry.size;
+        }
+        buffer.clear();
+        while (!pReader.isEmpty() && heapSize < budget) {
+            Statement stmt = pReader.peek();
+            pReader.removeHead();
+            HeapEntry entry = new HeapEntry(0, stmt);
+            heap.add(entry);
+            heapSize += entry.size;
+        }
+
+        int fileNr = 0;
+        int currentRun = -1;
+        long count = 0;
+        File file = null;
+        OutputStream fos = null;
+        RunWriter writer = null;
+        Statement last = null;
+        while (!heap.isEmpty()) {
+            HeapEntry entry = heap.poll();
+            heapSize -= entry.size;
+            if (entry.run != currentRun) { //start the next file
+                if (writer != null) {
+                    closeRun(writer, fos, file, count, merger);
+                }
+                currentRun = entry.run;
+                file = workspace.newFile("lv0_" + ++fileNr);
+                fos = workspace.openOutput(file);
+                writer = new RunWriter(fos);
+                writer.startRDF();
+                count = 0;
+            }
+            if (!unique || count == 0 || comparator.compare(last, entry.stmt) != 0) {
+                writer.handleStatement(entry.stmt);
+                count++;
+            }
+            last = entry.stmt;
+
+            //refill, statements smaller than the last written one belong to the next file
+            while (!pReader.isEmpty() && heapSize < budget) {
+                Statement stmt = pReader.peek();
+                pReader.removeHead();
+                int run = comparator.compare(stmt, last) < 0 ? currentRun + 1 : currentRun;
+                HeapEntry newEntry = new HeapEntry(run, stmt);
+                heap.add(newEntry);
+                heapSize += newEntry.size;
+            }
+        }
+        if (writer != null) {
+            closeRun(writer, fos, file, count, merger);
+        }
+    }
+
+    private static void closeRun(RunWriter writer, OutputStream fos, File file, long count, MultithreadMerger<Statement> merger) throws RDFHandlerException, IOException {
+        try {
+            writer.endRDF();
+            fos.close();
+        } catch (RDFHandlerException ex) {
+            throw new RDFHandlerException("When writing file " + file.getName(), ex);
+        } catch (IOException ex) {
+            throw new IOException("When writing file " + file.getName(), ex);
+        }
+        System.out.println("Wrote level 0 file: " + file.getName() + " (" + count + " statements)");
+        merger.registerFile(file, 0);
+    }
+
+    /**
+     * A statement in the heap together with the number of the file it belongs
+     * to.
+     */
+    private static class HeapEntry {
+
+        private final int run;
+        private final Statement stmt;
+        private final long size;
+
+        HeapEntry(int run, Statement stmt) {
+            this.run = run;
+            this.stmt = stmt;
+            this.size = Sort.estimateSize(stmt);
+        }
+    }
+
+    /**
+     * Orders heap entries by file number first, then by statement.
+     */
+    private static class HeapEntryComparator implements Comparator<HeapEntry> {
+
+        private final Comparator<Statement> comparator;
+
+        HeapEntryComparator(Comparator<Statement> comparator) {
+            this.comparator = comparator;
+        }
+
+        @Override
+        public int compare(HeapEntry o1, HeapEntry o2) {
+            if (o1.run != o2.run) {
+                return o1.run < o2.run ? -1 : 1;
+            }
+            return comparator.compare(o1.stmt, o2.stmt);
+        }
+    }
+
+}
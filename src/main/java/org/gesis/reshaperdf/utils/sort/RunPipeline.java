@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * Sorts and writes level 0 files while the caller keeps reading the input.
+ * A submitted buffer is sorted by a sort thread using Arrays.parallelSort and
+ * then spilled by a writer thread, so parsing, sorting and writing overlap.
+ * The number of buffers in flight is limited by permits, a buffer holds as
+ * many permits as budget shares it occupies and returns them when it has been
+ * written or when sorting or writing it failed. The failure is rethrown by the
+ * next acquire() or by finish().
+ *
+ * @author bensmafx
+ */
+public class RunPipeline {
+
+    //number of buffers being filled, sorted and written at the same time
+    public static final int STAGES = 3;
+
+    private final Comparator<Statement> comparator;
+    private final boolean unique;
+    private final Workspace workspace;
+    private final MultithreadMerger<Statement> merger;
+    private final Semaphore permits = new Semaphore(STAGES);
+    private final ExecutorService sorter = Executors.newSingleThreadExecutor();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private volatile Throwable failure = null;
+    private int fileNr = 0;
+
+    /**
+     * Ctor
+     *
+     * @param comparator Comparator to sort by.
+     * @param unique True if duplicates are to be dropped.
+     * @param workspace Workspace where to store the files.
+     * @param merger Merger to register the files with.
+     */
+    public RunPipeline(Comparator<Statement> comparator, boolean unique, Workspace workspace, MultithreadMerger<Statement> merger) {
+        this.comparator = comparator;
+        this.unique = unique;
+        this.workspace = workspace;
+        this.merger = merger;
+    }
+
+    /**
+     * Blocks until the given number of buffers may be filled.
+     *
+     * @param shares Number of budget shares the next buffer will occupy.
+     * @throws InterruptedException
+     * @throws IOException If a previous buffer could not be written.
+     */
+    public void acquire(int shares) throws InterruptedException, IOException {
+        permits.acquire(shares);
+        checkFailure();
+    }
+
+    /**
+     * Returns permits that have been acquired for a buffer that is not
+     * submitted.
+     *
+     * @param shares
+     */
+    public void release(int shares) {
+        permits.release(shares);
+    }
+
+    /**
+     * Hands a filled buffer over to the sort and write stages. The permits
+     * must have been acquired before.
+     *
+     * @param buffer Unsorted statements.
+     * @param shares Number of budget shares the buffer occupies.
+     */
+    public void submit(final Statement[] buffer, final int shares) {
+        final File file = workspace.newFile("lv0_" + ++fileNr);
+        sorter.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (failure == null) {
+                        Arrays.parallelSort(buffer, comparator);
+                    }
+                } catch (RuntimeException ex) {
+                    fail(ex, shares);
+                    return;
+                } catch (Error ex) {
+                    fail(ex, shares);
+                    return;
+                }
+                writer.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (failure == null) {
+                                writeBuffer(buffer, file);
+                                merger.registerFile(file, 0);
+                            }
+                        } catch (Exception ex) {
+                            failure = ex;
+                        } catch (Error ex) {
+                            failure = ex;
+                        } finally {
+                            permits.release(shares);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Records the failure of a buffer and returns its permits, so that a
+     * thread waiting in acquire() wakes up and sees the failure.
+     */
+    private void fail(Throwable ex, int shares) {
+        failure = ex;
+        permits.release(shares);
+    }
+
+    /**
+     * Waits until all submitted buffers have been written.
+     *
+     * @throws InterruptedException
+     * @throws IOException If a buffer could not be written.
+     */
+    public void finish() throws InterruptedException, IOException {
+        sorter.shutdown();
+        sorter.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        writer.shutdown();
+        writer.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        checkFailure();
+    }
+
+    /**
+     * Stops the sort and write threads without waiting for pending buffers.
+     * Called when the sort is aborted, has no effect after finish().
+     */
+    public void shutdownNow() {
+        sorter.shutdownNow();
+        writer.shutdownNow();
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            shutdownNow();
+            throw new IOException("When sorting or writing level 0 files", failure);
+        }
+    }
+
+    /**
+     * Writes the statements of the buffer into the file in the binary run
+     * format.
+     *
+     * @param buffer
+     * @param file
+     * @throws RDFHandlerException
+     * @throws IOException
+     */
+    private void writeBuffer(Statement[] buffer, File file) throws RDFHandlerException, IOException {
+        OutputStream fos = workspace.openOutput(file);
+        boolean complete = false;
+        try {
+            RDFHandler writer = new RunWriter(fos);
+            if (unique) {
+                writer = new DuplicateFilter(writer, comparator);
+            }
+            writer.startRDF();
+            for (int i = 0; i < buffer.length; i++) {
+                writer.handleStatement(buffer[i]);
+            }
+            writer.endRDF();
+            complete = true;
+        } finally {
+            if (complete) {
+                fos.close();
+            } else {
+                try {
+                    fos.close();
+                } catch (IOException ex) {
+                    //the failure of the write is reported instead
+                }
+                //a partial run must not stay in the workspace
+                file.delete();
+            }
+        }
+        System.out.println("Wrote file: " + file.getName() + " (" + buffer.length + " statements)");
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+/**
+ * Reads a file in the binary run format written by RunWriter. Other than the
+ * PullReader this reader needs no producer thread, the statements are decoded
+ * directly on removeHead().
+ *
+ * @author bensmafx
+ */
+public class RunReader implements IRunReader<Statement> {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File file;
+    private final InputStream stream;
+    private final ValueFactory factory = ValueFactoryImpl.getInstance();
+    private DataInputStream in = null;
+    private byte[] bytes = new byte[256];
+    private Statement current = null;
+
+    /**
+     * Ctor
+     *
+     * @param file File in binary run format.
+     * @param stream Stream on the file, see Workspace.openInput().
+     */
+    public RunReader(File file, InputStream stream) {
+        this.file = file;
+        this.stream = stream;
+    }
+
+    /**
+     * Reads the first statement. Additional calls are
+     * ignored.
+     *
+     * @throws IOException
+     */
+    public void load() throws IOException {
+        if (in == null) {
+            in = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE));
+            removeHead();
+        }
+    }
+
+    @Override
+    public Statement peek() {
+        return current;
+    }
+
+    /**
+     * Removes the first statement and decodes the next one.
+     *
+     * @throws IllegalStateException If the file is corrupt or cannot be read.
+     */
+    @Override
+    public void removeHead() {
+        try {
+            int kind = in.read();
+            if (kind == -1) {
+                current = null;
+                return;
+            }
+            Resource subj = (Resource) readValue(kind);
+            URI pred = (URI) readValue(in.readUnsignedByte());
+            Value obj = readValue(in.readUnsignedByte());
+            current = factory.createStatement(subj, pred, obj);
+        } catch (EOFException ex) {
+            throw new IllegalStateException("Truncated run file " + file.getAbsolutePath(), ex);
+        } catch (IOException ex) {
+            throw new IllegalStateException("When reading run file " + file.getAbsolutePath(), ex);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return current == null;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+    private Value readValue(int kind) throws IOException {
+        switch (kind) {
+            case RunWriter.URI:
+                return factory.createURI(readString());
+            case RunWriter.BNODE:
+                return factory.createBNode(readString());
+            case RunWriter.PLAIN_LITERAL:
+                return factory.createLiteral(readString());
+            case RunWriter.LANG_LITERAL:
+                String label = readString();
+                return factory.createLiteral(label, readString());
+            case RunWriter.TYPED_LITERAL:
+                String typedLabel = readString();
+                return factory.createLiteral(typedLabel, factory.createURI(readString()));
+            default:
+                throw new IOException("Unknown term kind " + kind + " in run file " + file.getAbsolutePath());
+        }
+    }
+
+    private String readString() throws IOException {
+        int length = readLength();
+        if (length > bytes.length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        in.readFully(bytes, 0, length);
+        return new String(bytes, 0, length, RunWriter.UTF8);
+    }
+
+    private int readLength() throws IOException {
+        int length = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return length;
+    }
+
+}
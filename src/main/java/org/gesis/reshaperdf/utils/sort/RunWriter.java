@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * Writes statements in the binary run format used for the intermediate files
+ * of the external sort. Every term is stored as a kind tag followed by its
+ * strings, each string as a variable length byte count and its UTF-8 bytes.
+ * Unlike N-Triples the format needs no escaping and can be read back without
+ * parsing. Read with RunReader.
+ *
+ * @author bensmafx
+ */
+public class RunWriter implements RDFHandler {
+
+    static final int URI = 1;
+    static final int BNODE = 2;
+    static final int PLAIN_LITERAL = 3;
+    static final int LANG_LITERAL = 4;
+    static final int TYPED_LITERAL = 5;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final DataOutputStream out;
+
+    /**
+     * Ctor
+     *
+     * @param out Stream to write to. Is flushed but not closed by endRDF().
+     */
+    public RunWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    }
+
+    @Override
+    public void startRDF() throws RDFHandlerException {
+    }
+
+    @Override
+    public void endRDF() throws RDFHandlerException {
+        try {
+            out.flush();
+        } catch (IOException ex) {
+            throw new RDFHandlerException(ex);
+        }
+    }
+
+    @Override
+    public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+    }
+
+    @Override
+    public void handleStatement(Statement st) throws RDFHandlerException {
+        try {
+            writeValue(st.getSubject());
+            writeValue(st.getPredicate());
+            writeValue(st.getObject());
+        } catch (IOException ex) {
+            throw new RDFHandlerException(ex);
+        }
+    }
+
+    @Override
+    public void handleComment(String comment) throws RDFHandlerException {
+    }
+
+    private void writeValue(Value value) throws IOException {
+        if (value instanceof BNode) {
+            out.writeByte(BNODE);
+            writeString(((BNode) value).getID());
+        } else if (value instanceof URI) {
+            out.writeByte(URI);
+            writeString(value.stringValue());
+        } else {
+            Literal literal = (Literal) value;
+            if (literal.getLanguage() != null) {
+                out.writeByte(LANG_LITERAL);
+                writeString(literal.getLabel());
+                writeString(literal.getLanguage());
+            } else if (literal.getDatatype() != null) {
+                out.writeByte(TYPED_LITERAL);
+                writeString(literal.getLabel());
+                writeString(literal.getDatatype().stringValue());
+            } else {
+                out.writeByte(PLAIN_LITERAL);
+                writeString(literal.getLabel());
+            }
+        }
+    }
+
+    private void writeString(String str) throws IOException {
+        byte[] bytes = str.getBytes(UTF8);
+        writeLength(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes a length in 7 bit groups, least significant group first. The
+     * high bit of a byte marks that another group follows.
+     */
+    private void writeLength(int length) throws IOException {
+        while ((length & ~0x7F) != 0) {
+            out.writeByte((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.writeByte(length);
+    }
+
+}
@@ -18,46 +18,57 @@
 package org.gesis.reshaperdf.utils.sort;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
-import org.gesis.reshaperdf.utils.LineCounter;
+import org.gesis.reshaperdf.utils.CompressedIO;
+import org.gesis.reshaperdf.utils.IPullReader;
 import org.gesis.reshaperdf.utils.PullReader;
-import org.gesis.reshaperdf.utils.StatementsComparatorSPO;
+import org.openrdf.model.Literal;
 import org.openrdf.model.Statement;
-import org.openrdf.rio.RDFFormat;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
-import org.openrdf.rio.RDFParseException;
-import org.openrdf.rio.RDFParser;
-import org.openrdf.rio.Rio;
-import org.openrdf.rio.helpers.NTriplesParserSettings;
-import org.openrdf.rio.helpers.StatementCollector;
 
 /**
  * Provieds the functionality for sorting an N-Triples file. Uses build in Java
  * functionality to sort small files in-memory and a MergeSort approach for
  * larger files.
  *
- * For files with more than 100 000 Statements: This approach uses multithreaded
- * MergeSort with a threadpool of 10 and a workspace directory for intermediary
- * results. A thread reads the N-Triples in a streamline fashion, collecting 100
- * 000 statements each time, sorts the statements and writes them into the
- * workspace directory. Subsequent merge steps are executed by the threadpool.
+ * The input is read only once. Statements are collected until their estimated
+ * size reaches the memory budget. If the whole input fits into the first
+ * buffer it is sorted in-memory and written to the output file. If the first
+ * buffer is already sorted it is copied to the output file along with all
+ * following statements as long as they are in ascending order, so sorted
+ * input is passed through in a single streaming copy.
+ *
+ * Otherwise the external sort uses a workspace for intermediary results,
+ * striped across the temporary directories. Each buffer is sorted and written
+ * into the workspace as a level 0 file by a RunPipeline while the next buffer
+ * is read. Alternatively the level 0 files are produced by replacement
+ * selection. Intermediary files use the binary format of RunWriter, N-Triples
+ * are written only for the output file. The MultithreadMerger merges up to
+ * fan-in files in one step. The number of merges running at the same time is
+ * limited by the available processors and by the I/O threads configured for
+ * the temporary directories, see SortSettings.getMergeThreads().
+ *
+ * Raw, dictionary encoded and partitioned sorting are delegated to RawSort,
+ * DictionarySort and PartitionedSort.
  *
  * @author bensmafx
  */
 public class Sort {
 
-    private static final int MAX_PERMIT_FILE_SIZE = 100000;
+    //rough heap costs of a statement object and its array slot, of a value object with its string
+    private static final long STATEMENT_OVERHEAD = 40;
+    private static final long VALUE_OVERHEAD = 64;
 
     /**
-     * Sorts the file.
+     * Sorts the file using the default settings.
      * @param inFile N-Triples file to sort
      * @param outFile File to store results in
      * @throws IOException
@@ -65,171 +76,319 @@ public class Sort {
      * @throws InterruptedException 
      */
     public static void sort(File inFile, File outFile) throws IOException, RDFHandlerException, InterruptedException {
+        sort(inFile, outFile, new SortSettings());
+    }
 
-        //Get length of file
-        System.out.println("Counting statements");
-        long fLength = LineCounter.countLines(inFile.getAbsolutePath());
-        System.out.println(fLength);
-        if (fLength < MAX_PERMIT_FILE_SIZE) {
-            System.out.println("Use in-memory sorting approach.");
-            //quick in-memory sort
-            quickInMemorySort(inFile, outFile, new StatementsComparatorSPO());
-        } else {
-            System.out.println("Use extensive sorting approach.");
-            //extensive sort
-            //create a workspace folder in user.home
-            String workspaceName = String.valueOf(System.currentTimeMillis());
-            File workspace = new File(".", workspaceName);
-            workspace.mkdir();
-            System.out.println("Using " + workspace.getAbsolutePath() + " as workspace.");
-
-            //calculate number of files needed
-            int fileCount = 1;
-            while (fLength / fileCount > MAX_PERMIT_FILE_SIZE) {
-                fileCount *= 2;
-            }
-            System.out.println("Starting with " + fileCount + " level 0 files.");
-
-            MultithreadMerger merger = new MultithreadMerger(fileCount, outFile, workspace);
-            readSplitSort(inFile, fLength, workspace, merger);
-            System.out.println("All level 0 files habe been processed.");
-            merger.waitForIt();
+    /**
+     * Sorts the file.
+     * @param inFile N-Triples file to sort
+     * @param outFile File to store results in
+     * @param settings Tuning parameters
+     * @throws IOException
+     * @throws RDFHandlerException
+     * @throws InterruptedException 
+     */
+    public static void sort(File inFile, File outFile, SortSettings settings) throws IOException, RDFHandlerException, InterruptedException {
 
-            deleteFlatDir(workspace);
+        settings.validate();
+        if (settings.getPartitions() > 1) {
+            PartitionedSort.sort(inFile, outFile, settings);
+            return;
+        }
+        if (settings.isRaw()) {
+            RawSort.sort(inFile, outFile, settings);
+            return;
+        }
+        if (settings.isDictionary()) {
+            DictionarySort.sort(inFile, outFile, settings);
+            return;
         }
-        System.out.println("Complete");
 
+        PullReader pReader = new PullReader(inFile);
+        pReader.load();
+        try {
+            sort(pReader, outFile, settings, inFile.length());
+        } finally {
+            pReader.close();
+        }
     }
 
     /**
-     * Reads all statments from the readers and writes them sorted into
-     * .nt-Files.
-     *
-     * @param pReaderArr Array of readers
-     * @param nrOfStmts Number of statments in inFile
-     * @param workspace Directory where to store intermediate results.
-     * @throws RDFHandlerException
+     * Sorts the statements delivered by a reader.
+     * @param pReader Loaded reader on the statements to sort
+     * @param outFile File to store results in
+     * @param settings Tuning parameters, only the sort approach, order,
+     * duplicate handling and memory settings are regarded
      * @throws IOException
+     * @throws RDFHandlerException
+     * @throws InterruptedException 
      */
-    private static void readSplitSort(File inFile, long nrOfStmts, File workspace, MultithreadMerger merger) throws RDFHandlerException, IOException {
+    public static void sort(IPullReader<Statement> pReader, File outFile, SortSettings settings) throws IOException, RDFHandlerException, InterruptedException {
+        sort(pReader, outFile, settings, 0);
+    }
 
-        //calculate nr of files needed to be under permissable file size; nr needs to be power of two 
-        int fileCount = 1;
-        while (nrOfStmts / fileCount > MAX_PERMIT_FILE_SIZE) {
-            fileCount *= 2;
-        }
+    /**
+     * Sorts the statements delivered by a reader. Before the first
+     * intermediate file is written the temporary directories are checked for
+     * enough free space.
+     * @param pReader Loaded reader on the statements to sort
+     * @param outFile File to store results in
+     * @param settings Tuning parameters
+     * @param inputSize Size of the input in bytes, 0 if unknown
+     * @throws IOException
+     * @throws RDFHandlerException
+     * @throws InterruptedException
+     */
+    static void sort(IPullReader<Statement> pReader, File outFile, SortSettings settings, long inputSize) throws IOException, RDFHandlerException, InterruptedException {
 
-        //calculate number of statement in first fileCount-1 files
-        int effectiveStmtsPerFile = (int) (nrOfStmts / fileCount);
+        settings.validate();
+        long budget = settings.getMemoryBudget();
+        System.out.println("Using a memory budget of " + (budget / (1024 * 1024)) + " MB.");
+        Comparator<Statement> comparator = settings.getOrder().newComparator();
 
-        final Statement[] buffer = new Statement[effectiveStmtsPerFile + fileCount]; //Stores read statements
+        //the first buffer decides about the approach
+        ArrayList<Statement> buffer = new ArrayList<Statement>(); //Stores read statements
+        boolean sorted = fillBuffer(pReader, buffer, budget, comparator);
 
-        //help vars
-        int fileNr = 0;
+        if (pReader.isEmpty()) {
+            System.out.println("Use in-memory sorting approach.");
+            //quick in-memory sort
+            Statement[] arr = buffer.toArray(new Statement[buffer.size()]);
+            buffer = null;
+            if (!sorted) {
+                Arrays.parallelSort(arr, comparator);
+            }
+            writeOutput(arr, outFile, settings.isUnique() ? comparator : null);
+            System.out.println("Complete");
+            return;
+        }
 
-        //read for first n files
-        PullReader pReader = new PullReader(inFile);
-        pReader.load();
-        for (int i = 0; i < fileCount - 1; i++) {
-            for (int j = 0; j < effectiveStmtsPerFile; j++) {
-                Statement stmt = pReader.peek();
-                pReader.removeHead();
-                buffer[j] = stmt;
+        Workspace.checkFreeSpace(settings.getTmpDirs(), inputSize);
+        boolean prefixCopied = false;
+        if (sorted) {
+            //copy the sorted beginning of the input directly to the output
+            System.out.println("Input starts sorted, copying the sorted sequence to the output file.");
+            OutputStream fos = CompressedIO.openOutputStream(outFile);
+            RDFHandler writer = new CheckedNTriplesWriter(fos, null);
+            if (settings.isUnique()) {
+                writer = new DuplicateFilter(writer, comparator);
             }
-            Arrays.sort(buffer, 0, effectiveStmtsPerFile, new StatementsComparatorSPO());
-            File file = new File(workspace, "lv0_" + ++fileNr);
-            try {
-                writeBuffer(buffer, 0, effectiveStmtsPerFile, file);
-                merger.registerFile(file, 0);
-            } catch (RDFHandlerException ex) {
-                throw new RDFHandlerException("When writing file " + file.getName(), ex);
-            } catch (IOException ex) {
-                throw new IOException("When writing file " + file.getName(), ex);
+            writer.startRDF();
+            long count = writeNaturalRun(buffer, pReader, comparator, writer);
+            writer.endRDF();
+            fos.close();
+            System.out.println("Copied " + count + " sorted statements.");
+            if (pReader.isEmpty()) {
+                System.out.println("Complete");
+                return;
             }
+            prefixCopied = true;
+            sorted = fillBuffer(pReader, buffer, budget, comparator);
+        }
+
+        System.out.println("Use extensive sorting approach.");
+        //extensive sort
+        Workspace workspace = new Workspace(settings.getTmpDirs(), settings.isCompressTmp());
 
+        MultithreadMerger<Statement> merger = new MultithreadMerger<Statement>(outFile, workspace, settings.getFanIn(), comparator, new StatementRunFormat(workspace), settings.isUnique(), settings.getMergeThreads());
+        if (prefixCopied) {
+            //the copied sequence becomes the first level 0 file
+            File file = workspace.adopt(outFile, "nat_0" + StatementRunFormat.NTRIPLES_SUFFIX + CompressedIO.getSuffix(outFile));
+            merger.registerFile(file, 0);
+        }
+        try {
+            if (settings.isReplacementSelection()) {
+                ReplacementSelection.generateRuns(buffer, pReader, budget, comparator, settings.isUnique(), workspace, merger);
+            } else {
+                readSplitSort(buffer, sorted, pReader, budget, comparator, settings.isUnique(), workspace, merger);
+            }
+            System.out.println("All level 0 files habe been processed.");
+            merger.finish();
+            merger.waitForIt();
+        } finally {
+            merger.shutdownNow();
         }
 
-        //read for last file
-        int idx = 0;
-        while (!pReader.isEmpty()) {
+        workspace.delete();
+        System.out.println("Complete");
+
+    }
+
+    /**
+     * Reads statements into the buffer until their estimated size reaches the
+     * budget or the reader is exhausted.
+     *
+     * @param pReader Reader to read from
+     * @param buffer Buffer to fill
+     * @param budget Memory budget in bytes
+     * @param comparator Comparator to sort by
+     * @return True if the statements were read in ascending order.
+     */
+    private static boolean fillBuffer(IPullReader<Statement> pReader, List<Statement> buffer, long budget, Comparator<Statement> comparator) {
+        long bufferSize = 0;
+        boolean sorted = true;
+        Statement last = null;
+        while (!pReader.isEmpty() && bufferSize < budget) {
             Statement stmt = pReader.peek();
             pReader.removeHead();
-            buffer[idx] = stmt;
-            idx++;
+            if (sorted && last != null && comparator.compare(last, stmt) > 0) {
+                sorted = false;
+            }
+            buffer.add(stmt);
+            bufferSize += estimateSize(stmt);
+            last = stmt;
         }
+        return sorted;
+    }
 
-        Arrays.sort(buffer, 0, idx, new StatementsComparatorSPO());
-        File file = new File(workspace, "lv0_" + ++fileNr);
-        try {
-            writeBuffer(buffer, 0, idx - 1, file);
-            merger.registerFile(file, 0);
-        } catch (RDFHandlerException ex) {
-            throw new RDFHandlerException("When writing file " + file.getName(), ex);
-        } catch (IOException ex) {
-            throw new IOException("When writing file " + file.getName(), ex);
+    /**
+     * Writes a sorted buffer and continues with the statements of the reader
+     * as long as they are in ascending order. Copying a natural run this way
+     * neither needs memory nor sorting.
+     *
+     * @param buffer Sorted buffer, is cleared
+     * @param pReader Reader to read from, the first statement out of order is
+     * left in the reader
+     * @param comparator Comparator to sort by
+     * @param writer Writer to write to
+     * @return Number of written statements.
+     * @throws RDFHandlerException
+     */
+    private static long writeNaturalRun(List<Statement> buffer, IPullReader<Statement> pReader, Comparator<Statement> comparator, RDFHandler writer) throws RDFHandlerException {
+        long count = 0;
+        Statement last = null;
+        for (Statement stmt : buffer) {
+            writer.handleStatement(stmt);
+            last = stmt;
+            count++;
         }
-        pReader.close();
+        buffer.clear();
+        while (!pReader.isEmpty() && (last == null || comparator.compare(last, pReader.peek()) <= 0)) {
+            last = pReader.peek();
+            writer.handleStatement(last);
+            pReader.removeHead();
+            count++;
+        }
+        return count;
     }
 
-    private static void writeBuffer(Statement[] arr, int off, int len, File file) throws RDFHandlerException, IOException {
-        FileOutputStream fos = new FileOutputStream(file);
-        CheckedNTriplesWriter writer = new CheckedNTriplesWriter(fos, null);
-        writer.startRDF();
-        for (int i = off; i < len; i++) {
-            writer.handleStatement(arr[i]);
+    /**
+     * Writes the already read statements and all remaining statments from the
+     * reader sorted into level 0 files. The first buffer already fills the
+     * memory budget, the following buffers fill a share of it each, so that
+     * one buffer can be read while others are sorted and written. A buffer
+     * that has been read in ascending order is not sorted but written
+     * together with the following ascending statements as a natural run.
+     *
+     * @param buffer Buffer with the first statements
+     * @param sorted True if the buffer has been read in ascending order
+     * @param pReader Reader on the input file
+     * @param budget Memory budget for buffered statements in bytes
+     * @param comparator Comparator to sort by
+     * @param unique True if duplicates are to be dropped
+     * @param workspace Workspace where to store intermediate results.
+     * @param merger Merger to register the files with
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private static void readSplitSort(ArrayList<Statement> buffer, boolean sorted, IPullReader<Statement> pReader, long budget, Comparator<Statement> comparator, boolean unique, Workspace workspace, MultithreadMerger<Statement> merger) throws IOException, InterruptedException {
+
+        RunPipeline pipeline = new RunPipeline(comparator, unique, workspace, merger);
+        long share = budget / RunPipeline.STAGES;
+
+        int natNr = 0;
+
+        //the first buffer occupies the whole budget
+        int shares = RunPipeline.STAGES;
+        try {
+            pipeline.acquire(shares);
+            while (true) {
+                if (sorted) {
+                    File file = workspace.newFile("nat_" + ++natNr);
+                    OutputStream out = workspace.openOutput(file);
+                    try {
+                        RDFHandler writer = new RunWriter(out);
+                        if (unique) {
+                            writer = new DuplicateFilter(writer, comparator);
+                        }
+                        long count = writeNaturalRun(buffer, pReader, comparator, writer);
+                        writer.endRDF();
+                        System.out.println("Wrote file: " + file.getName() + " (" + count + " statements)");
+                    } catch (RDFHandlerException ex) {
+                        throw new IOException("When writing file " + file.getName(), ex);
+                    } finally {
+                        out.close();
+                        pipeline.release(shares);
+                    }
+                    merger.registerFile(file, 0);
+                } else {
+                    pipeline.submit(buffer.toArray(new Statement[buffer.size()]), shares);
+                    buffer.clear();
+                }
+                if (pReader.isEmpty()) {
+                    break;
+                }
+                shares = 1;
+                pipeline.acquire(shares);
+                sorted = fillBuffer(pReader, buffer, share, comparator);
+            }
+            pipeline.finish();
+        } finally {
+            pipeline.shutdownNow();
         }
-        writer.endRDF();
-        fos.close();
-        System.out.println("Wrote level 0 file: " + file.getName());
     }
 
     /**
-     * Clean the workspace afterwards.
+     * Writes the sorted statements to the output file as N-Triples.
      *
-     * @param dir
+     * @param buffer
+     * @param file
+     * @param dedup Comparator to drop duplicates by or null to keep them
+     * @throws RDFHandlerException
+     * @throws IOException
      */
-    private static void deleteFlatDir(File dir) {
-        for (File f : dir.listFiles()) {
-            f.delete();
+    private static void writeOutput(Statement[] buffer, File file, Comparator<Statement> dedup) throws RDFHandlerException, IOException {
+        OutputStream fos = CompressedIO.openOutputStream(file);
+        RDFHandler writer = new CheckedNTriplesWriter(fos, null);
+        if (dedup != null) {
+            writer = new DuplicateFilter(writer, dedup);
+        }
+        writer.startRDF();
+        for (int i = 0; i < buffer.length; i++) {
+            writer.handleStatement(buffer[i]);
         }
-        dir.delete();
+        writer.endRDF();
+        fos.close();
+        System.out.println("Wrote file: " + file.getName() + " (" + buffer.length + " statements)");
     }
 
     /**
-     * In-memory sort.
+     * Estimates the heap size of a parsed statement in bytes. Counts the
+     * statement and value objects and the characters of their strings.
      *
-     * @param inFile File to sort.
-     * @param comparator Implementation for a statements comparator
+     * @param stmt
+     * @return
      */
-    private static void quickInMemorySort(File inFile, File outFile, Comparator<Statement> comparator) {
-
-        ArrayList<Statement> list = null;
+    static long estimateSize(Statement stmt) {
+        long size = STATEMENT_OVERHEAD;
+        size += estimateSize(stmt.getSubject());
+        size += estimateSize(stmt.getPredicate());
+        size += estimateSize(stmt.getObject());
+        return size;
+    }
 
-        try {
-            RDFParser rdfParser = Rio.createParser(RDFFormat.NTRIPLES);
-            list = new ArrayList<Statement>();
-            rdfParser.setRDFHandler(new StatementCollector(list));
-            rdfParser.getParserConfig().addNonFatalError(NTriplesParserSettings.FAIL_ON_NTRIPLES_INVALID_LINES);
-            FileInputStream fis = new FileInputStream(inFile);
-            rdfParser.parse(fis, "");
-            fis.close();
-            Collections.sort(list, comparator);
-
-            OutputStream out = new FileOutputStream(outFile);
-            CheckedNTriplesWriter writer = new CheckedNTriplesWriter(out, null);
-            writer.startRDF();
-            for (int i = 0; i < list.size(); i++) {
-                writer.handleStatement(list.get(i));
+    private static long estimateSize(Value value) {
+        long size = VALUE_OVERHEAD + 2L * value.stringValue().length();
+        if (value instanceof Literal) {
+            Literal literal = (Literal) value;
+            if (literal.getLanguage() != null) {
+                size += VALUE_OVERHEAD + 2L * literal.getLanguage().length();
+            }
+            if (literal.getDatatype() != null) {
+                size += VALUE_OVERHEAD + 2L * literal.getDatatype().stringValue().length();
             }
-            writer.endRDF();
-            out.close();
-        } catch (IOException ex) {
-            System.err.println(ex);
-        } catch (RDFHandlerException ex) {
-            System.err.println(ex);
-        } catch (RDFParseException ex) {
-            System.err.println(ex);
         }
+        return size;
     }
 
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.util.Comparator;
+import org.gesis.reshaperdf.utils.StatementsComparatorO;
+import org.gesis.reshaperdf.utils.StatementsComparatorOSP;
+import org.gesis.reshaperdf.utils.StatementsComparatorPOS;
+import org.gesis.reshaperdf.utils.StatementsComparatorSPO;
+import org.openrdf.model.Statement;
+
+/**
+ * Orders the external sort can produce. SPO is the order of SNT files, the
+ * other orders serve as lookup orders, e.g. links sorted by their objects.
+ * Object-only order leaves statements with equal objects unordered.
+ *
+ * @author bensmafx
+ */
+public enum SortOrder {
+
+    SPO, POS, OSP, O;
+
+    /**
+     * Creates a comparator for this order.
+     * @return
+     */
+    public Comparator<Statement> newComparator() {
+        switch (this) {
+            case POS:
+                return new StatementsComparatorPOS();
+            case OSP:
+                return new StatementsComparatorOSP();
+            case O:
+                return new StatementsComparatorO();
+            default:
+                return new StatementsComparatorSPO();
+        }
+    }
+
+    /**
+     * Whether statements that are equal in this order are equal statements.
+     * @return
+     */
+    public boolean isTotal() {
+        return this != O;
+    }
+
+    /**
+     * Parses an order name such as spo or o, ignoring case.
+     * @param str
+     * @return
+     */
+    public static SortOrder parse(String str) {
+        for (SortOrder order : values()) {
+            if (order.name().equalsIgnoreCase(str)) {
+                return order;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sort order: " + str + ". Use spo, pos, osp or o.");
+    }
+
+}
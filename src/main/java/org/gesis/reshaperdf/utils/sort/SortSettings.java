@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tuning parameters for the external sort. A fresh instance holds the
+ * defaults.
+ *
+ * @author bensmafx
+ */
+public class SortSettings {
+
+    public static final int DEFAULT_FAN_IN = 64;
+    //share of the maximum heap used for buffering statements if no budget is given
+    public static final double DEFAULT_MEMORY_FRACTION = 0.25;
+    //concurrent merges per temporary directory if no I/O limit is given
+    public static final int DEFAULT_IO_THREADS_PER_DIR = 2;
+
+    private int fanIn = DEFAULT_FAN_IN;
+    private long memory = 0;
+    private boolean replacementSelection = false;
+    private boolean raw = false;
+    private int partitions = 1;
+    private boolean compressTmp = false;
+    private boolean unique = false;
+    private SortOrder order = SortOrder.SPO;
+    private int ioThreads = 0;
+    private boolean dictionary = false;
+    private List<File> tmpDirs = Collections.singletonList(new File("."));
+
+    /**
+     * Maximum number of sorted files merged in one step.
+     * @return
+     */
+    public int getFanIn() {
+        return fanIn;
+    }
+
+    public void setFanIn(int fanIn) {
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Fan-in must be at least 2.");
+        }
+        this.fanIn = fanIn;
+    }
+
+    /**
+     * Memory budget for the statements held in memory during the creation of
+     * the level 0 files.
+     * @return The budget in bytes, either as set or derived from the maximum
+     * heap size.
+     */
+    public long getMemoryBudget() {
+        if (memory > 0) {
+            return memory;
+        }
+        return (long) (Runtime.getRuntime().maxMemory() * DEFAULT_MEMORY_FRACTION);
+    }
+
+    /**
+     * Sets the memory budget.
+     * @param memory Budget in bytes, 0 to derive it from the maximum heap size.
+     */
+    public void setMemory(long memory) {
+        if (memory < 0) {
+            throw new IllegalArgumentException("Memory must not be negative.");
+        }
+        this.memory = memory;
+    }
+
+    /**
+     * Whether level 0 files are produced by replacement selection instead of
+     * sorting buffers.
+     * @return
+     */
+    public boolean isReplacementSelection() {
+        return replacementSelection;
+    }
+
+    public void setReplacementSelection(boolean replacementSelection) {
+        this.replacementSelection = replacementSelection;
+    }
+
+    /**
+     * Whether lines are sorted as raw bytes instead of parsed statements.
+     * @return
+     */
+    public boolean isRaw() {
+        return raw;
+    }
+
+    public void setRaw(boolean raw) {
+        this.raw = raw;
+    }
+
+    /**
+     * Number of key ranges the input is partitioned into. Values above 1
+     * select the range partitioned sort.
+     * @return
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partitions must be at least 1.");
+        }
+        this.partitions = partitions;
+    }
+
+    /**
+     * Directories for intermediate files, the working directory by default.
+     * @return
+     */
+    public List<File> getTmpDirs() {
+        return tmpDirs;
+    }
+
+    public void setTmpDirs(List<File> tmpDirs) {
+        if (tmpDirs.isEmpty()) {
+            throw new IllegalArgumentException("At least one temporary directory is required.");
+        }
+        for (File dir : tmpDirs) {
+            if (!dir.isDirectory()) {
+                throw new IllegalArgumentException("Not a directory: " + dir.getPath());
+            }
+        }
+        this.tmpDirs = Collections.unmodifiableList(new ArrayList<File>(tmpDirs));
+    }
+
+    /**
+     * Whether intermediate files are compressed.
+     * @return
+     */
+    public boolean isCompressTmp() {
+        return compressTmp;
+    }
+
+    public void setCompressTmp(boolean compressTmp) {
+        this.compressTmp = compressTmp;
+    }
+
+    /**
+     * Whether duplicate statements are dropped while sorting and merging.
+     * @return
+     */
+    public boolean isUnique() {
+        return unique;
+    }
+
+    public void setUnique(boolean unique) {
+        this.unique = unique;
+    }
+
+    /**
+     * Order to sort the statements in, SPO by default.
+     * @return
+     */
+    public SortOrder getOrder() {
+        return order;
+    }
+
+    public void setOrder(SortOrder order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Sort order must not be null.");
+        }
+        this.order = order;
+    }
+
+    /**
+     * Maximum number of merges reading and writing intermediate files at the
+     * same time. Defaults to two per temporary directory.
+     * @return
+     */
+    public int getIoThreads() {
+        if (ioThreads > 0) {
+            return ioThreads;
+        }
+        return DEFAULT_IO_THREADS_PER_DIR * tmpDirs.size();
+    }
+
+    public void setIoThreads(int ioThreads) {
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("I/O threads must be at least 1.");
+        }
+        this.ioThreads = ioThreads;
+    }
+
+    /**
+     * Number of merge threads, limited by the available processors and by
+     * the I/O concurrency.
+     * @return
+     */
+    public int getMergeThreads() {
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), getIoThreads()));
+    }
+
+    /**
+     * Whether statements are dictionary encoded and sorted on term ids. Only
+     * regarded when sorting a file, since the input is read twice.
+     * @return
+     */
+    public boolean isDictionary() {
+        return dictionary;
+    }
+
+    public void setDictionary(boolean dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Checks whether the settings can be combined.
+     * @throws IllegalArgumentException If they cannot.
+     */
+    public void validate() {
+        if (raw && order != SortOrder.SPO) {
+            throw new IllegalArgumentException("Raw sorting only supports the order spo.");
+        }
+        if (dictionary && (raw || partitions > 1)) {
+            throw new IllegalArgumentException("Dictionary encoding cannot be combined with raw or partitioned sorting.");
+        }
+        if (unique && !order.isTotal()) {
+            throw new IllegalArgumentException("Dropping duplicates requires an order of all statement parts.");
+        }
+    }
+
+    /**
+     * Parses a list of directories separated by the path separator of the
+     * platform, e.g. /mnt/a:/mnt/b .
+     * @param str
+     * @return
+     */
+    public static List<File> parseDirs(String str) {
+        List<File> dirs = new ArrayList<File>();
+        for (String path : str.split(File.pathSeparator)) {
+            if (!path.isEmpty()) {
+                dirs.add(new File(path));
+            }
+        }
+        return dirs;
+    }
+
+    /**
+     * Creates a copy of these settings.
+     * @return
+     */
+    public SortSettings copy() {
+        SortSettings copy = new SortSettings();
+        copy.fanIn = fanIn;
+        copy.memory = memory;
+        copy.replacementSelection = replacementSelection;
+        copy.raw = raw;
+        copy.partitions = partitions;
+        copy.tmpDirs = tmpDirs;
+        copy.compressTmp = compressTmp;
+        copy.unique = unique;
+        copy.order = order;
+        copy.ioThreads = ioThreads;
+        copy.dictionary = dictionary;
+        return copy;
+    }
+
+    /**
+     * Parses a size such as 512m or 4g. Suffixes k, m and g are supported, a
+     * plain number denotes bytes.
+     * @param str
+     * @return The size in bytes.
+     * @throws IllegalArgumentException
+     */
+    public static long parseSize(String str) throws IllegalArgumentException {
+        String s = str.trim().toLowerCase();
+        long factor = 1;
+        if (s.endsWith("k")) {
+            factor = 1024L;
+        } else if (s.endsWith("m")) {
+            factor = 1024L * 1024;
+        } else if (s.endsWith("g")) {
+            factor = 1024L * 1024 * 1024;
+        }
+        if (factor != 1) {
+            s = s.substring(0, s.length() - 1);
+        }
+        try {
+            return Long.valueOf(s) * factor;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid size: " + str);
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.gesis.reshaperdf.utils.CheckedNTriplesWriter;
+import org.gesis.reshaperdf.utils.CompressedIO;
+import org.gesis.reshaperdf.utils.PullReader;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * Run format for statements. Intermediate files use the binary format of
+ * RunWriter, the output file is written as N-Triples. Intermediate files with
+ * the suffix .nt are read as N-Triples, this allows to use sorted sequences of
+ * the input that have been copied as they are.
+ *
+ * @author bensmafx
+ */
+public class StatementRunFormat implements IRunFormat<Statement> {
+
+    public static final String NTRIPLES_SUFFIX = ".nt";
+
+    private final Workspace workspace;
+
+    /**
+     * Ctor
+     *
+     * @param workspace Workspace the intermediate files belong to.
+     */
+    public StatementRunFormat(Workspace workspace) {
+        this.workspace = workspace;
+    }
+
+    @Override
+    public IRunReader<Statement> openReader(File file) throws IOException {
+        if (CompressedIO.removeSuffix(file.getName()).endsWith(NTRIPLES_SUFFIX)) {
+            //ids of blank nodes are kept, so that the order of the file is not affected
+            final PullReader pReader = new PullReader(file, true);
+            pReader.load();
+            return new IRunReader<Statement>() {
+                @Override
+                public Statement peek() {
+                    return pReader.peek();
+                }
+
+                @Override
+                public void removeHead() {
+                    pReader.removeHead();
+                }
+
+                @Override
+                public boolean isEmpty() {
+                    return pReader.isEmpty();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    pReader.close();
+                }
+            };
+        }
+        RunReader reader = new RunReader(file, workspace.openInput(file));
+        reader.load();
+        return reader;
+    }
+
+    @Override
+    public IRunWriter<Statement> openWriter(File file, boolean output) throws IOException {
+        if (output) {
+            OutputStream fos = CompressedIO.openOutputStream(file);
+            //use a special writer that only writes valid triples.
+            return new StatementWriter(fos, new CheckedNTriplesWriter(fos, null));
+        }
+        OutputStream out = workspace.openOutput(file);
+        return new StatementWriter(out, new RunWriter(out));
+    }
+
+    /**
+     * Adapts an RDFHandler that writes to a file.
+     */
+    private static class StatementWriter implements IRunWriter<Statement> {
+
+        private final OutputStream fos;
+        private final RDFHandler handler;
+
+        StatementWriter(OutputStream fos, RDFHandler handler) throws IOException {
+            this.fos = fos;
+            this.handler = handler;
+            try {
+                handler.startRDF();
+            } catch (RDFHandlerException ex) {
+                throw new IOException(ex);
+            }
+        }
+
+        @Override
+        public void write(Statement element) throws IOException {
+            try {
+                handler.handleStatement(element);
+            } catch (RDFHandlerException ex) {
+                throw new IOException(ex);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                handler.endRDF();
+            } catch (RDFHandlerException ex) {
+                throw new IOException(ex);
+            } finally {
+                fos.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import org.openrdf.model.Value;
+
+/**
+ * Maps the distinct terms of one statement part to ids. The terms are
+ * collected first, seal() sorts them and numbers them in ascending order, so
+ * that comparing two ids gives the same result as comparing the terms.
+ *
+ * @author bensmafx
+ */
+public class TermDictionary {
+
+    private final Comparator<Value> comparator;
+    private final HashMap<Value, Integer> ids = new HashMap<Value, Integer>();
+    private Value[] terms = null;
+
+    /**
+     * Ctor
+     *
+     * @param comparator Order of the terms.
+     */
+    public TermDictionary(Comparator<Value> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Adds a term, known terms are ignored.
+     *
+     * @param term
+     */
+    public void add(Value term) {
+        if (terms != null) {
+            throw new IllegalStateException("Dictionary is already sealed.");
+        }
+        if (!ids.containsKey(term)) {
+            ids.put(term, -1);
+        }
+    }
+
+    /**
+     * Sorts the collected terms and assigns their ids. No terms can be added
+     * afterwards.
+     */
+    public void seal() {
+        terms = ids.keySet().toArray(new Value[ids.size()]);
+        Arrays.parallelSort(terms, comparator);
+        for (int i = 0; i < terms.length; i++) {
+            ids.put(terms[i], i);
+        }
+    }
+
+    /**
+     * Returns the id of a term.
+     *
+     * @param term A term that has been added before sealing.
+     * @return
+     */
+    public int encode(Value term) {
+        Integer id = ids.get(term);
+        if (id == null || terms == null) {
+            throw new IllegalArgumentException("Term not in dictionary: " + term);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the term of an id.
+     *
+     * @param id
+     * @return
+     */
+    public Value decode(int id) {
+        return terms[id];
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+}
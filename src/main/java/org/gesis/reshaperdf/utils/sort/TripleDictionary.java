@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.util.Comparator;
+import org.gesis.reshaperdf.utils.ValueComparator;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+/**
+ * Encodes statements as three term ids, one dictionary per statement part.
+ * The ids are arranged in the parts sequence of the sort order, e.g. predicate,
+ * object, subject for POS, so that encoded statements are sorted by comparing
+ * their ids one after the other.
+ *
+ * @author bensmafx
+ */
+public class TripleDictionary {
+
+    private static final int SUBJECT = 0;
+    private static final int PREDICATE = 1;
+    private static final int OBJECT = 2;
+
+    //subjects and predicates are compared by their string value, see StatementsComparatorSPO
+    private static final Comparator<Value> STRING_VALUE_COMPARATOR = new Comparator<Value>() {
+        @Override
+        public int compare(Value o1, Value o2) {
+            return o1.stringValue().compareTo(o2.stringValue());
+        }
+    };
+
+    private final TermDictionary[] dictionaries = new TermDictionary[]{
+        new TermDictionary(STRING_VALUE_COMPARATOR),
+        new TermDictionary(STRING_VALUE_COMPARATOR),
+        new TermDictionary(new ValueComparator())};
+    //statement part of each key position
+    private final int[] parts;
+    private final ValueFactory factory = ValueFactoryImpl.getInstance();
+
+    /**
+     * Ctor
+     *
+     * @param order Order the encoded statements are to be sorted in. For the
+     * object order the ids are arranged as in OSP.
+     */
+    public TripleDictionary(SortOrder order) {
+        switch (order) {
+            case POS:
+                parts = new int[]{PREDICATE, OBJECT, SUBJECT};
+                break;
+            case OSP:
+            case O:
+                parts = new int[]{OBJECT, SUBJECT, PREDICATE};
+                break;
+            default:
+                parts = new int[]{SUBJECT, PREDICATE, OBJECT};
+        }
+    }
+
+    /**
+     * Adds the terms of a statement.
+     *
+     * @param stmt
+     */
+    public void add(Statement stmt) {
+        dictionaries[SUBJECT].add(stmt.getSubject());
+        dictionaries[PREDICATE].add(stmt.getPredicate());
+        dictionaries[OBJECT].add(stmt.getObject());
+    }
+
+    /**
+     * Assigns the ids, see TermDictionary.seal().
+     */
+    public void seal() {
+        for (TermDictionary dictionary : dictionaries) {
+            dictionary.seal();
+        }
+    }
+
+    /**
+     * Returns the id at a key position of an encoded statement.
+     *
+     * @param stmt Statement whose terms have been added.
+     * @param pos Key position 0, 1 or 2.
+     * @return
+     */
+    public int key(Statement stmt, int pos) {
+        switch (parts[pos]) {
+            case SUBJECT:
+                return dictionaries[SUBJECT].encode(stmt.getSubject());
+            case PREDICATE:
+                return dictionaries[PREDICATE].encode(stmt.getPredicate());
+            default:
+                return dictionaries[OBJECT].encode(stmt.getObject());
+        }
+    }
+
+    /**
+     * Decodes a statement from its ids.
+     *
+     * @param k1 Id at key position 0.
+     * @param k2 Id at key position 1.
+     * @param k3 Id at key position 2.
+     * @return
+     */
+    public Statement decode(int k1, int k2, int k3) {
+        Value[] values = new Value[3];
+        values[parts[0]] = dictionaries[parts[0]].decode(k1);
+        values[parts[1]] = dictionaries[parts[1]].decode(k2);
+        values[parts[2]] = dictionaries[parts[2]].decode(k3);
+        return factory.createStatement((Resource) values[SUBJECT], (URI) values[PREDICATE], values[OBJECT]);
+    }
+
+    /**
+     * Number of distinct terms per statement part, subjects first.
+     *
+     * @return
+     */
+    public int[] sizes() {
+        return new int[]{dictionaries[SUBJECT].size(), dictionaries[PREDICATE].size(), dictionaries[OBJECT].size()};
+    }
+
+}
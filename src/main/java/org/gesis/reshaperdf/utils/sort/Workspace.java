@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The directories holding the intermediate files of a sort. One directory is
+ * created in each of the given temporary directories, new files are assigned
+ * to them round-robin. With temporary directories on different devices the
+ * reads and writes of the merge steps are spread across the devices.
+ *
+ * Optionally the files are compressed with Deflate at its fastest level.
+ * Sorted files compress well because neighbouring lines share long prefixes,
+ * so the disk volume shrinks at little CPU cost. All files of the workspace
+ * have to be opened through openOutput() and openInput().
+ *
+ * @author bensmafx
+ */
+public class Workspace {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File[] dirs;
+    private final boolean compressed;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Ctor. Creates the workspace directories.
+     *
+     * @param tmpDirs Temporary directories to create the workspace in.
+     * @param compressed True to compress the files.
+     * @throws IOException If a directory cannot be created.
+     */
+    public Workspace(List<File> tmpDirs, boolean compressed) throws IOException {
+        this.compressed = compressed;
+        String name = String.valueOf(System.currentTimeMillis());
+        dirs = new File[tmpDirs.size()];
+        for (int i = 0; i < dirs.length; i++) {
+            File dir = new File(tmpDirs.get(i), name);
+            //parallel sorts may start within the same millisecond
+            for (int j = 1; !dir.mkdir(); j++) {
+                if (!tmpDirs.get(i).isDirectory()) {
+                    throw new IOException("Cannot create workspace in " + tmpDirs.get(i).getAbsolutePath());
+                }
+                dir = new File(tmpDirs.get(i), name + "_" + j);
+            }
+            dirs[i] = dir;
+            System.out.println("Using " + dir.getAbsolutePath() + " as workspace.");
+        }
+    }
+
+    /**
+     * Returns a file in the next workspace directory.
+     * @param name Name of the file, must be unique within the workspace.
+     * @return
+     */
+    public File newFile(String name) {
+        int i = (next.getAndIncrement() & Integer.MAX_VALUE) % dirs.length;
+        return new File(dirs[i], name);
+    }
+
+    /**
+     * Moves a file into the workspace. The file is copied if it cannot be
+     * renamed, e.g. because it is on another device. The file is not
+     * compressed.
+     * @param file
+     * @param name Name of the file in the workspace.
+     * @return The moved file.
+     * @throws IOException
+     */
+    public File adopt(File file, String name) throws IOException {
+        File target = newFile(name);
+        if (!file.renameTo(target)) {
+            FileInputStream fis = new FileInputStream(file);
+            FileOutputStream fos = new FileOutputStream(target);
+            try {
+                FileChannel in = fis.getChannel();
+                long pos = 0;
+                long size = in.size();
+                while (pos < size) {
+                    pos += in.transferTo(pos, size - pos, fos.getChannel());
+                }
+            } finally {
+                fis.close();
+                fos.close();
+            }
+            if (!file.delete()) {
+                throw new IOException("Cannot delete " + file.getAbsolutePath());
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Opens a file of the workspace for writing.
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public OutputStream openOutput(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if (!compressed) {
+            return out;
+        }
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end(); //a deflater passed in is not released by the stream
+                }
+            }
+        };
+    }
+
+    /**
+     * Opens a file of the workspace for reading.
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public InputStream openInput(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (!compressed) {
+            return in;
+        }
+        final Inflater inflater = new Inflater();
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Deletes the workspace directories and the files in them.
+     */
+    public void delete() {
+        for (File dir : dirs) {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    f.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * Checks whether the temporary directories offer enough space for the
+     * intermediate files. Since files are striped, each directory has to hold
+     * its share.
+     *
+     * @param tmpDirs Temporary directories.
+     * @param required Expected size of the intermediate files in bytes.
+     * @throws IOException If a directory has not enough usable space.
+     */
+    public static void checkFreeSpace(List<File> tmpDirs, long required) throws IOException {
+        long share = required / tmpDirs.size();
+        for (File dir : tmpDirs) {
+            long usable = dir.getUsableSpace();
+            if (usable < share) {
+                throw new IOException("Not enough free space in " + dir.getAbsolutePath() + ": "
+                        + (share / (1024 * 1024)) + " MB required, " + (usable / (1024 * 1024)) + " MB available.");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * @author Felix Bensmann
+ * Writes data across several flushes and blocks through a
+ * BlockCompressorOutputStream and checks that a standard decoder reads the
+ * concatenated members as the original data.
+ */
+public class BlockCompressorOutputStreamTest {
+
+    private static final int BLOCK_SIZE = 1000;
+
+    @Test
+    public void testGzip() throws Exception {
+        for (int threads : new int[]{1, 3}) {
+            byte[] data = createData();
+            List<Integer> blocks = Collections.synchronizedList(new ArrayList<Integer>());
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            OutputStream out = new CountingCompressor(bos, threads, blocks) {
+                @Override
+                protected byte[] compress(byte[] block, int len) throws IOException {
+                    super.compress(block, len);
+                    ByteArrayOutputStream result = new ByteArrayOutputStream();
+                    GZIPOutputStream gos = new GZIPOutputStream(result);
+                    gos.write(block, 0, len);
+                    gos.close();
+                    return result.toByteArray();
+                }
+            };
+            write(out, data);
+            checkBlocks(data, blocks);
+            assertArrayEquals(data, read(new GZIPInputStream(new ByteArrayInputStream(bos.toByteArray()))));
+        }
+    }
+
+    @Test
+    public void testBzip2() throws Exception {
+        for (int threads : new int[]{1, 3}) {
+            byte[] data = createData();
+            List<Integer> blocks = Collections.synchronizedList(new ArrayList<Integer>());
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            OutputStream out = new CountingCompressor(bos, threads, blocks) {
+                @Override
+                protected byte[] compress(byte[] block, int len) throws IOException {
+                    super.compress(block, len);
+                    ByteArrayOutputStream result = new ByteArrayOutputStream();
+                    BZip2CompressorOutputStream bzos = new BZip2CompressorOutputStream(result);
+                    bzos.write(block, 0, len);
+                    bzos.close();
+                    return result.toByteArray();
+                }
+            };
+            write(out, data);
+            checkBlocks(data, blocks);
+            assertArrayEquals(data, read(new BZip2CompressorInputStream(new ByteArrayInputStream(bos.toByteArray()), true)));
+        }
+    }
+
+    /**
+     * Records the length of every compressed block.
+     */
+    private abstract static class CountingCompressor extends BlockCompressorOutputStream {
+
+        private final List<Integer> blocks;
+
+        public CountingCompressor(OutputStream out, int threads, List<Integer> blocks) {
+            super(out, BLOCK_SIZE, threads);
+            this.blocks = blocks;
+        }
+
+        @Override
+        protected byte[] compress(byte[] data, int len) throws IOException {
+            blocks.add(len);
+            return null;
+        }
+    }
+
+    /**
+     * Creates compressible data of several block sizes.
+     */
+    private static byte[] createData() {
+        Random rnd = new Random(3);
+        byte[] data = new byte[20 * BLOCK_SIZE + 123];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + rnd.nextInt(4));
+        }
+        return data;
+    }
+
+    /**
+     * Writes the data in pieces of random size, single bytes and pieces
+     * larger than a block, and flushes in between, also after exactly a
+     * block and twice in a row.
+     */
+    private static void write(OutputStream out, byte[] data) throws IOException {
+        Random rnd = new Random(4);
+        int pos = 0;
+        int piece = 0;
+        while (pos < data.length) {
+            int n;
+            if (piece == 0) {
+                n = BLOCK_SIZE;
+            } else if (piece % 7 == 0) {
+                n = 1;
+            } else if (piece % 5 == 0) {
+                n = 3 * BLOCK_SIZE + rnd.nextInt(BLOCK_SIZE);
+            } else {
+                n = rnd.nextInt(BLOCK_SIZE / 2);
+            }
+            n = Math.min(n, data.length - pos);
+            if (n == 1) {
+                out.write(data[pos]);
+            } else {
+                out.write(data, pos, n);
+            }
+            pos += n;
+            if (piece == 0 || piece % 3 == 0) {
+                out.flush();
+            }
+            if (piece == 0) {
+                out.flush();
+            }
+            piece++;
+        }
+        out.close();
+        //closing twice is harmless
+        out.close();
+    }
+
+    /**
+     * Checks that every flush ended a block and that no block exceeded the
+     * block size.
+     */
+    private static void checkBlocks(byte[] data, List<Integer> blocks) {
+        int sum = 0;
+        for (int len : blocks) {
+            assertTrue(len > 0 && len <= BLOCK_SIZE);
+            sum += len;
+        }
+        assertEquals(data.length, sum);
+        assertTrue(blocks.size() > data.length / BLOCK_SIZE + 1);
+        assertEquals(BLOCK_SIZE, (int) blocks.get(0));
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[777];
+        int n = in.read(buffer);
+        while (n >= 0) {
+            out.write(buffer, 0, n);
+            n = in.read(buffer);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.ntriples.NTriplesWriter;
+
+/**
+ * @author Felix Bensmann
+ * Checks that the ChunkedStatementProcessor splits files at line breaks and
+ * that processing a file on several threads gives the same output as
+ * processing it on one.
+ */
+public class ChunkedStatementProcessorTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final IChunkHandlerFactory WRITER_FACTORY = new IChunkHandlerFactory() {
+
+        @Override
+        public RDFHandler createHandler(OutputStream out) throws IOException {
+            return new NTriplesWriter(out);
+        }
+    };
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testSplitAtLineBreaks() throws Exception {
+        File file = tmp.newFile("lines.nt");
+        Files.write(file.toPath(), createContent(300, true).getBytes(UTF8));
+        byte[] content = Files.readAllBytes(file.toPath());
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            for (int n = 1; n <= 16; n++) {
+                long[] bounds = ChunkedStatementProcessor.split(channel, n);
+                assertEquals(0, bounds[0]);
+                assertEquals(content.length, bounds[bounds.length - 1]);
+                assertTrue(bounds.length <= n + 1);
+                ByteArrayOutputStream joined = new ByteArrayOutputStream();
+                for (int i = 0; i < bounds.length - 1; i++) {
+                    assertTrue(bounds[i] < bounds[i + 1]);
+                    if (i > 0) {
+                        assertEquals('\n', content[(int) bounds[i] - 1]);
+                    }
+                    copy(new FileRangeInputStream(channel, bounds[i], bounds[i + 1]), joined);
+                }
+                //the ranges cover the file without gaps or overlaps
+                assertArrayEquals(content, joined.toByteArray());
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void testLineAcrossChunkEdge() throws Exception {
+        //the middle of the file falls into the second line
+        String first = "<http://ex.org/a> <http://ex.org/p> \"a\" .\n";
+        String second = "<http://ex.org/b> <http://ex.org/p> \"" + repeat('b', 200) + "\" .\n";
+        String third = "<http://ex.org/c> <http://ex.org/p> \"c\" .\n";
+        long[] bounds = split(first + second + third, 2);
+        assertArrayEquals(new long[]{0, first.length() + second.length(), first.length() + second.length() + third.length()}, bounds);
+
+        //the middle of the file is the start of a line
+        bounds = split(first + first, 2);
+        assertArrayEquals(new long[]{0, first.length(), 2 * first.length()}, bounds);
+
+        //a line that spans several chunks leaves out the empty ranges
+        bounds = split(first + second, 8);
+        assertEquals(0, bounds[0]);
+        assertEquals(first.length() + second.length(), bounds[bounds.length - 1]);
+        for (int i = 1; i < bounds.length - 1; i++) {
+            assertEquals(first.length(), bounds[i]);
+        }
+        assertTrue(bounds.length <= 3);
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        for (boolean finalNewline : new boolean[]{true, false}) {
+            File in = tmp.newFile("in" + finalNewline + ".nt");
+            String content = createContent(1000, finalNewline);
+            Files.write(in.toPath(), content.getBytes(UTF8));
+            File expected = tmp.newFile("expected" + finalNewline + ".nt");
+            new ChunkedStatementProcessor(1).process(in, expected, false, WRITER_FACTORY);
+            List<String> lines = Files.readAllLines(expected.toPath(), UTF8);
+            //the last line is read even without a line break
+            assertEquals(1000, lines.size());
+            assertEquals(Arrays.asList(content.split("\n")), lines);
+            byte[] bytes = Files.readAllBytes(expected.toPath());
+            for (int threads : new int[]{2, 3, 4, 7}) {
+                File out = tmp.newFile("out" + finalNewline + threads + ".nt");
+                new ChunkedStatementProcessor(threads).process(in, out, false, WRITER_FACTORY);
+                assertArrayEquals("threads " + threads, bytes, Files.readAllBytes(out.toPath()));
+            }
+        }
+        //no parts are left next to the output
+        for (String name : tmp.getRoot().list()) {
+            assertTrue(name, !name.startsWith("part"));
+        }
+    }
+
+    /**
+     * Creates lines of random length, every one a statement in the form
+     * written by the NTriplesWriter.
+     */
+    private static String createContent(int count, boolean finalNewline) {
+        Random rnd = new Random(count);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(String.format("<http://ex.org/r%05d> <http://ex.org/p> \"", i));
+            sb.append(repeat((char) ('a' + rnd.nextInt(26)), rnd.nextInt(i % 50 == 0 ? 2000 : 40)));
+            sb.append("\" .");
+            if (finalNewline || i < count - 1) {
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private long[] split(String content, int n) throws IOException {
+        File file = tmp.newFile();
+        Files.write(file.toPath(), content.getBytes(UTF8));
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return ChunkedStatementProcessor.split(raf.getChannel(), n);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static String repeat(char c, int n) {
+        char[] arr = new char[n];
+        Arrays.fill(arr, c);
+        return new String(arr);
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[100];
+        int n = in.read(buffer);
+        while (n >= 0) {
+            out.write(buffer, 0, n);
+            n = in.read(buffer);
+        }
+        in.close();
+    }
+}
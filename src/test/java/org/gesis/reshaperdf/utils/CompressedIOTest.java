@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Felix Bensmann
+ * Writes files through CompressedIO across several flushes, blocks and
+ * appends and reads them back, with CompressedIO and with the plain
+ * decoders.
+ */
+public class CompressedIOTest {
+
+    //more than two gzip blocks and one bzip2 block
+    private static final int SIZE = (5 << 20) / 2;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testGzip() throws Exception {
+        File file = tmp.newFile("data.nt.gz");
+        byte[] data = writeAndAppend(file);
+        byte[] head = Arrays.copyOf(readRaw(new FileInputStream(file)), 2);
+        assertArrayEquals(new byte[]{(byte) 0x1f, (byte) 0x8b}, head);
+        assertArrayEquals(data, readRaw(CompressedIO.openInputStream(file)));
+        assertArrayEquals(data, readRaw(new GZIPInputStream(new FileInputStream(file))));
+    }
+
+    @Test
+    public void testBzip2() throws Exception {
+        File file = tmp.newFile("data.nt.bz2");
+        byte[] data = writeAndAppend(file);
+        byte[] head = Arrays.copyOf(readRaw(new FileInputStream(file)), 3);
+        assertArrayEquals("BZh".getBytes("US-ASCII"), head);
+        assertArrayEquals(data, readRaw(CompressedIO.openInputStream(file)));
+        assertArrayEquals(data, readRaw(new BZip2CompressorInputStream(new BufferedInputStream(new FileInputStream(file)), true)));
+    }
+
+    @Test
+    public void testUncompressed() throws Exception {
+        File file = tmp.newFile("data.nt");
+        byte[] data = writeAndAppend(file);
+        assertEquals(data.length, file.length());
+        assertArrayEquals(data, readRaw(CompressedIO.openInputStream(file)));
+    }
+
+    @Test
+    public void testSuffix() {
+        assertEquals(".gz", CompressedIO.getSuffix(new File("a.nt.gz")));
+        assertEquals(".bz2", CompressedIO.getSuffix(new File("a.nt.bz2")));
+        assertEquals("", CompressedIO.getSuffix(new File("a.nt")));
+        assertTrue(!CompressedIO.isCompressed(new File("a.nt")));
+        assertEquals("a.nt", CompressedIO.removeSuffix("a.nt.bz2"));
+    }
+
+    /**
+     * Writes compressible data with a flush in between, then appends more
+     * data to the file.
+     *
+     * @return All data written.
+     */
+    private static byte[] writeAndAppend(File file) throws IOException {
+        Random rnd = new Random(6);
+        byte[] data = new byte[SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + rnd.nextInt(8));
+        }
+        int flushAt = 12345;
+        int appendAt = SIZE - 54321;
+        OutputStream out = CompressedIO.openOutputStream(file);
+        out.write(data, 0, flushAt);
+        out.flush();
+        out.write(data, flushAt, appendAt - flushAt);
+        out.flush();
+        out.close();
+        out = CompressedIO.openOutputStream(file, true);
+        out.write(data, appendAt, SIZE - appendAt);
+        out.close();
+        return data;
+    }
+
+    private static byte[] readRaw(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 16];
+        int n = in.read(buffer);
+        while (n >= 0) {
+            out.write(buffer, 0, n);
+            n = in.read(buffer);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
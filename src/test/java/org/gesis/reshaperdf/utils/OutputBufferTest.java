@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * @author Felix Bensmann
+ * Writes past the memory limit of an OutputBuffer and reads the content
+ * back.
+ */
+public class OutputBufferTest {
+
+    @Test
+    public void testSpill() throws Exception {
+        byte[] data = new byte[10000];
+        new Random(9).nextBytes(data);
+        for (int limit : new int[]{100000, 1000}) {
+            OutputBuffer buffer = new OutputBuffer(limit);
+            buffer.write(data[0]);
+            for (int pos = 1; pos < data.length; pos += 333) {
+                buffer.write(data, pos, Math.min(333, data.length - pos));
+            }
+            assertEquals(data.length, buffer.size());
+            assertEquals(limit < data.length, buffer.isSpilled());
+            //can be copied repeatedly
+            for (int i = 0; i < 2; i++) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                buffer.writeTo(out);
+                assertArrayEquals(data, out.toByteArray());
+            }
+            buffer.delete();
+            assertTrue(!buffer.isSpilled());
+        }
+    }
+}
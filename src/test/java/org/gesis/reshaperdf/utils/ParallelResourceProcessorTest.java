@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.gesis.reshaperdf.cmd.block.BlockCommand;
+import org.gesis.reshaperdf.cmd.extractresources.ExtractResourcesCommand;
+import org.gesis.reshaperdf.cmd.pick.PickCommand;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.Statement;
+
+/**
+ * @author Felix Bensmann
+ * Checks that processing resources on several threads keeps the order of
+ * the input and that resources beyond the spill threshold are processed
+ * like the others.
+ */
+public class ParallelResourceProcessorTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int THRESHOLD = 50;
+    private static final String P = "http://ex.org/p";
+    private static final String Q = "http://ex.org/q";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File snt;
+    private int defaultThreshold;
+    private int single;
+
+    @Before
+    public void setUp() throws Exception {
+        defaultThreshold = ResourceBuffer.getDefaultSpillThreshold();
+        //sorted resources, every 100th one exceeds the spill threshold
+        Random rnd = new Random(5);
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 2000; i++) {
+            String s = String.format("<http://ex.org/r%05d>", i);
+            int size = i % 100 == 7 ? 3 * THRESHOLD + rnd.nextInt(THRESHOLD) : 1 + rnd.nextInt(5);
+            for (int j = 0; j < size; j++) {
+                String p = j == size - 1 && rnd.nextInt(3) == 0 ? P : Q;
+                lines.add(s + " <" + p + "> \"" + (char) ('a' + rnd.nextInt(3)) + j + "\" .");
+            }
+        }
+        snt = tmp.newFile("resources.nt");
+        Files.write(snt.toPath(), lines, UTF8);
+    }
+
+    @After
+    public void tearDown() {
+        ResourceBuffer.setDefaultSpillThreshold(defaultThreshold);
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        List<String> expected = collect(1, ResourceBuffer.DEFAULT_SPILL_THRESHOLD);
+        assertEquals(2000, expected.size());
+        for (int threads : new int[]{1, 2, 4}) {
+            assertEquals("threads " + threads, expected, collect(threads, THRESHOLD));
+            //only the spilled resources are handled one by one
+            assertEquals("threads " + threads, threads == 1 ? 2000 : 20, single);
+        }
+    }
+
+    @Test
+    public void testCommandsWithSpilledResources() throws Exception {
+        String block = block(1);
+        String pick = pick(1);
+        String extract = extract(1);
+        assertTrue(block.length() > 0 && pick.length() > 0 && extract.length() > 0);
+        ResourceBuffer.setDefaultSpillThreshold(THRESHOLD);
+        for (int threads : new int[]{1, 3}) {
+            assertEquals("block, threads " + threads, block, block(threads));
+            assertEquals("pick, threads " + threads, pick, pick(threads));
+            assertEquals("extractresources, threads " + threads, extract, extract(threads));
+        }
+    }
+
+    /**
+     * Processes the file and lists every resource as number, subject and
+     * size, in the order the results are written.
+     */
+    private List<String> collect(int threads, int spillThreshold) throws Exception {
+        final List<String> written = new ArrayList<String>();
+        single = 0;
+        ParallelResourceProcessor<List<String>> processor = new ParallelResourceProcessor<List<String>>(threads, spillThreshold, new IResourceBatchHandler<List<String>>() {
+
+            @Override
+            public List<String> handleBatch(List<ResourceBuffer> resources, long firstResource) {
+                List<String> result = new ArrayList<String>();
+                for (ResourceBuffer res : resources) {
+                    assertTrue(!res.isSpilled());
+                    result.add(describe(res, firstResource++));
+                }
+                return result;
+            }
+
+            @Override
+            public void writeResult(List<String> result) {
+                written.addAll(result);
+            }
+
+            @Override
+            public void handleResource(ResourceBuffer res, long index) {
+                single++;
+                written.add(describe(res, index));
+            }
+        });
+        processor.process(snt);
+        return written;
+    }
+
+    private static String describe(ResourceBuffer res, long index) {
+        List<String> objects = new ArrayList<String>();
+        IPullReader<Statement> stmts = res.read();
+        for (; !stmts.isEmpty(); stmts.removeHead()) {
+            objects.add(stmts.peek().getObject().stringValue());
+        }
+        return index + " " + res.getSubject().stringValue() + " " + objects;
+    }
+
+    private String block(int threads) throws Exception {
+        File dir = tmp.newFolder();
+        new BlockCommand().execute(new String[]{"block", snt.getPath(), dir.getPath(), P, "0", "1", "--threads", "" + threads});
+        StringBuilder sb = new StringBuilder();
+        String[] names = dir.list();
+        Arrays.sort(names);
+        for (String name : names) {
+            sb.append(name).append('\n').append(read(new File(dir, name)));
+        }
+        return sb.toString();
+    }
+
+    private String pick(int threads) throws Exception {
+        File out = tmp.newFile();
+        new PickCommand().execute(new String[]{"pick", snt.getPath(), out.getPath(), "res", "?", P, "?", "--threads", "" + threads});
+        return read(out);
+    }
+
+    private String extract(int threads) throws Exception {
+        File out = tmp.newFile();
+        new ExtractResourcesCommand().execute(new String[]{"extractresources", snt.getPath(), out.getPath(), P, "?", "100", "1500", "--threads", "" + threads});
+        return read(out);
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), UTF8);
+    }
+}
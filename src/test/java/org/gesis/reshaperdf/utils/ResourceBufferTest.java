@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.BNodeImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+
+/**
+ * @author Felix Bensmann
+ * Fills a ResourceBuffer past its spill threshold and reads the resource
+ * back from memory and the spill file.
+ */
+public class ResourceBufferTest {
+
+    private static final int THRESHOLD = 10;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testSpill() throws Exception {
+        File dir = tmp.newFolder();
+        ResourceBuffer buffer = new ResourceBuffer(THRESHOLD, dir);
+        List<Statement> input = resource(new BNodeImpl("b1"), 35);
+        for (Statement st : input) {
+            assertTrue(buffer.belongsTo(st));
+            buffer.add(st);
+        }
+        assertTrue(buffer.isSpilled());
+        assertEquals(35, buffer.size());
+        assertEquals(THRESHOLD, buffer.sizeInMemory());
+        assertEquals(1, dir.list().length);
+        try {
+            buffer.get(THRESHOLD);
+            fail("Spilled statement reachable by get().");
+        } catch (IndexOutOfBoundsException ex) {
+            //expected
+        }
+        //read() can be called repeatedly, also while another reader is open
+        IPullReader<Statement> open = buffer.read();
+        open.removeHead();
+        assertEquals(input, readAll(buffer.read()));
+        assertEquals(input, readAll(buffer.read()));
+        assertEquals(input, Arrays.asList(buffer.toArray()));
+
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, dir.list().length);
+
+        //the buffer is reused for the next resource
+        List<Statement> next = resource(new URIImpl("http://ex.org/s"), THRESHOLD);
+        for (Statement st : next) {
+            buffer.add(st);
+        }
+        assertTrue(!buffer.isSpilled());
+        assertEquals(next, readAll(buffer.read()));
+        assertEquals(0, dir.list().length);
+        buffer.clear();
+    }
+
+    @Test
+    public void testDefaultSpillThreshold() throws Exception {
+        int old = ResourceBuffer.getDefaultSpillThreshold();
+        ResourceBuffer.setDefaultSpillThreshold(3);
+        try {
+            ResourceBuffer buffer = new ResourceBuffer();
+            for (Statement st : resource(new URIImpl("http://ex.org/s"), 4)) {
+                buffer.add(st);
+            }
+            assertTrue(buffer.isSpilled());
+            buffer.clear();
+        } finally {
+            ResourceBuffer.setDefaultSpillThreshold(old);
+        }
+    }
+
+    private static List<Statement> resource(Resource subject, int size) {
+        List<Statement> list = new ArrayList<Statement>();
+        for (int i = 0; i < size; i++) {
+            switch (i % 3) {
+                case 0:
+                    list.add(new StatementImpl(subject, new URIImpl("http://ex.org/p"), new LiteralImpl("v" + i + " ü😀", "de")));
+                    break;
+                case 1:
+                    list.add(new StatementImpl(subject, new URIImpl("http://ex.org/q"), new BNodeImpl("o" + i)));
+                    break;
+                default:
+                    list.add(new StatementImpl(subject, new URIImpl("http://ex.org/r"), new URIImpl("http://ex.org/o" + i)));
+            }
+        }
+        return list;
+    }
+
+    static List<Statement> readAll(IPullReader<Statement> reader) {
+        List<Statement> list = new ArrayList<Statement>();
+        for (; !reader.isEmpty(); reader.removeHead()) {
+            list.add(reader.peek());
+        }
+        return list;
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.gesis.reshaperdf.cmd.getenrichment.GetEnrichmentCommand;
+import org.gesis.reshaperdf.cmd.pick.PickCommand;
+import org.gesis.reshaperdf.utils.sort.Sort;
+import org.gesis.reshaperdf.utils.sort.SortSettings;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+
+/**
+ * @author Felix Bensmann
+ * Checks that reading an SNT file with jumps from its SubjectIndex delivers
+ * the same resources as reading it sequentially.
+ */
+public class SubjectIndexTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int RESOURCES = 3000;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File snt;
+    private List<String> subjects;
+
+    @Before
+    public void setUp() throws Exception {
+        Random rnd = new Random(3);
+        File unsorted = tmp.newFile("unsorted.nt");
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < RESOURCES; i++) {
+            String s = rnd.nextInt(10) == 0 ? "_:b" + i : "<http://ex.org/" + (rnd.nextBoolean() ? "ü" : "r") + i + ">";
+            for (int j = rnd.nextInt(5); j >= 0; j--) {
+                lines.add(s + " <http://ex.org/p" + rnd.nextInt(3) + "> \"v" + rnd.nextInt(1000) + "\" .");
+            }
+        }
+        Files.write(unsorted.toPath(), lines, UTF8);
+        snt = tmp.newFile("resources.nt");
+        SortSettings settings = new SortSettings();
+        settings.setTmpDirs(Arrays.asList(tmp.newFolder()));
+        Sort.sort(unsorted, snt, settings);
+        //subjects in file order
+        subjects = new ArrayList<String>();
+        ResourcePullReader reader = new ResourcePullReader(snt);
+        reader.load();
+        while (!reader.isEmpty()) {
+            subjects.add(reader.peekResource().getSubject().stringValue());
+            reader.removeHead();
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testSeek() throws Exception {
+        assertTrue(SubjectIndex.write(snt, 50) > 10);
+        ResourcePullReader indexed = new ResourcePullReader(snt);
+        assertTrue(indexed.useIndex());
+        indexed.load();
+        ResourcePullReader sequential = new ResourcePullReader(snt);
+        sequential.load();
+        int jumps = 0;
+        for (int i = 0; i < subjects.size(); i += 1 + i % 211) {
+            String subject = subjects.get(i);
+            if (!subject.startsWith("http")) {
+                //blank node ids differ between readers
+                continue;
+            }
+            if (indexed.seek(subject)) {
+                jumps++;
+            }
+            while (!indexed.isEmpty() && indexed.peekResource().getSubject().stringValue().compareTo(subject) < 0) {
+                indexed.removeHead();
+            }
+            while (!sequential.peekResource().getSubject().stringValue().equals(subject)) {
+                sequential.removeHead();
+            }
+            assertEquals(subject, toStrings(sequential.peek()), toStrings(indexed.peek()));
+        }
+        assertTrue(jumps > 0);
+        indexed.close();
+        sequential.close();
+    }
+
+    @Test
+    public void testPick() throws Exception {
+        File list = tmp.newFile("subjects.txt");
+        List<String> picked = new ArrayList<String>();
+        for (int i = 0; i < subjects.size(); i += 97) {
+            if (subjects.get(i).startsWith("http")) {
+                picked.add(subjects.get(i));
+            }
+        }
+        picked.add("http://ex.org/missing");
+        Files.write(list.toPath(), picked, UTF8);
+        for (String threads : new String[]{"1", "3"}) {
+            String expected = pick(list, threads);
+            SubjectIndex.write(snt, 20);
+            String actual = pick(list, threads);
+            SubjectIndex.getIndexFile(snt).delete();
+            assertTrue(expected.length() > 0);
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testGetEnrichment() throws Exception {
+        File links = tmp.newFile("links.nt");
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < subjects.size(); i += 61) {
+            if (subjects.get(i).startsWith("http")) {
+                lines.add("<http://ex.org/link" + i + "> <http://www.w3.org/2002/07/owl#sameAs> <" + subjects.get(i) + "> .");
+            }
+        }
+        lines.add("<http://ex.org/link> <http://www.w3.org/2002/07/owl#sameAs> <http://ex.org/missing> .");
+        Files.write(links.toPath(), lines, UTF8);
+        String expected = getEnrichment(links);
+        SubjectIndex.write(snt, 20);
+        String actual = getEnrichment(links);
+        assertTrue(expected.length() > 0);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testLinesWithoutWhiteSpace() throws Exception {
+        //subjects without white space after them, with tabs and with escapes,
+        //formats change within a resource
+        File file = tmp.newFile("compact.nt");
+        List<String> lines = new ArrayList<String>();
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < 500; i++) {
+            String name = String.format("http://ex.org/r%04d", i);
+            names.add(name);
+            String[] forms = {"<" + name + ">", "<http://ex.org/\\u0072" + name.substring(15) + ">"};
+            lines.add(forms[i % 2] + "<http://ex.org/p><http://ex.org/o" + i + ">.");
+            lines.add("\t" + forms[(i + 1) % 2] + "\t<http://ex.org/q>\t\"" + i + "\" .");
+        }
+        Files.write(file.toPath(), lines, UTF8);
+        assertEquals(50, SubjectIndex.write(file, 10));
+        SubjectIndex index = SubjectIndex.load(file);
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(names.get(10 * i), index.getSubject(i));
+        }
+        ResourcePullReader reader = new ResourcePullReader(file);
+        assertTrue(reader.useIndex());
+        reader.load();
+        int jumps = 0;
+        for (int i = 3; i < names.size(); i += 37) {
+            if (reader.seek(names.get(i))) {
+                jumps++;
+            }
+            while (reader.peekResource().getSubject().stringValue().compareTo(names.get(i)) < 0) {
+                reader.removeHead();
+            }
+            Statement[] res = reader.peek();
+            assertEquals(2, res.length);
+            assertEquals(names.get(i), res[0].getSubject().stringValue());
+            assertEquals("http://ex.org/o" + i, res[0].getObject().stringValue());
+        }
+        assertTrue(jumps > 10);
+        reader.close();
+    }
+
+    @Test
+    public void testOutdatedIndex() throws Exception {
+        SubjectIndex.write(snt, 20);
+        assertTrue(snt.setLastModified(snt.lastModified() - 10000));
+        assertNull(SubjectIndex.load(snt));
+        ResourcePullReader reader = new ResourcePullReader(snt);
+        assertTrue(!reader.useIndex());
+    }
+
+    @Test
+    public void testCompressed() throws Exception {
+        File gz = tmp.newFile("resources.nt.gz");
+        OutputStream out = CompressedIO.openOutputStream(gz);
+        Files.copy(snt.toPath(), out);
+        out.close();
+        SubjectIndex.write(snt, 20);
+        Files.copy(SubjectIndex.getIndexFile(snt).toPath(), SubjectIndex.getIndexFile(gz).toPath());
+        ResourcePullReader reader = new ResourcePullReader(gz);
+        assertTrue(!reader.useIndex());
+        try {
+            reader.setIndex(SubjectIndex.load(snt));
+            fail("Compressed file accepted an index.");
+        } catch (IllegalArgumentException ex) {
+            //expected
+        }
+        try {
+            new PullReader(gz, false, true, 100, null);
+            fail("Compressed file accepted an offset.");
+        } catch (IllegalArgumentException ex) {
+            //expected
+        }
+    }
+
+    private String pick(File list, String threads) throws Exception {
+        File out = tmp.newFile();
+        out.delete();
+        new PickCommand().execute(new String[]{"pick", snt.getPath(), out.getPath(), "res", list.getPath(), "?", "?", "--threads", threads});
+        return read(out);
+    }
+
+    private String getEnrichment(File links) throws Exception {
+        File out = tmp.newFile();
+        new GetEnrichmentCommand().execute(new String[]{"getenrichment", links.getPath(), snt.getPath(), out.getPath()});
+        return read(out);
+    }
+
+    private static String read(File file) throws IOException {
+        String str = new String(Files.readAllBytes(file.toPath()), UTF8);
+        return str.replaceAll("genid(2d)?[0-9a-f]{32}(2d|-)", "genid");
+    }
+
+    private static List<String> toStrings(Statement[] res) {
+        List<String> list = new ArrayList<String>();
+        for (Statement st : res) {
+            list.add((NTriplesUtil.toNTriplesString(st.getSubject()) + " "
+                    + NTriplesUtil.toNTriplesString(st.getPredicate()) + " "
+                    + NTriplesUtil.toNTriplesString(st.getObject())).replaceAll("genid-[0-9a-f]{32}-", "genid"));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author bensmafx
+ * Merges text files of sorted lines and checks that a failed merge closes
+ * its output and leaves no partial run.
+ */
+public class MergeTaskTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private int openWriters = 0;
+
+    @Test
+    public void testMerge() throws Exception {
+        File out = tmp.newFile("merged");
+        MergeTask<String> task = new MergeTask<String>(out, inFiles(), new NaturalOrder(false), new LineFormat(), null, 1, false, true);
+        task.merge(out, inFiles());
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f"), Files.readAllLines(out.toPath(), UTF8));
+        assertEquals(0, openWriters);
+    }
+
+    @Test
+    public void testFailedMerge() throws Exception {
+        File out = tmp.newFile("merged");
+        File[] inFiles = inFiles();
+        MergeTask<String> task = new MergeTask<String>(out, inFiles, new NaturalOrder(true), new LineFormat(), null, 1, false, false);
+        try {
+            task.merge(out, inFiles);
+            fail("Comparator failure not passed on.");
+        } catch (IllegalStateException ex) {
+            //expected
+        }
+        assertEquals(0, openWriters);
+        assertTrue(!out.exists());
+        //the input is kept
+        for (File f : inFiles) {
+            assertTrue(f.exists());
+        }
+    }
+
+    private File[] inFiles() throws IOException {
+        File a = tmp.newFile();
+        File b = tmp.newFile();
+        Files.write(a.toPath(), Arrays.asList("a", "c", "d", "f"), UTF8);
+        Files.write(b.toPath(), Arrays.asList("b", "c", "e"), UTF8);
+        return new File[]{a, b};
+    }
+
+    private static class NaturalOrder implements Comparator<String> {
+
+        private final boolean failing;
+
+        NaturalOrder(boolean failing) {
+            this.failing = failing;
+        }
+
+        @Override
+        public int compare(String x, String y) {
+            if (failing && (x.equals("d") || y.equals("d"))) {
+                throw new IllegalStateException("Cannot compare " + x + " and " + y);
+            }
+            return x.compareTo(y);
+        }
+    }
+
+    /**
+     * Files of lines, counts the writers that are open.
+     */
+    private class LineFormat implements IRunFormat<String> {
+
+        @Override
+        public IRunReader<String> openReader(File file) throws IOException {
+            final List<String> lines = Files.readAllLines(file.toPath(), UTF8);
+            return new IRunReader<String>() {
+                @Override
+                public String peek() {
+                    return lines.isEmpty() ? null : lines.get(0);
+                }
+
+                @Override
+                public void removeHead() {
+                    lines.remove(0);
+                }
+
+                @Override
+                public boolean isEmpty() {
+                    return lines.isEmpty();
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public IRunWriter<String> openWriter(File file, boolean output) throws IOException {
+            final Writer writer = Files.newBufferedWriter(file.toPath(), UTF8);
+            openWriters++;
+            return new IRunWriter<String>() {
+                @Override
+                public void write(String element) throws IOException {
+                    writer.write(element + "\n");
+                }
+
+                @Override
+                public void close() throws IOException {
+                    writer.close();
+                    openWriters--;
+                }
+            };
+        }
+    }
+}
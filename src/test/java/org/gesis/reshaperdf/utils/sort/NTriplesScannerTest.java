@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.NTriplesParserSettings;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.openrdf.rio.helpers.StatementCollector;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+
+/**
+ * @author bensmafx
+ * Compares the NTriplesScanner with the Rio parser it replaces on edge case
+ * lines. Lines the parser accepts must yield the same statements, lines it
+ * rejects must be skipped.
+ */
+public class NTriplesScannerTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String S = "<http://ex.org/s>";
+    private static final String P = "<http://ex.org/p>";
+
+    private static final String[] LINES = {
+        S + " " + P + " <http://ex.org/o> .",
+        S + P + "<http://ex.org/o>.",
+        S + "\t" + P + "\t\"x\"@en-US\t.",
+        "  " + S + "  " + P + "  \"x\"  .  ",
+        "_:b1 " + P + " _:b2 .",
+        "_:b1" + P + "_:b2 .",
+        S + " " + P + " \"a\\\"b\\\\c\\n\\r\\t\\u00FC\\U0001F600\" .",
+        S + " " + P + " \"ü 中  ￯ 😀\" .",
+        "<http://ex.org/\\u00FCü𐀀> " + P + " \"x\" .",
+        S + " " + P + " \"1\"^^<http://www.w3.org/2001/XMLSchema#integer> .",
+        S + " " + P + " \"1\"^^<http://www.w3.org/2001/XMLSchema#integer>.",
+        S + " " + P + " \"\"@de .",
+        S + " " + P + " \"x\" . # comment",
+        S + " " + P + " \"x\" .\r",
+        //accepted with a warning
+        S + " " + P + " \"x\"@ .",
+        "<http://ex.org/a b> " + P + " \"x\" .",
+        //rejected
+        S + " " + P + " \"x\"^^<http://www.w3.org/1999/02/22-rdf-syntax-ns#langString> .",
+        "<s> " + P + " \"x\" .",
+        S + " " + P + " \"bad \\q escape\" .",
+        S + " " + P + " \"unterminated .",
+        S + " " + P + " \"x\"",
+        S + " " + P + " .",
+        S + " \"x\" \"y\" .",
+        "\"x\" " + P + " \"y\" .",
+        //no statements
+        "",
+        "   ",
+        "# comment"
+    };
+
+    @Test
+    public void testSingleLines() throws Exception {
+        for (String line : LINES) {
+            List<String> expected = parseRio(line);
+            for (boolean lazy : new boolean[]{false, true}) {
+                NTriplesScanner scanner = new NTriplesScanner(true, lazy);
+                assertEquals(line, expected, parse(scanner, line));
+                boolean blank = line.trim().isEmpty() || line.startsWith("#");
+                assertEquals(line, expected.isEmpty() && !blank ? 1 : 0, scanner.getSkippedLines());
+            }
+        }
+    }
+
+    @Test
+    public void testDocument() throws Exception {
+        StringBuilder doc = new StringBuilder();
+        for (String line : LINES) {
+            doc.append(line).append('\n');
+        }
+        //repeated subjects and predicates
+        for (String line : LINES) {
+            doc.append(line).append('\n');
+        }
+        List<String> expected = parseRio(doc.toString());
+        for (boolean lazy : new boolean[]{false, true}) {
+            assertEquals(expected, parse(new NTriplesScanner(true, lazy), doc.toString()));
+        }
+    }
+
+    private static List<String> parse(NTriplesScanner scanner, String doc) throws Exception {
+        List<Statement> list = new ArrayList<Statement>();
+        scanner.setRDFHandler(new StatementCollector(list));
+        scanner.parse(new ByteArrayInputStream(doc.getBytes(UTF8)));
+        return toStrings(list);
+    }
+
+    private static List<String> parseRio(String doc) throws Exception {
+        RDFParser parser = Rio.createParser(RDFFormat.NTRIPLES);
+        parser.getParserConfig().addNonFatalError(NTriplesParserSettings.FAIL_ON_NTRIPLES_INVALID_LINES);
+        parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        final List<Statement> list = new ArrayList<Statement>();
+        parser.setRDFHandler(new RDFHandlerBase() {
+            @Override
+            public void handleStatement(Statement st) throws RDFHandlerException {
+                list.add(st);
+            }
+        });
+        parser.parse(new InputStreamReader(new ByteArrayInputStream(doc.getBytes(UTF8)), UTF8), "");
+        return toStrings(list);
+    }
+
+    private static List<String> toStrings(List<Statement> list) {
+        List<String> res = new ArrayList<String>();
+        for (Statement st : list) {
+            res.add(NTriplesUtil.toNTriplesString(st.getSubject()) + " "
+                    + NTriplesUtil.toNTriplesString(st.getPredicate()) + " "
+                    + NTriplesUtil.toNTriplesString(st.getObject()));
+        }
+        return res;
+    }
+}
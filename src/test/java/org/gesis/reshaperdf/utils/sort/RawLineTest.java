@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * @author bensmafx
+ * Checks that comparing UTF-8 bytes gives the order of String.compareTo,
+ * which differs from the code point order for characters from U+E000 up to
+ * U+FFFF and characters outside the BMP.
+ */
+public class RawLineTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    //lower and upper bounds of the character ranges that encode differently
+    private static final int[][] RANGES = {
+        {0x20, 0x7F}, {0x80, 0x7FF}, {0x800, 0xD7FF}, {0xE000, 0xFFFF}, {0x10000, 0x10FFFF}
+    };
+
+    @Test
+    public void testRangeBorders() {
+        String[] chars = {"a", "\u007F", "\u0080", "߿", "ࠀ", "퟿", "", "￯",
+            "￿", new String(Character.toChars(0x10000)), new String(Character.toChars(0x1F600)),
+            new String(Character.toChars(0x10FFFF))};
+        for (String x : chars) {
+            for (String y : chars) {
+                check(x, y);
+                check("p" + x + "q", "p" + y);
+                check(x + y, y + x);
+            }
+        }
+    }
+
+    @Test
+    public void testRandomStrings() {
+        Random rnd = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            String x = randomString(rnd);
+            String y = randomString(rnd);
+            if (rnd.nextInt(4) == 0) {
+                //common prefix, cut between code points
+                y = x.substring(0, x.offsetByCodePoints(0, rnd.nextInt(x.codePointCount(0, x.length()) + 1))) + y;
+            }
+            check(x, y);
+        }
+    }
+
+    private static void check(String x, String y) {
+        byte[] a = ("_" + x).getBytes(UTF8);
+        byte[] b = (y + "__").getBytes(UTF8);
+        int res = RawLine.compareUTF16(a, 1, a.length, b, 0, b.length - 2);
+        assertEquals(hex(x) + " <> " + hex(y), Integer.signum(x.compareTo(y)), Integer.signum(res));
+    }
+
+    private static String hex(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            sb.append(String.format("\\u%04X", (int) s.charAt(i)));
+        }
+        return sb.toString();
+    }
+
+    private static String randomString(Random rnd) {
+        StringBuilder sb = new StringBuilder();
+        int len = rnd.nextInt(6);
+        for (int i = 0; i < len; i++) {
+            int[] range = RANGES[rnd.nextInt(RANGES.length)];
+            int cp = range[0] + rnd.nextInt(Math.min(range[1] - range[0] + 1, 16));
+            if (rnd.nextBoolean()) {
+                cp = range[1] - rnd.nextInt(16);
+            }
+            sb.appendCodePoint(cp);
+        }
+        return sb.toString();
+    }
+}
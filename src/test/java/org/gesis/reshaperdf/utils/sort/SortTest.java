@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2016 GESIS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, see 
+ * http://www.gnu.org/licenses/ .
+ */
+package org.gesis.reshaperdf.utils.sort;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.gesis.reshaperdf.utils.StatementsComparatorSPO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.StatementCollector;
+
+/**
+ * @author bensmafx
+ * Compares the external sorts with the in memory sort for every order, with
+ * and without dropping duplicates.
+ */
+public class SortTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String[] TEXTS = {"a", "b", "ab", "Z", "ü", "über", "中",
+        "𐀀", "😀", "", "￯", "Ａ", "x\\\"y", "tab\\t", "\\u00FC"};
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testExternalEqualsInMemory() throws Exception {
+        File in = tmp.newFile("in.nt");
+        writeInput(in, 3000, 42);
+        for (SortOrder order : SortOrder.values()) {
+            for (boolean unique : new boolean[]{false, true}) {
+                if (unique && !order.isTotal()) {
+                    continue;
+                }
+                String name = order + (unique ? "-unique" : "");
+                List<String> expected = sort(in, name + "-mem", order, unique, 0);
+                checkSorted(in, expected, order, unique, name);
+                for (int variant = 1; variant <= 4; variant++) {
+                    List<String> actual = sort(in, name + "-ext" + variant, order, unique, variant);
+                    if (order.isTotal()) {
+                        assertEquals(name + " variant " + variant, expected, actual);
+                    } else {
+                        assertEquals(name + " variant " + variant, sorted(expected), sorted(actual));
+                        checkSorted(in, actual, order, unique, name + " variant " + variant);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRawExternalEqualsRawInMemory() throws Exception {
+        File in = tmp.newFile("in.nt");
+        writeInput(in, 3000, 7);
+        for (boolean unique : new boolean[]{false, true}) {
+            SortSettings mem = newSettings(SortOrder.SPO, unique);
+            mem.setRaw(true);
+            SortSettings ext = newSettings(SortOrder.SPO, unique);
+            ext.setRaw(true);
+            ext.setMemory(16 * 1024);
+            ext.setFanIn(2);
+            File memOut = tmp.newFile("raw-mem-" + unique + ".nt");
+            File extOut = tmp.newFile("raw-ext-" + unique + ".nt");
+            Sort.sort(in, memOut, mem);
+            Sort.sort(in, extOut, ext);
+            assertEquals(Files.readAllLines(memOut.toPath(), UTF8), Files.readAllLines(extOut.toPath(), UTF8));
+        }
+    }
+
+    /**
+     * Sorts the file.
+     * @param variant 0 in memory, 1 external, 2 replacement selection, 3
+     * dictionary encoded, 4 partitioned.
+     * @return The lines of the result with normalized blank node ids.
+     */
+    private List<String> sort(File in, String name, SortOrder order, boolean unique, int variant) throws Exception {
+        SortSettings settings = newSettings(order, unique);
+        if (variant > 0) {
+            settings.setMemory(16 * 1024);
+            settings.setFanIn(2);
+        }
+        settings.setReplacementSelection(variant == 2);
+        settings.setDictionary(variant == 3);
+        settings.setPartitions(variant == 4 ? 3 : 1);
+        File out = tmp.newFile(name + ".nt");
+        Sort.sort(in, out, settings);
+        List<String> lines = new ArrayList<String>();
+        for (String line : Files.readAllLines(out.toPath(), UTF8)) {
+            if (variant == 3) {
+                //the dictionary sort keeps the blank node labels of the input
+                line = line.replace("_:b", "_:genidb");
+            }
+            lines.add(line.replaceAll("genid(2d)?[0-9a-f]{32}(2d|-)", "genid"));
+        }
+        return lines;
+    }
+
+    private SortSettings newSettings(SortOrder order, boolean unique) throws IOException {
+        SortSettings settings = new SortSettings();
+        settings.setTmpDirs(Arrays.asList(tmp.newFolder()));
+        settings.setOrder(order);
+        settings.setUnique(unique);
+        return settings;
+    }
+
+    /**
+     * Checks that the lines are in order and hold the statements of the input,
+     * once each if duplicates are dropped.
+     */
+    private void checkSorted(File in, List<String> lines, SortOrder order, boolean unique, String name) throws Exception {
+        //blank node ids as written by the sort after normalization
+        List<String> inLines = new ArrayList<String>();
+        for (String line : Files.readAllLines(in.toPath(), UTF8)) {
+            inLines.add(line.replace("_:b", "_:genidb"));
+        }
+        List<Statement> input = parse(inLines);
+        List<Statement> output = parse(lines);
+        Comparator<Statement> comp = order.newComparator();
+        for (int i = 1; i < output.size(); i++) {
+            int c = comp.compare(output.get(i - 1), output.get(i));
+            assertTrue(name + " line " + (i + 1), unique ? c < 0 : c <= 0);
+        }
+        TreeSet<Statement> distinct = new TreeSet<Statement>(new StatementsComparatorSPO());
+        distinct.addAll(input);
+        assertEquals(name, unique ? distinct.size() : input.size(), output.size());
+        distinct.removeAll(output);
+        assertTrue(name + " misses statements", distinct.isEmpty());
+    }
+
+    private static List<String> sorted(List<String> lines) {
+        List<String> copy = new ArrayList<String>(lines);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static List<Statement> parse(File file) throws Exception {
+        InputStreamReader reader = new InputStreamReader(new FileInputStream(file), UTF8);
+        try {
+            RDFParser parser = Rio.createParser(RDFFormat.NTRIPLES);
+            //keeps the order of the written blank nodes
+            parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+            List<Statement> list = new ArrayList<Statement>();
+            parser.setRDFHandler(new StatementCollector(list));
+            parser.parse(reader, "");
+            return list;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private List<Statement> parse(List<String> lines) throws Exception {
+        File file = tmp.newFile();
+        Files.write(file.toPath(), lines, UTF8);
+        return parse(file);
+    }
+
+    /**
+     * Writes random statements with duplicates, blank nodes, escapes and
+     * characters outside the BMP.
+     */
+    static void writeInput(File file, int count, long seed) throws IOException {
+        Random rnd = new Random(seed);
+        Writer w = new OutputStreamWriter(Files.newOutputStream(file.toPath()), UTF8);
+        try {
+            List<String> lines = new ArrayList<String>();
+            for (int i = 0; i < count; i++) {
+                if (!lines.isEmpty() && rnd.nextInt(10) == 0) {
+                    lines.add(lines.get(rnd.nextInt(lines.size())));
+                    continue;
+                }
+                String s = rnd.nextInt(5) == 0 ? "_:b" + rnd.nextInt(20) : "<http://ex.org/" + iri(rnd) + rnd.nextInt(50) + ">";
+                String p = "<http://ex.org/p" + rnd.nextInt(4) + ">";
+                String o;
+                switch (rnd.nextInt(6)) {
+                    case 0:
+                        o = "<http://ex.org/" + iri(rnd) + ">";
+                        break;
+                    case 1:
+                        o = "_:b" + rnd.nextInt(20);
+                        break;
+                    case 2:
+                        o = "\"" + text(rnd) + "\"@" + (rnd.nextBoolean() ? "en" : "de");
+                        break;
+                    case 3:
+                        o = "\"" + rnd.nextInt(100) + "\"^^<http://www.w3.org/2001/XMLSchema#integer>";
+                        break;
+                    default:
+                        o = "\"" + text(rnd) + text(rnd) + "\"";
+                }
+                lines.add(s + " " + p + " " + o + " .");
+            }
+            for (String line : lines) {
+                w.write(line);
+                w.write('\n');
+            }
+        } finally {
+            w.close();
+        }
+    }
+
+    private static String text(Random rnd) {
+        return TEXTS[rnd.nextInt(TEXTS.length)];
+    }
+
+    private static String iri(Random rnd) {
+        String text = text(rnd);
+        return text.indexOf('\\') < 0 ? text : "";
+    }
+}